@@ -12,10 +12,18 @@ java {
 
 repositories { mavenCentral() }
 
+// JMH benchmarks: src/jmh/java, kept out of the application classpath
+val jmh by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
 dependencies {
     // Keep runtime deps to zero for native friendliness
     testImplementation(platform("org.junit:junit-bom:5.10.2"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 application {
@@ -35,6 +43,15 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// ./gradlew jmh -PjmhArgs="Markdown -f 1 -wi 2 -i 3"  (JMH CLI options; default runs every benchmark)
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Run JMH benchmarks from the jmh source set"
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args((findProperty("jmhArgs") as String? ?: "").split(" ").filter { it.isNotBlank() })
+}
+
 // Unify templates with root site: copy shared assets/partials into resources before packaging
 val syncTemplates by tasks.registering {
     group = "build"
@@ -22,7 +22,7 @@ native-image \
   -H:Name=llog \
   -H:Path="$BUILD_DIR" \
   -H:Class=io.site.bloggen.app.Main \
-  -H:IncludeResources=^templates/.* \
+  -H:IncludeResources='^(templates|search)/.*' \
   -cp "$BUILD_DIR/llog.jar"
 
 echo "[build-native] Done: $BIN_OUT"
@@ -0,0 +1,85 @@
+package io.site.bloggen.bench;
+
+import io.site.bloggen.core.BuildOptions;
+import io.site.bloggen.core.Post;
+import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.infra.FS;
+import io.site.bloggen.service.BuildService;
+import io.site.bloggen.service.ContentScanner;
+import io.site.bloggen.service.PostIndex;
+import io.site.bloggen.template.HtmlMinifier;
+import io.site.bloggen.util.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Whole-site work over a synthetic corpus of {@code posts} imported posts. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+    @Param({ "100", "1000" })
+    int posts;
+
+    Path root;
+    Path site;
+    SiteConfig cfg;
+    PostIndex index;
+    String archive;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = SyntheticCorpus.site(posts);
+        site = root.resolve("site");
+        cfg = SiteConfig.ofDefaults();
+        // seed the output used by the incremental benchmark
+        check(new BuildService().build(site, root.resolve("dist-inc"), cfg, BuildOptions.of(false, false)));
+        index = PostIndex.load(root.resolve("dist-inc"));
+        archive = Files.readString(root.resolve("dist-inc/archives.html"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FS.deleteTree(root);
+    }
+
+    @Benchmark
+    public List<Post> scanPosts() throws IOException {
+        return new ContentScanner().scanPosts(site);
+    }
+
+    @Benchmark
+    public List<Post> scanPostsIndexed() throws IOException {
+        return new ContentScanner().scanPosts(site, index);
+    }
+
+    @Benchmark
+    public Result<Void> fullBuild() {
+        return check(new BuildService().build(site, root.resolve("dist"), cfg, BuildOptions.of(false, false)));
+    }
+
+    @Benchmark
+    public Result<Void> incrementalNoop() {
+        return check(new BuildService().build(site, root.resolve("dist-inc"), cfg,
+                BuildOptions.of(false, false).withIncremental(true)));
+    }
+
+    /** The archive page lists every post: the largest page the minifier sees. */
+    @Benchmark
+    public String minifyArchive() {
+        return HtmlMinifier.minify(archive);
+    }
+
+    private static Result<Void> check(Result<Void> r) {
+        if (r instanceof Result.Err<?> err)
+            throw new IllegalStateException(err.message());
+        return r;
+    }
+}
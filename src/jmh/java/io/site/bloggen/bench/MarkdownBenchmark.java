@@ -0,0 +1,49 @@
+package io.site.bloggen.bench;
+
+import io.site.bloggen.util.Markdown;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkdownBenchmark {
+    String small;
+    String large;
+    String tables;
+    final StringBuilder buf = new StringBuilder(1 << 20);
+
+    @Setup
+    public void setup() {
+        small = SyntheticCorpus.markdown(1, 0, 1);
+        large = SyntheticCorpus.markdown(200, 0, 2);
+        tables = SyntheticCorpus.markdown(20, 5, 3);
+    }
+
+    @Benchmark
+    public String small() {
+        return Markdown.toHtml(small);
+    }
+
+    @Benchmark
+    public String large() {
+        return Markdown.toHtml(large);
+    }
+
+    @Benchmark
+    public String tableHeavy() {
+        return Markdown.toHtml(tables);
+    }
+
+    @Benchmark
+    public int largeStreaming() throws IOException {
+        buf.setLength(0);
+        Markdown.toHtml(large, buf);
+        return buf.length();
+    }
+}
@@ -0,0 +1,100 @@
+package io.site.bloggen.bench;
+
+import io.site.bloggen.service.MdImportService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Deterministic benchmark inputs: Markdown documents and whole sites of N imported posts spread over
+ * tags, nested categories and series.
+ */
+public final class SyntheticCorpus {
+    private static final String[] TAGS = { "java", "spring", "batch", "jdbc", "react", "state", "hooks", "neovim",
+            "testing", "gradle", "native", "css" };
+    private static final String[] CATEGORIES = { "backend/java", "backend/java/spring-batch", "frontend/react",
+            "tools/editor", "programming/java/starter", "notes" };
+    private static final String[] SERIES = { "Java 입문", "Spring Batch 실전", "Neovim 입문기", "React 상태" };
+    private static final String[] WORDS = { "빌드", "템플릿", "토큰", "파일", "정적", "사이트", "generator", "page",
+            "include", "series", "markdown", "table", "list", "문서", "구성", "설정" };
+
+    private SyntheticCorpus() {}
+
+    /** A post body with headings, paragraphs, nested and tab-indented lists, code and tables. */
+    public static String markdown(int sections, int tablesPerSection, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < sections; s++) {
+            sb.append("## 섹션 ").append(s + 1).append("\n\n");
+            sb.append(sentence(r, 40)).append(" **강조** 와 `code` 그리고 [링크](https://example.com/")
+                    .append(s).append(").\n\n");
+            sb.append("- ").append(sentence(r, 6)).append('\n');
+            sb.append("  - ").append(sentence(r, 5)).append('\n');
+            sb.append("\t- ").append(sentence(r, 4)).append('\n');
+            sb.append("- ").append(sentence(r, 6)).append("\n\n");
+            for (int t = 0; t < tablesPerSection; t++) {
+                sb.append("| 이름 | 값 | 비고 |\n|:-----|:--:|-----:|\n");
+                for (int row = 0; row < 6; row++)
+                    sb.append("| ").append(word(r)).append(" | ").append(r.nextInt(1000)).append(" | *")
+                            .append(word(r)).append("* |\n");
+                sb.append('\n');
+            }
+            sb.append("```java\nclass S").append(s).append(" { int v = ").append(s).append("; }\n```\n\n");
+            sb.append("> ").append(sentence(r, 12)).append("\n\n---\n\n");
+        }
+        return sb.toString();
+    }
+
+    /** Writes {@code posts} publishable Markdown files with front matter into {@code dir}. */
+    public static void writeMarkdown(Path dir, int posts, long seed) throws IOException {
+        Files.createDirectories(dir);
+        Random r = new Random(seed);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < posts; i++) {
+            StringBuilder fm = new StringBuilder("---\n");
+            fm.append("title: \"글 ").append(i).append(' ').append(word(r)).append("\"\n");
+            fm.append("createdDate: ").append(start.plusDays(i)).append('\n');
+            fm.append("publish: true\n");
+            fm.append("category_path: ").append(CATEGORIES[r.nextInt(CATEGORIES.length)]).append('\n');
+            fm.append("tags: [\"").append(TAGS[r.nextInt(TAGS.length)]).append("\", \"")
+                    .append(TAGS[r.nextInt(TAGS.length)]).append("\"]\n");
+            if (i % 5 == 0) {
+                fm.append("series: \"").append(SERIES[(i / 5) % SERIES.length]).append("\"\n");
+                fm.append("series_order: ").append(i / (5 * SERIES.length) + 1).append('\n');
+            }
+            fm.append("---\n\n");
+            Files.writeString(dir.resolve(String.format("post-%05d.md", i)),
+                    fm + markdown(3, i % 4 == 0 ? 1 : 0, seed + i), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Creates a site root under a temp dir with {@code posts} imported posts; caller deletes it. */
+    public static Path site(int posts) throws IOException {
+        Path root = Files.createTempDirectory("llog-bench-");
+        Path md = root.resolve("md");
+        Path site = root.resolve("site");
+        writeMarkdown(md, posts, 42);
+        var res = new MdImportService().importAll(md, site, false, false);
+        if (res instanceof io.site.bloggen.util.Result.Err<?> err)
+            throw new IOException(err.message());
+        return root;
+    }
+
+    private static String sentence(Random r, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(word(r));
+        }
+        return sb.append('.').toString();
+    }
+
+    private static String word(Random r) {
+        return WORDS[r.nextInt(WORDS.length)];
+    }
+}
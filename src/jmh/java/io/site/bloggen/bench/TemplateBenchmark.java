@@ -0,0 +1,147 @@
+package io.site.bloggen.bench;
+
+import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.template.DomainUpdater;
+import io.site.bloggen.template.HtmlMinifier;
+import io.site.bloggen.template.TemplateVars;
+import io.site.bloggen.template.TokenEngine;
+import io.site.bloggen.util.FlatJson;
+import io.site.bloggen.util.Markdown;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Per-page string work: token substitution, domain rewriting, minification and sidecar parsing. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+    SiteConfig cfg;
+    DomainUpdater domains;
+    Map<String, String> tokens;
+    String page;
+    String rendered;
+    String sidecar;
+
+    @Setup
+    public void setup() throws IOException {
+        cfg = SiteConfig.ofDefaults();
+        domains = DomainUpdater.of(cfg);
+        tokens = new LinkedHashMap<>(TemplateVars.from(cfg));
+        tokens.put("PAGE_PATH", "/posts/2025-01-01-bench.html");
+        tokens.put("PAGE_URL", cfg.domain() + "/posts/2025-01-01-bench.html");
+        tokens.put("TITLE", "벤치마크 글");
+        tokens.put("DATE", "2025-01-01");
+        String body = Markdown.toHtml(SyntheticCorpus.markdown(30, 1, 7));
+        page = resource("/templates/posts/post-template.html").replace("<p>본문 문단.</p>", body);
+        rendered = TokenEngine.apply(page, tokens);
+        sidecar = "{\n  \"TITLE\": \"벤치마크 글\",\n  \"PAGE_DESCRIPTION\": \"설명 \\\"인용\\\"\",\n"
+                + "  \"CATEGORY_PATH\": \"/categories/backend/java/\",\n  \"SERIES\": \"Java 입문\",\n"
+                + "  \"SERIES_ORDER\": \"3\",\n  \"TAGS\": \"java,spring,batch\"\n}\n";
+    }
+
+    @Benchmark
+    public String tokenEngine() {
+        return TokenEngine.apply(page, tokens);
+    }
+
+    @Benchmark
+    public String domainUpdater() {
+        return domains.apply(rendered);
+    }
+
+    /** The sequential-regex rewrite DomainUpdater replaced, verbatim, kept as a baseline. */
+    @Benchmark
+    public String domainUpdaterRegex() {
+        return regexDomainUpdate(rendered, cfg);
+    }
+
+    /** The same rewrite with its patterns precompiled: how much of the gain is compiling alone. */
+    @Benchmark
+    public String domainUpdaterRegexPrecompiled() {
+        return precompiledDomainUpdate(rendered, cfg);
+    }
+
+    @Benchmark
+    public String htmlMinify() {
+        return HtmlMinifier.minify(rendered);
+    }
+
+    @Benchmark
+    public Map<String, String> flatJson() {
+        return FlatJson.parse(sidecar);
+    }
+
+    // DomainUpdater.apply before the single-scan rewrite
+    private static String regexDomainUpdate(String html, SiteConfig cfg) {
+        String domain = cfg.domain().replaceAll("/$", "");
+        String siteName = cfg.siteName();
+        // canonical: preserve path
+        html = html.replaceAll("(<link\\s+rel=\\\"canonical\\\"\\s+href=\\\")https?://[^/<>\\\"]*([^\\\"<>]*)", "$1" + Matcher.quoteReplacement(domain) + "$2");
+        // og:url: preserve path
+        html = html.replaceAll("(<meta\\s+property=\\\"og:url\\\"\\s+content=\\\")https?://[^/<>\\\"]*([^\\\"<>]*)", "$1" + Matcher.quoteReplacement(domain) + "$2");
+        // og:image
+        Pattern p = Pattern.compile("(<meta\\s+property=\\\"og:image\\\"\\s+content=\\\")(.*?)\\\"\\s*/?>");
+        Matcher m = p.matcher(html);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            String url = m.group(2);
+            String repl = url;
+            if (url.startsWith("http://") || url.startsWith("https://")) {
+                repl = domain + url.replaceFirst("^https?://[^/]*", "");
+            } else if (url.startsWith("/")) {
+                repl = domain + url;
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(m.group(1) + repl + "\" />"));
+        }
+        m.appendTail(sb);
+        html = sb.toString();
+        // RSS title
+        html = html.replaceAll("(<link\\s+rel=\\\"alternate\\\"\\s+type=\\\"application/rss\\+xml\\\"\\s+title=\\\")[^\\\"]*(\\\")",
+                "$1" + Matcher.quoteReplacement(siteName) + "$2");
+        return html;
+    }
+
+    private static final Pattern CANONICAL = Pattern
+            .compile("(<link\\s+rel=\\\"canonical\\\"\\s+href=\\\")https?://[^/<>\\\"]*([^\\\"<>]*)");
+    private static final Pattern OG_URL = Pattern
+            .compile("(<meta\\s+property=\\\"og:url\\\"\\s+content=\\\")https?://[^/<>\\\"]*([^\\\"<>]*)");
+    private static final Pattern OG_IMAGE = Pattern
+            .compile("(<meta\\s+property=\\\"og:image\\\"\\s+content=\\\")(.*?)\\\"\\s*/?>");
+    private static final Pattern RSS_TITLE = Pattern.compile(
+            "(<link\\s+rel=\\\"alternate\\\"\\s+type=\\\"application/rss\\+xml\\\"\\s+title=\\\")[^\\\"]*(\\\")");
+
+    private static String precompiledDomainUpdate(String html, SiteConfig cfg) {
+        String domain = cfg.domain().replaceAll("/$", "");
+        String out = CANONICAL.matcher(html).replaceAll("$1" + Matcher.quoteReplacement(domain) + "$2");
+        out = OG_URL.matcher(out).replaceAll("$1" + Matcher.quoteReplacement(domain) + "$2");
+        out = OG_IMAGE.matcher(out).replaceAll(m -> {
+            String url = m.group(2);
+            String repl = url;
+            if (url.startsWith("http://") || url.startsWith("https://"))
+                repl = domain + url.replaceFirst("^https?://[^/]*", "");
+            else if (url.startsWith("/"))
+                repl = domain + url;
+            return Matcher.quoteReplacement(m.group(1) + repl + "\" />");
+        });
+        return RSS_TITLE.matcher(out).replaceAll("$1" + Matcher.quoteReplacement(cfg.siteName()) + "$2");
+    }
+
+    private static String resource(String path) throws IOException {
+        try (InputStream is = TemplateBenchmark.class.getResourceAsStream(path)) {
+            if (is == null)
+                throw new IOException("Missing resource: " + path);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import io.site.bloggen.service.InitService;
 import io.site.bloggen.service.NewPostService;
 import io.site.bloggen.service.MdImportService;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDate;
 
@@ -24,7 +25,7 @@ public class Main {
                     System.exit(0);
                 }
                 case "init" -> doInit(args);
-                case "build" -> doBuild(args);
+                case "build", "watch", "serve" -> doBuild(args);
                 case "new:post" -> doNewPost(args);
                 case "import:md" -> doImportMd(args);
                 case "sample" -> doSample(args);
@@ -67,45 +68,151 @@ public class Main {
         }
     }
 
+    /**
+     * {@code build}; {@code watch}: an incremental build, then another after each batch of source edits;
+     * {@code serve}: {@code watch} plus a preview server that reloads open pages after each rebuild. Pages are
+     * built in memory and served from there; derived binaries and the build state go to a temporary dir.
+     */
     static void doBuild(String[] args) throws Exception {
+        boolean serve = "serve".equals(args[0]);
+        boolean watch = serve || "watch".equals(args[0]);
         Path src = Path.of(".");
-        Path out = Path.of("dist");
+        Path out = null;
         Path config = null; // optional explicit site.json path
         Path importMd = null; // optional import markdown dir before build
-        boolean dry = false, verb = false;
+        boolean dry = false, verb = false, incremental = false, linkAssets = false, minify = false,
+                precompress = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        boolean stats = false;
+        Path statsJson = null;
+        String host = "127.0.0.1";
+        int port = 8080;
         for (int i = 1; i < args.length; i++) {
             switch (args[i]) {
                 case "--src" -> src = Path.of(args[++i]);
                 case "--out" -> out = Path.of(args[++i]);
                 case "--config" -> config = Path.of(args[++i]);
                 case "--import-src" -> importMd = Path.of(args[++i]);
+                case "--incremental" -> incremental = true;
+                case "--link-assets" -> linkAssets = true;
+                case "--minify" -> minify = true;
+                case "--precompress" -> precompress = true;
+                case "--jobs" -> jobs = Integer.parseInt(args[++i]);
+                case "--stats" -> stats = true;
+                case "--stats-json" -> statsJson = Path.of(args[++i]);
                 case "--dry-run" -> dry = true;
                 case "--verbose" -> verb = true;
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
             }
         }
+        if (jobs < 1) {
+            System.err.println("--jobs must be at least 1");
+            System.exit(2);
+        }
+        if (serve) {
+            if (out != null)
+                io.site.bloggen.util.Log.warn("serve keeps the site in memory; ignoring --out " + out);
+            Path tmp = java.nio.file.Files.createTempDirectory("llog-serve");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    io.site.bloggen.infra.FS.deleteTree(tmp);
+                } catch (Exception ignored) {
+                }
+            }));
+            out = tmp;
+        } else if (out == null) {
+            out = Path.of("dist");
+        }
         if (config == null) {
             String env = System.getenv("SITE_JSON");
             if (env != null && !env.isBlank())
                 config = Path.of(env);
         }
-        Path srcCfg = src.resolve("site.json");
-        var cfg = config != null && java.nio.file.Files.exists(config) ? SiteConfig.fromJson(config)
-                : java.nio.file.Files.exists(srcCfg) ? SiteConfig.fromJson(srcCfg)
-                        : SiteConfig.ofDefaults();
+        var cfg = loadConfig(src, config);
         // Optional import step to ensure homepage lists posts correctly
-        if (importMd != null) {
-            var imp = new io.site.bloggen.service.MdImportService().importAll(importMd, src, dry, verb);
-            if (imp instanceof io.site.bloggen.util.Result.Err<?> err) {
-                io.site.bloggen.util.Log.warn("import failed: " + err.message());
-            }
-        }
+        if (importMd != null)
+            importMd(importMd, src, dry, verb, jobs);
         var svc = new BuildService();
-        var res = svc.build(src, out, cfg, dry, verb);
+        var opts = io.site.bloggen.core.BuildOptions.of(dry, verb).withIncremental(incremental || watch)
+                .withJobs(jobs).withStats(stats, statsJson).withLinkAssets(linkAssets).withMinify(minify)
+                .withPrecompress(precompress).withMemory(serve);
+        var res = svc.build(src, out, cfg, opts);
         if (res instanceof io.site.bloggen.util.Result.Err<?> err) {
             io.site.bloggen.util.Log.error(err.message());
-            System.exit(err.code());
+            if (!watch)
+                System.exit(err.code());
         } else {
-            System.out.println((dry ? "[dry-run] " : "") + "Built site to " + out.toAbsolutePath());
+            System.out.println((dry ? "[dry-run] " : "") + (serve ? "Built site in memory" : "Built site to "
+                    + out.toAbsolutePath()));
+        }
+        if (!watch)
+            return;
+        if (!serve) {
+            watch(svc, src, out, config, importMd, opts, () -> {
+            });
+            return;
+        }
+        try (var server = new io.site.bloggen.service.PreviewServer(svc.preview(out), host, port)) {
+            server.start();
+            System.out.println("Serving http://" + host + ":" + server.port() + "/");
+            watch(svc, src, out, config, importMd, opts, server::reload);
+        }
+    }
+
+    /**
+     * Rebuilds after each batch of edits with the same {@code svc}, which keeps the last build in memory and
+     * renders only what the edited files affect. Markdown edits are imported first; the posts they write
+     * arrive as the next batch.
+     */
+    private static void watch(BuildService svc, Path src, Path out, Path config, Path importMd,
+            io.site.bloggen.core.BuildOptions opts, Runnable built) throws Exception {
+        Path absImport = importMd == null ? null : importMd.toAbsolutePath().normalize();
+        try (var watcher = new io.site.bloggen.service.SiteWatcher(src, out, importMd,
+                config != null ? config : src.resolve("site.json"))) {
+            System.out.println("Watching " + src.toAbsolutePath() + (importMd != null ? " and " + absImport : "")
+                    + " (Ctrl-C to stop)");
+            watcher.run(changed -> {
+                long start = System.nanoTime();
+                var edited = new java.util.HashSet<Path>();
+                for (Path p : changed)
+                    if (absImport == null || !p.startsWith(absImport))
+                        edited.add(p);
+                int imported = changed.size() - edited.size();
+                if (imported > 0)
+                    importMd(importMd, src, opts.dryRun(), opts.verbose(), opts.jobs());
+                if (edited.isEmpty())
+                    return;
+                io.site.bloggen.util.Log.debug("changed: " + changed);
+                io.site.bloggen.util.Result<Void> res;
+                try {
+                    res = svc.rebuild(src, out, loadConfig(src, config), opts, edited);
+                } catch (IOException | RuntimeException e) {
+                    io.site.bloggen.util.Log.error("cannot read config: " + e.getMessage());
+                    return;
+                }
+                if (res instanceof io.site.bloggen.util.Result.Err<?> err) {
+                    io.site.bloggen.util.Log.error(err.message());
+                    return;
+                }
+                built.run();
+                System.out.println("Rebuilt after " + edited.size() + " change(s) in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            });
+        }
+    }
+
+    private static SiteConfig loadConfig(Path src, Path config) throws IOException {
+        Path srcCfg = src.resolve("site.json");
+        return config != null && java.nio.file.Files.exists(config) ? SiteConfig.fromJson(config)
+                : java.nio.file.Files.exists(srcCfg) ? SiteConfig.fromJson(srcCfg)
+                        : SiteConfig.ofDefaults();
+    }
+
+    private static void importMd(Path importMd, Path src, boolean dry, boolean verb, int jobs) {
+        var imp = new io.site.bloggen.service.MdImportService().importAll(importMd, src, dry, verb, jobs);
+        if (imp instanceof io.site.bloggen.util.Result.Err<?> err) {
+            io.site.bloggen.util.Log.warn("import failed: " + err.message());
         }
     }
 
@@ -145,10 +252,14 @@ public class Main {
         System.out.println("Usage:");
         System.out.println("  init <dir> [--dry-run] [--verbose]");
         System.out.println(
-                "  build [--src dir] [--out dir] [--config path] [--import-src md_dir] [--dry-run] [--verbose]");
+                "  build [--src dir] [--out dir] [--config path] [--import-src md_dir] [--incremental] [--link-assets] [--minify] [--precompress] [--jobs N] [--stats] [--stats-json path] [--dry-run] [--verbose]");
+        System.out.println(
+                "  watch [same options as build]");
+        System.out.println(
+                "  serve [--host addr] [--port N] [same options as build except --out]");
         System.out.println(
                 "  new:post --title \"...\" [--date YYYY-MM-DD] [--slug slug] [--root dir] [--dry-run] [--verbose]");
-        System.out.println("  import:md --src <md_dir> [--root dir] [--dry-run] [--verbose]");
+        System.out.println("  import:md --src <md_dir> [--root dir] [--jobs N] [--dry-run] [--verbose]");
         System.out.println("  sample [--out dir] [--build] [--dry-run] [--verbose]");
         System.out.println("  --help | --version");
     }
@@ -157,20 +268,26 @@ public class Main {
         Path md = null;
         Path root = Path.of(".");
         boolean dry = false, verb = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
         for (int i = 1; i < args.length; i++) {
             switch (args[i]) {
                 case "--src" -> md = Path.of(args[++i]);
                 case "--root" -> root = Path.of(args[++i]);
+                case "--jobs" -> jobs = Integer.parseInt(args[++i]);
                 case "--dry-run" -> dry = true;
                 case "--verbose" -> verb = true;
             }
         }
         if (md == null) {
-            System.err.println("usage: import:md --src <md_dir> [--root dir] [--dry-run] [--verbose]");
+            System.err.println("usage: import:md --src <md_dir> [--root dir] [--jobs N] [--dry-run] [--verbose]");
+            System.exit(2);
+        }
+        if (jobs < 1) {
+            System.err.println("--jobs must be at least 1");
             System.exit(2);
         }
         var svc = new MdImportService();
-        var res = svc.importAll(md, root, dry, verb);
+        var res = svc.importAll(md, root, dry, verb, jobs);
         if (res instanceof io.site.bloggen.util.Result.Err<?> err) {
             io.site.bloggen.util.Log.error(err.message());
             System.exit(err.code());
@@ -0,0 +1,46 @@
+package io.site.bloggen.core;
+
+import java.nio.file.Path;
+
+/**
+ * {@code statsFile} is null unless a JSON stats report was requested. {@code linkAssets} hardlinks binary
+ * files from the source into the output instead of copying them; {@code minify} minifies the HTML pages;
+ * {@code precompress} writes a .gz copy of each compressible output; {@code memory} keeps the pages in memory
+ * for {@code serve} instead of writing them (see {@code BuildService#preview}).
+ */
+public record BuildOptions(boolean dryRun, boolean verbose, boolean incremental, int jobs, boolean stats,
+        Path statsFile, boolean linkAssets, boolean minify, boolean precompress, boolean memory) {
+    public static BuildOptions of(boolean dryRun, boolean verbose) {
+        return new BuildOptions(dryRun, verbose, false, Runtime.getRuntime().availableProcessors(), false, null,
+                false, false, false, false);
+    }
+
+    public BuildOptions withIncremental(boolean v) {
+        return new BuildOptions(dryRun, verbose, v, jobs, stats, statsFile, linkAssets, minify, precompress, memory);
+    }
+
+    public BuildOptions withJobs(int n) {
+        return new BuildOptions(dryRun, verbose, incremental, Math.max(1, n), stats, statsFile, linkAssets, minify, precompress, memory);
+    }
+
+    public BuildOptions withStats(boolean table, Path jsonFile) {
+        return new BuildOptions(dryRun, verbose, incremental, jobs, table, jsonFile, linkAssets, minify, precompress, memory);
+    }
+
+    public BuildOptions withLinkAssets(boolean v) {
+        return new BuildOptions(dryRun, verbose, incremental, jobs, stats, statsFile, v, minify, precompress, memory);
+    }
+
+    public BuildOptions withMinify(boolean v) {
+        return new BuildOptions(dryRun, verbose, incremental, jobs, stats, statsFile, linkAssets, v, precompress, memory);
+    }
+
+    public BuildOptions withPrecompress(boolean v) {
+        return new BuildOptions(dryRun, verbose, incremental, jobs, stats, statsFile, linkAssets, minify, v, memory);
+    }
+
+    public BuildOptions withMemory(boolean v) {
+        return new BuildOptions(dryRun, verbose, incremental, jobs, stats, statsFile, linkAssets, minify, precompress,
+                v);
+    }
+}
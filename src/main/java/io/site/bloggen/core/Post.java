@@ -3,9 +3,10 @@ package io.site.bloggen.core;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/** A scanned post. {@code heading} is the raw first {@code <h1>} text without tags, or null when there is none. */
 public record Post(String fileName, String url, LocalDateTime date, String title, List<String> tags, String description,
         String readingTime, String categoryPath,
-        String series, Integer seriesOrder) {
+        String series, Integer seriesOrder, String heading) {
     public String year() {
         return String.valueOf(date.getYear());
     }
@@ -0,0 +1,88 @@
+package io.site.bloggen.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The posts of one build and their groupings, built once from a single scan and shared read-only by the
+ * catalog and render stages. {@code posts} and each tag/category list are newest first; series lists are
+ * in reading order (series-order, then date).
+ */
+public record SiteModel(List<Post> posts, Map<String, Post> byFile, Map<String, List<Post>> tags,
+        Map<String, List<Post>> categories, Map<String, Series> series) {
+
+    public record Series(String slug, String title, List<Post> posts) {
+    }
+
+    public static SiteModel of(List<Post> scanned) {
+        List<Post> posts = new ArrayList<>(scanned);
+        posts.sort(Comparator.comparing(Post::date).reversed());
+        Map<String, Post> byFile = new LinkedHashMap<>();
+        for (Post p : posts)
+            byFile.put(p.fileName(), p);
+        return new SiteModel(List.copyOf(posts), Collections.unmodifiableMap(byFile), groupByTag(posts),
+                groupByCategory(posts), groupBySeries(posts));
+    }
+
+    private static Map<String, List<Post>> groupByTag(List<Post> posts) {
+        Map<String, List<Post>> by = new TreeMap<>();
+        for (Post p : posts) {
+            if (p.tags().isEmpty())
+                by.computeIfAbsent("untagged", k -> new ArrayList<>()).add(p);
+            for (String t : p.tags())
+                by.computeIfAbsent(t, k -> new ArrayList<>()).add(p);
+        }
+        return freeze(by);
+    }
+
+    private static Map<String, List<Post>> groupByCategory(List<Post> posts) {
+        Map<String, List<Post>> by = new TreeMap<>();
+        for (Post p : posts) {
+            String cp = p.categoryPath();
+            if (cp == null || cp.isBlank())
+                continue;
+            by.computeIfAbsent(cp, k -> new ArrayList<>()).add(p);
+        }
+        return freeze(by);
+    }
+
+    private static Map<String, Series> groupBySeries(List<Post> posts) {
+        Map<String, List<Post>> by = new LinkedHashMap<>();
+        for (Post p : posts) {
+            if (p.series() == null || p.series().isBlank())
+                continue;
+            String slug = io.site.bloggen.infra.Slug.of(p.series());
+            by.computeIfAbsent(slug, k -> new ArrayList<>()).add(p);
+        }
+        Map<String, Series> out = new LinkedHashMap<>();
+        for (var e : by.entrySet()) {
+            var list = e.getValue();
+            // sort each by seriesOrder asc then date asc
+            list.sort((a, b) -> {
+                Integer ao = a.seriesOrder();
+                Integer bo = b.seriesOrder();
+                if (ao != null && bo != null && !ao.equals(bo))
+                    return Integer.compare(ao, bo);
+                if (ao != null && bo == null)
+                    return -1;
+                if (ao == null && bo != null)
+                    return 1;
+                return a.date().compareTo(b.date());
+            });
+            out.put(e.getKey(), new Series(e.getKey(), list.get(0).series(), List.copyOf(list)));
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    private static Map<String, List<Post>> freeze(Map<String, List<Post>> by) {
+        Map<String, List<Post>> out = new TreeMap<>();
+        for (var e : by.entrySet())
+            out.put(e.getKey(), List.copyOf(e.getValue()));
+        return Collections.unmodifiableMap(out);
+    }
+}
@@ -0,0 +1,278 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-hashed copies of the files under assets/ ({@code assets/css/base.css} ->
+ * {@code assets/css/base.1a2b3c4d.css}), written next to the originals and listed in {@value #MANIFEST}.
+ * Stylesheets get their url() and @import references rewritten before they are hashed, so a changed font also
+ * renames every stylesheet that loads it. A hashed name never changes content, so it can be cached as
+ * immutable; {@link #rewrite} points rendered pages at them.
+ */
+public final class AssetFingerprints {
+    public static final String MANIFEST = "asset-manifest.json";
+    private static final int HASH_CHARS = 8;
+    private static final Pattern CSS_REF = Pattern
+            .compile("url\\(\\s*(['\"]?)([^'\")\\s]+)\\1\\s*\\)|@import\\s+(['\"])([^'\"]+)\\3");
+
+    private final Map<String, String> names; // "assets/css/base.css" -> "assets/css/base.1a2b3c4d.css"
+    private final String domain;
+    private final String key;
+
+    private AssetFingerprints(Map<String, String> names, String domain) {
+        this.names = names;
+        this.domain = domain;
+        this.key = names.isEmpty() ? "" : BuildManifest.hash(names.toString());
+    }
+
+    /** No fingerprinting: {@link #rewrite} returns pages unchanged. */
+    public static AssetFingerprints none() {
+        return new AssetFingerprints(Map.of(), "");
+    }
+
+    /**
+     * Writes a hashed copy of each of {@code keys} (output paths whose bytes are in {@code files.apply(key)})
+     * into {@code out} unless one with the same name and size is there from an earlier build, records them in
+     * {@code next}, and writes the manifest. {@code domain} lets absolute URLs on the site be rewritten too.
+     */
+    public static AssetFingerprints build(Path out, java.util.function.Function<String, Path> files,
+            Collection<String> keys, BuildManifest next, String domain, BuildStats stats) throws IOException {
+        var w = new Writer(out, files, Set.copyOf(keys), next, stats);
+        for (String k : new TreeSet<>(keys))
+            w.fingerprint(k);
+        var fp = new AssetFingerprints(w.names, domain.endsWith("/") ? domain.substring(0, domain.length() - 1)
+                : domain);
+        fp.writeManifest(out, next, stats);
+        return fp;
+    }
+
+    /** Digest of the name mapping, for cache keys of pages that reference assets. */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Replaces {@code /assets/...} references with their hashed names. A reference counts when it starts a
+     * quoted value, url(), srcset entry or text run, or follows the site domain.
+     */
+    public String rewrite(String html) {
+        if (names.isEmpty())
+            return html;
+        int i = html.indexOf("/assets/");
+        if (i < 0)
+            return html;
+        StringBuilder sb = null;
+        int copied = 0;
+        while (i >= 0) {
+            int end = i + 1;
+            while (end < html.length() && !delimiter(html.charAt(end)))
+                end++;
+            String name = starts(html, i) ? names.get(html.substring(i + 1, end)) : null;
+            if (name != null) {
+                if (sb == null)
+                    sb = new StringBuilder(html.length() + 64);
+                sb.append(html, copied, i + 1).append(name);
+                copied = end;
+            }
+            i = html.indexOf("/assets/", end);
+        }
+        if (sb == null)
+            return html;
+        return sb.append(html, copied, html.length()).toString();
+    }
+
+    private boolean starts(String s, int i) {
+        if (i == 0)
+            return true;
+        char c = s.charAt(i - 1);
+        if (c == '"' || c == '\'' || c == '(' || c == '=' || c == ',' || c == '>' || Character.isWhitespace(c))
+            return true;
+        return !domain.isEmpty() && i >= domain.length() && s.startsWith(domain, i - domain.length());
+    }
+
+    private static boolean delimiter(char c) {
+        return c == '"' || c == '\'' || c == '(' || c == ')' || c == '<' || c == '>' || c == '?' || c == '#'
+                || c == ',' || c == '\\' || c == '`' || c == '\u0000' || Character.isWhitespace(c);
+    }
+
+    private void writeManifest(Path out, BuildManifest next, BuildStats stats) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n");
+        int n = 0;
+        for (var e : names.entrySet()) {
+            sb.append(n++ == 0 ? "" : ",\n").append("  \"").append(json(e.getKey())).append("\": \"")
+                    .append(json(e.getValue())).append('"');
+        }
+        sb.append(n == 0 ? "}\n" : "\n}\n");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        String h = BuildManifest.hash(bytes);
+        Path target = out.resolve(MANIFEST);
+        if (!Files.exists(target) || !h.equals(BuildManifest.hash(target))) {
+            Files.write(target, bytes);
+            stats.wrote(bytes.length);
+        }
+        next.put(new BuildManifest.Entry(MANIFEST, 'G', bytes.length, -1, h, "", h));
+    }
+
+    private static String json(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /** Hashes files on demand so a stylesheet's references are named before the stylesheet itself. */
+    private static final class Writer {
+        final Path out;
+        final java.util.function.Function<String, Path> files;
+        final Set<String> keys;
+        final BuildManifest next;
+        final BuildStats stats;
+        final Map<String, String> names = new TreeMap<>();
+        final Set<String> open = new HashSet<>(); // stylesheets being rewritten, to break @import cycles
+
+        Writer(Path out, java.util.function.Function<String, Path> files, Set<String> keys, BuildManifest next,
+                BuildStats stats) {
+            this.out = out;
+            this.files = files;
+            this.keys = keys;
+            this.next = next;
+            this.stats = stats;
+        }
+
+        /** The hashed name of {@code key}, or null while it is part of an import cycle. */
+        String fingerprint(String key) throws IOException {
+            String done = names.get(key);
+            if (done != null)
+                return done;
+            if (key.endsWith(".css")) {
+                if (!open.add(key))
+                    return null;
+                try {
+                    String css;
+                    try {
+                        byte[] raw = Files.readAllBytes(files.apply(key));
+                        stats.read(raw.length);
+                        css = StandardCharsets.UTF_8.newDecoder().decode(java.nio.ByteBuffer.wrap(raw)).toString();
+                    } catch (CharacterCodingException e) {
+                        css = null; // not UTF-8: hash it as it is
+                    }
+                    if (css != null) {
+                        byte[] bytes = rewriteCss(css, key).getBytes(StandardCharsets.UTF_8);
+                        String h = BuildManifest.hash(bytes);
+                        String name = hashed(key, h);
+                        Path target = out.resolve(name);
+                        if (!Files.exists(target) || Files.size(target) != bytes.length) {
+                            Files.deleteIfExists(target);
+                            Files.createDirectories(target.getParent());
+                            Files.write(target, bytes);
+                            stats.wrote(bytes.length);
+                        }
+                        next.put(new BuildManifest.Entry(name, 'G', bytes.length, -1, h, "", h));
+                        names.put(key, name);
+                        return name;
+                    }
+                } finally {
+                    open.remove(key);
+                }
+            }
+            var entry = next.get(key);
+            Path file = files.apply(key);
+            long size = Files.size(file);
+            String h = entry != null && !entry.hash().isEmpty() ? entry.hash() : null;
+            if (h == null) {
+                h = BuildManifest.hash(file);
+                stats.read(size);
+            }
+            String name = hashed(key, h);
+            Path target = out.resolve(name);
+            if (!Files.exists(target) || Files.size(target) != size) {
+                Files.deleteIfExists(target);
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.createLink(target, file);
+                } catch (UnsupportedOperationException | java.nio.file.FileSystemException e) {
+                    Files.copy(file, target);
+                    stats.wrote(size);
+                }
+            }
+            next.put(new BuildManifest.Entry(name, 'G', size, -1, h, "", h));
+            names.put(key, name);
+            return name;
+        }
+
+        private String rewriteCss(String css, String key) throws IOException {
+            Matcher m = CSS_REF.matcher(css);
+            StringBuilder sb = null;
+            int copied = 0;
+            while (m.find()) {
+                int g = m.group(2) != null ? 2 : 4;
+                String ref = m.group(g);
+                int cut = ref.length();
+                for (int i = 0; i < ref.length(); i++) {
+                    if (ref.charAt(i) == '?' || ref.charAt(i) == '#') {
+                        cut = i;
+                        break;
+                    }
+                }
+                String target = resolve(key, ref.substring(0, cut));
+                if (target == null || !keys.contains(target))
+                    continue;
+                String name = fingerprint(target);
+                if (name == null)
+                    continue;
+                int slash = ref.lastIndexOf('/', cut - 1);
+                if (sb == null)
+                    sb = new StringBuilder(css.length() + 64);
+                sb.append(css, copied, m.start(g) + slash + 1).append(name.substring(name.lastIndexOf('/') + 1));
+                copied = m.start(g) + cut;
+            }
+            if (sb == null)
+                return css;
+            return sb.append(css, copied, css.length()).toString();
+        }
+    }
+
+    /** The output path {@code ref} in stylesheet {@code from} points to, or null for external URLs. */
+    static String resolve(String from, String ref) {
+        if (ref.isEmpty() || ref.startsWith("//") || ref.indexOf(':') >= 0)
+            return null;
+        var parts = new ArrayDeque<String>();
+        if (!ref.startsWith("/")) {
+            String dir = from.substring(0, from.lastIndexOf('/') + 1);
+            for (String s : dir.split("/"))
+                if (!s.isEmpty())
+                    parts.addLast(s);
+        }
+        for (String s : ref.split("/")) {
+            if (s.isEmpty() || s.equals("."))
+                continue;
+            if (s.equals("..")) {
+                if (parts.pollLast() == null)
+                    return null;
+            } else {
+                parts.addLast(s);
+            }
+        }
+        return String.join("/", parts);
+    }
+
+    /** {@code dir/name.ext} -> {@code dir/name.<hash>.ext}. */
+    static String hashed(String key, String hash) {
+        String h = hash.substring(0, HASH_CHARS);
+        int slash = key.lastIndexOf('/');
+        int dot = key.lastIndexOf('.');
+        if (dot <= slash + 1)
+            return key + "." + h;
+        return key.substring(0, dot) + "." + h + key.substring(dot);
+    }
+}
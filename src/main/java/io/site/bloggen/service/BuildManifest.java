@@ -0,0 +1,140 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Build state kept in the output directory between runs (one tab-separated line per output file).
+ * Origins: S = copied from src, T = packaged template overlay, G = generated by CatalogService.
+ * {@code includes} lists the partials a page was expanded with, separated by '|'.
+ */
+public final class BuildManifest {
+    public static final String FILE_NAME = ".llog-manifest";
+    private static final String HEADER = "# llog-manifest 2";
+
+    public record Entry(String path, char origin, long size, long mtime, String hash, String deps, String out,
+            String includes) {
+        public Entry(String path, char origin, long size, long mtime, String hash, String deps, String out) {
+            this(path, origin, size, mtime, hash, deps, out, "");
+        }
+
+        public Entry withOut(String deps, String out, String includes) {
+            return new Entry(path, origin, size, mtime, hash, deps, out, includes);
+        }
+
+        /**
+         * What the output's bytes are identified by: its content hash when one is recorded, else (hardlinked
+         * assets) the size and mtime of the linked source.
+         */
+        public String identity() {
+            if (!out.isEmpty())
+                return out;
+            if (!hash.isEmpty())
+                return hash;
+            return "link:" + size + ":" + mtime;
+        }
+    }
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    public static BuildManifest load(Path outDir) {
+        BuildManifest m = new BuildManifest();
+        Path file = outDir.resolve(FILE_NAME);
+        if (!Files.exists(file))
+            return m;
+        try {
+            var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !HEADER.equals(lines.get(0)))
+                return m; // unknown format -> behave like a clean build
+            for (int i = 1; i < lines.size(); i++) {
+                String[] f = lines.get(i).split("\t", -1);
+                if (f.length != 8 || f[1].length() != 1)
+                    continue;
+                try {
+                    m.put(new Entry(f[0], f[1].charAt(0), Long.parseLong(f[2]), Long.parseLong(f[3]), f[4], f[5],
+                            f[6], f[7]));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            io.site.bloggen.util.Log.warn("manifest unreadable, doing a full build: " + e.getMessage());
+            return new BuildManifest();
+        }
+        return m;
+    }
+
+    public synchronized void save(Path outDir) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        for (Entry e : entries.values()) {
+            sb.append(e.path()).append('\t').append(e.origin()).append('\t').append(e.size()).append('\t')
+                    .append(e.mtime()).append('\t').append(e.hash()).append('\t').append(e.deps()).append('\t')
+                    .append(e.out()).append('\t').append(e.includes()).append('\n');
+        }
+        Files.writeString(outDir.resolve(FILE_NAME), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public synchronized void put(Entry e) {
+        entries.put(e.path(), e);
+    }
+
+    public synchronized boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    public synchronized Set<String> paths() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    public static String hash(String s) {
+        return hash(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    public static String hash(Path file) throws IOException {
+        MessageDigest md = sha256();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0)
+                md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /** Copies {@code file} to {@code target} and returns the content hash, reading the source once. */
+    public static String copyHashing(Path file, Path target) throws IOException {
+        MessageDigest md = sha256();
+        try (InputStream in = new java.security.DigestInputStream(Files.newInputStream(file), md)) {
+            Files.copy(in, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package io.site.bloggen.service;
 
+import io.site.bloggen.core.BuildOptions;
+import io.site.bloggen.core.Post;
 import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.core.SiteModel;
 import io.site.bloggen.infra.FS;
 import io.site.bloggen.template.DomainUpdater;
+import io.site.bloggen.template.HtmlMinifier;
 import io.site.bloggen.template.TemplateVars;
 import io.site.bloggen.template.TokenEngine;
 import io.site.bloggen.util.FlatJson;
@@ -14,193 +18,196 @@ import java.nio.file.Path;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Builds the site as a staged pipeline: copy (binaries to out, text pages into memory), catalog generation
+ * (into the same in-memory page set), one render pass, one write. Each output file is written exactly once.
+ */
 public final class BuildService {
+    /** Text pages and sidecars read by earlier builds of this instance, reused while size and mtime match. */
+    private final java.util.Map<Path, Source> sources = new java.util.concurrent.ConcurrentHashMap<>();
+
+    private record Source(long size, long mtime, String text, String hash) {
+    }
+
+    /**
+     * Outputs of builds with {@link BuildOptions#memory}: the rendered pages, and the source file of each binary
+     * the copy stage would have copied (served from there). Derived binaries still go to the output dir.
+     */
+    private final java.util.Map<String, byte[]> held = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.Map<String, Path> sourced = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile BuildManifest shown = new BuildManifest();
+
+    /** The last successful build of this instance, for {@link #rebuild}; null until one finishes. */
+    private volatile Session last;
+
+    /**
+     * What a targeted rebuild reuses: the render inputs and site model, the manifest and post index as saved,
+     * the source text of every copied page and the paths of the generated ones.
+     */
+    private record Session(Path src, Path out, SiteConfig cfg, BuildOptions opts, RenderCtx ctx,
+            BuildManifest manifest, PostIndex postIndex, java.util.Map<String, String> texts,
+            java.util.Set<String> generated, int relatedCount, boolean search, boolean images) {
+        Session withCtx(RenderCtx ctx) {
+            return new Session(src, out, cfg, opts, ctx, manifest, postIndex, texts, generated, relatedCount,
+                    search, images);
+        }
+    }
+
     public io.site.bloggen.util.Result<Void> build(Path src, Path out, SiteConfig cfg, boolean dryRun,
             boolean verbose) {
-        io.site.bloggen.util.Log.setVerbose(verbose);
+        return build(src, out, cfg, BuildOptions.of(dryRun, verbose));
+    }
+
+    public io.site.bloggen.util.Result<Void> build(Path src, Path out, SiteConfig cfg, BuildOptions opts) {
+        final boolean dryRun = opts.dryRun();
+        io.site.bloggen.util.Log.setVerbose(opts.verbose());
+        last = null;
         try {
             if (!Files.exists(src)) {
                 return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO,
                         "source not found: " + src.toAbsolutePath());
             }
-            // Copy all
-            FS.deleteTree(out);
+            // Incremental: keep the previous output and only redo what the manifest says changed
+            final BuildManifest prev = opts.incremental() ? BuildManifest.load(out) : new BuildManifest();
+            final boolean incremental = !prev.isEmpty();
+            if (opts.incremental() && !incremental)
+                io.site.bloggen.util.Log.debug("no build manifest in " + out + "; doing a full build");
+            final BuildManifest next = new BuildManifest();
+            final BuildStats stats = new BuildStats();
+            // Post metadata from the last build (read before a full build wipes the output dir)
+            final PostIndex postIndex = PostIndex.load(out);
+            if (!incremental) {
+                held.clear();
+                sourced.clear();
+            }
+            final Staging stage = new Staging(out, prev, next, incremental, dryRun, opts.linkAssets(), stats,
+                    sources, opts.memory() ? sourced : null);
+
+            stats.begin("copy");
+
+            // 1) Copy: binaries go straight to out; text pages and sidecars are staged in memory
             if (dryRun) {
-                io.site.bloggen.util.Log.info("[dry-run] would clean output: " + out.toAbsolutePath());
+                if (!incremental)
+                    io.site.bloggen.util.Log.info("[dry-run] would clean output: " + out.toAbsolutePath());
                 try (var s = Files.walk(src)) {
                     long files = s.filter(Files::isRegularFile).count();
                     io.site.bloggen.util.Log.info("[dry-run] would copy ~" + files + " files from " + src + " to " + out
                             + ", excluding the output dir");
                 }
             } else {
+                if (!incremental)
+                    FS.deleteTree(out);
                 Files.createDirectories(out);
-                final Path absSrc = src.toAbsolutePath().normalize();
-                final Path absOut = out.toAbsolutePath().normalize();
-                java.nio.file.Files.walkFileTree(absSrc, new java.nio.file.SimpleFileVisitor<>() {
-                    @Override
-                    public java.nio.file.FileVisitResult preVisitDirectory(java.nio.file.Path dir,
-                            java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
-                        // Skip output dir and generator dir, VCS dirs
-                        if (dir.startsWith(absOut))
-                            return java.nio.file.FileVisitResult.SKIP_SUBTREE;
-                        if (dir.equals(absSrc.resolve("generator")))
-                            return java.nio.file.FileVisitResult.SKIP_SUBTREE;
-                        var name = dir.getFileName() != null ? dir.getFileName().toString() : "";
-                        if (name.equals(".git") || name.equals(".idea") || name.equals(".svn")
-                                || name.equals(".github") || name.equals("examples") || name.equals("sample-site")
-                                || name.equals("scripts") || name.equals("dist") || name.equals("node_modules")) {
+            }
+            final Path absSrc = src.toAbsolutePath().normalize();
+            final Path absOut = out.toAbsolutePath().normalize();
+            java.nio.file.Files.walkFileTree(absSrc, new java.nio.file.SimpleFileVisitor<>() {
+                @Override
+                public java.nio.file.FileVisitResult preVisitDirectory(java.nio.file.Path dir,
+                        java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
+                    // Skip output dir and generator dir, VCS dirs
+                    if (dir.startsWith(absOut))
+                        return java.nio.file.FileVisitResult.SKIP_SUBTREE;
+                    if (dir.equals(absSrc.resolve("generator")))
+                        return java.nio.file.FileVisitResult.SKIP_SUBTREE;
+                    var name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                    if (name.equals(".git") || name.equals(".idea") || name.equals(".svn")
+                            || name.equals(".github") || name.equals("examples") || name.equals("sample-site")
+                            || name.equals("scripts") || name.equals("dist") || name.equals("node_modules")) {
+                        return java.nio.file.FileVisitResult.SKIP_SUBTREE;
+                    }
+                    // Allowlist top-level site directories only: assets, posts, tags,
+                    // partials(read-only for includes)
+                    java.nio.file.Path rel = absSrc.relativize(dir);
+                    if (rel.getNameCount() == 1) {
+                        String top = rel.getName(0).toString();
+                        boolean allow = top.equals("assets") || top.equals("posts") || top.equals("tags")
+                                || top.equals("partials");
+                        if (!allow)
                             return java.nio.file.FileVisitResult.SKIP_SUBTREE;
-                        }
-                        // Allowlist top-level site directories only: assets, posts, tags,
-                        // partials(read-only for includes)
-                        java.nio.file.Path rel = absSrc.relativize(dir);
-                        if (rel.getNameCount() == 1) {
-                            String top = rel.getName(0).toString();
-                            boolean allow = top.equals("assets") || top.equals("posts") || top.equals("tags")
-                                    || top.equals("partials");
-                            if (!allow)
-                                return java.nio.file.FileVisitResult.SKIP_SUBTREE;
-                        }
-                        java.nio.file.Path target = absOut.resolve(rel);
-                        java.nio.file.Files.createDirectories(target);
-                        return java.nio.file.FileVisitResult.CONTINUE;
                     }
+                    if (!dryRun && !opts.memory())
+                        java.nio.file.Files.createDirectories(absOut.resolve(rel));
+                    return java.nio.file.FileVisitResult.CONTINUE;
+                }
 
-                    @Override
-                    public java.nio.file.FileVisitResult visitFile(java.nio.file.Path file,
-                            java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
-                        if (file.startsWith(absOut))
-                            return java.nio.file.FileVisitResult.CONTINUE;
-                        var baseName = file.getFileName() != null ? file.getFileName().toString() : "";
-                        // Skip repo/docs files not needed in final site
-                        if (baseName.equals("AGENTS.md") || baseName.equals("DECISIONS.md")) {
-                            return java.nio.file.FileVisitResult.CONTINUE;
-                        }
-                        // Determine location
-                        java.nio.file.Path rel = absSrc.relativize(file);
-                        String lower = baseName.toLowerCase();
-                        boolean underAssets = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("assets");
-                        boolean underPosts = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("posts");
-                        boolean underTags = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("tags");
-                        boolean underPartials = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("partials");
-
-                        // Exclude markdown by default, but allow any format under assets/
-                        if (!underAssets && lower.endsWith(".md")) {
-                            return java.nio.file.FileVisitResult.CONTINUE;
-                        }
+                @Override
+                public java.nio.file.FileVisitResult visitFile(java.nio.file.Path file,
+                        java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
+                    if (file.startsWith(absOut))
+                        return java.nio.file.FileVisitResult.CONTINUE;
+                    var baseName = file.getFileName() != null ? file.getFileName().toString() : "";
+                    // Skip repo/docs files not needed in final site
+                    if (baseName.equals("AGENTS.md") || baseName.equals("DECISIONS.md")) {
+                        return java.nio.file.FileVisitResult.CONTINUE;
+                    }
+                    // Determine location
+                    java.nio.file.Path rel = absSrc.relativize(file);
+                    String lower = baseName.toLowerCase();
+                    boolean underAssets = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("assets");
+                    boolean underPosts = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("posts");
+                    boolean underTags = rel.getNameCount() >= 1 && rel.getName(0).toString().equals("tags");
 
-                        // Only copy:
-                        // - files under assets/posts/tags
-                        // - root-level site entry files
-                        // (html/xml/txt/ico/webmanifest/svg/png/jpg/jpeg/webp/avif)
-                        boolean isRootLevel = rel.getNameCount() == 1;
-                        boolean allowedRoot = false;
-                        if (isRootLevel) {
-                            allowedRoot = lower.endsWith(".html") || lower.endsWith(".xml") || lower.endsWith(".txt")
-                                    || lower.endsWith(".ico") || lower.endsWith(".webmanifest")
-                                    || lower.endsWith(".svg") || lower.endsWith(".png") || lower.endsWith(".jpg")
-                                    || lower.endsWith(".jpeg") || lower.endsWith(".webp") || lower.endsWith(".avif");
-                        }
+                    // Exclude markdown by default, but allow any format under assets/
+                    if (!underAssets && lower.endsWith(".md")) {
+                        return java.nio.file.FileVisitResult.CONTINUE;
+                    }
 
-                        // Restrict file types inside posts/tags
-                        if (underPosts) {
-                            // allow only .html and .meta.json (sidecar removed later)
-                            if (!(lower.endsWith(".html") || lower.endsWith(".html.meta.json")
-                                    || lower.endsWith(".meta.json"))) {
-                                return java.nio.file.FileVisitResult.CONTINUE;
-                            }
-                        }
-                        if (underTags) {
-                            if (!lower.endsWith(".html")) {
-                                return java.nio.file.FileVisitResult.CONTINUE;
-                            }
-                        }
+                    // Only copy:
+                    // - files under assets/posts/tags
+                    // - root-level site entry files
+                    // (html/xml/txt/ico/webmanifest/svg/png/jpg/jpeg/webp/avif)
+                    boolean isRootLevel = rel.getNameCount() == 1;
+                    boolean allowedRoot = false;
+                    if (isRootLevel) {
+                        allowedRoot = lower.endsWith(".html") || lower.endsWith(".xml") || lower.endsWith(".txt")
+                                || lower.endsWith(".ico") || lower.endsWith(".webmanifest")
+                                || lower.endsWith(".svg") || lower.endsWith(".png") || lower.endsWith(".jpg")
+                                || lower.endsWith(".jpeg") || lower.endsWith(".webp") || lower.endsWith(".avif");
+                    }
 
-                        if (!(underAssets || underPosts || underTags || allowedRoot)) {
-                            // Do not copy partials or any other directories/files
+                    // Restrict file types inside posts/tags
+                    if (underPosts) {
+                        // allow only .html and .meta.json (sidecars are only staged, never written)
+                        if (!(lower.endsWith(".html") || lower.endsWith(".html.meta.json")
+                                || lower.endsWith(".meta.json"))) {
                             return java.nio.file.FileVisitResult.CONTINUE;
                         }
-
-                        java.nio.file.Path target = absOut.resolve(rel);
-                        java.nio.file.Files.createDirectories(target.getParent());
-                        java.nio.file.Files.copy(file, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
-                                java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
-                        return java.nio.file.FileVisitResult.CONTINUE;
                     }
-                });
-            }
-            // Ensure default template assets exist in output (overlay missing files)
-            try (java.io.InputStream list = BuildService.class.getResourceAsStream("/templates/.filelist")) {
-                if (list != null) {
-                    String all = new String(list.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-                    for (String line : all.split("\\R")) {
-                        if (line == null || line.isBlank())
-                            continue;
-                        if (!line.startsWith("assets/"))
-                            continue;
-                        if (line.endsWith("/")) { // directory marker
-                            java.nio.file.Files.createDirectories(out.resolve(line));
-                            continue;
-                        }
-                        java.nio.file.Path target = out.resolve(line);
-                        if (java.nio.file.Files.exists(target))
-                            continue; // keep user's file
-                        java.nio.file.Files.createDirectories(target.getParent());
-                        try (java.io.InputStream is = BuildService.class.getResourceAsStream("/templates/" + line)) {
-                            if (is != null)
-                                java.nio.file.Files.copy(is, target);
+                    if (underTags) {
+                        if (!lower.endsWith(".html")) {
+                            return java.nio.file.FileVisitResult.CONTINUE;
                         }
                     }
-                }
-            } catch (java.io.IOException ignored) {
-            }
-            // Ensure common root icons/manifests exist if missing
-            try {
-                String[] roots = new String[] { "favicon.svg", "site.webmanifest" };
-                for (String r : roots) {
-                    Path target = out.resolve(r);
-                    if (Files.exists(target))
-                        continue;
-                    try (java.io.InputStream is = BuildService.class.getResourceAsStream("/templates/" + r)) {
-                        if (is != null) {
-                            Files.copy(is, target);
-                        }
+
+                    if (!(underAssets || underPosts || underTags || allowedRoot)) {
+                        // Do not copy partials or any other directories/files
+                        return java.nio.file.FileVisitResult.CONTINUE;
                     }
+                    stage.copy(file, relKey(rel));
+                    return java.nio.file.FileVisitResult.CONTINUE;
                 }
-            } catch (IOException ignored) {
-            }
-            // Note: do not auto-create about page. Navigation will hide the link
-            // when `about.html` is absent in the source root.
+            });
             // Extra safety: ensure project's src/assets is fully copied (in case earlier
             // traversal skipped for any reason)
             try {
                 Path srcAssets = src.resolve("assets");
-                Path outAssets = out.resolve("assets");
                 if (Files.exists(srcAssets)) {
-                    java.nio.file.Files.createDirectories(outAssets);
                     try (var s = Files.walk(srcAssets)) {
-                        s.filter(Files::isRegularFile).forEach(p -> {
-                            String name = p.getFileName().toString().toLowerCase();
-                            Path rel = srcAssets.relativize(p);
-                            Path target = outAssets.resolve(rel);
+                        for (Path p : (Iterable<Path>) s.filter(Files::isRegularFile)::iterator) {
                             try {
-                                java.nio.file.Files.createDirectories(target.getParent());
-                                java.nio.file.Files.copy(p, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
-                                        java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
+                                stage.copy(p, "assets/" + relKey(srcAssets.relativize(p)));
                             } catch (IOException ignored) {
                             }
-                        });
+                        }
                     }
                 }
             } catch (IOException ignored) {
             }
-
             // Ensure posts html files are present
             try {
                 Path srcPosts = src.resolve("posts");
-                Path outPosts = out.resolve("posts");
                 if (Files.exists(srcPosts)) {
-                    java.nio.file.Files.createDirectories(outPosts);
                     try (var s = Files.list(srcPosts)) {
                         for (Path p : (Iterable<Path>) s::iterator) {
                             if (!Files.isRegularFile(p))
@@ -208,10 +215,8 @@ public final class BuildService {
                             String lower = p.getFileName().toString().toLowerCase();
                             if (!(lower.endsWith(".html") || lower.endsWith(".meta.json")))
                                 continue;
-                            Path target = outPosts.resolve(p.getFileName().toString());
                             try {
-                                java.nio.file.Files.copy(p, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
-                                        java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
+                                stage.copy(p, "posts/" + p.getFileName());
                             } catch (IOException ignored) {
                             }
                         }
@@ -219,122 +224,359 @@ public final class BuildService {
                 }
             } catch (IOException ignored) {
             }
+            // Ensure default template assets exist in output (overlay missing files)
+            try (java.io.InputStream list = BuildService.class.getResourceAsStream("/templates/.filelist")) {
+                if (list != null) {
+                    String all = new String(list.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+                    for (String line : all.split("\\R")) {
+                        if (line == null || line.isBlank())
+                            continue;
+                        if (!line.startsWith("assets/"))
+                            continue;
+                        if (line.endsWith("/")) { // directory marker
+                            if (!dryRun && !opts.memory())
+                                java.nio.file.Files.createDirectories(out.resolve(line));
+                            continue;
+                        }
+                        stage.overlay(line); // keeps the user's file when one was copied
+                    }
+                }
+            } catch (java.io.IOException ignored) {
+            }
+            // Ensure common root icons/manifests exist if missing
+            try {
+                String[] roots = new String[] { "favicon.svg", "site.webmanifest" };
+                for (String r : roots)
+                    stage.overlay(r);
+            } catch (IOException ignored) {
+            }
+            // Note: do not auto-create about page. Navigation will hide the link
+            // when `about.html` is absent in the source root.
 
+            // One minified stylesheet: assets/css/index.css with its @import chain inlined, plus the optional
+            // assets/css/critical.css for {{CRITICAL_CSS}}
+            String criticalCss = "";
+            if (Boolean.parseBoolean(cfg.extras().getOrDefault("css_bundle", "false"))) {
+                var bundler = new CssBundler(rel -> cssSource(src, rel, stats));
+                var bundle = bundler.bundle(CSS_BUNDLE, "assets/css/");
+                if (bundle != null && !dryRun) {
+                    writeBundle(out, bundle, next, stats);
+                    sourced.remove(CSS_BUNDLE);
+                }
+                var critical = bundler.bundle(CRITICAL_CSS, null);
+                if (critical != null && !critical.css().isEmpty())
+                    criticalCss = "<style>" + critical.css().replace("</", "<\\/") + "</style>";
+            }
+
+            // Where each binary output's bytes are: memory builds leave copied binaries in src
+            java.util.function.Function<String, Path> files = !opts.memory() ? out::resolve : k -> {
+                Path f = sourced.get(k);
+                return f != null ? f : out.resolve(k);
+            };
+
+            // Content-hashed copies of every binary asset, referenced from pages in place of the originals
+            var assets = AssetFingerprints.none();
+            if (Boolean.parseBoolean(cfg.extras().getOrDefault("asset_fingerprint", "false"))) {
+                stats.begin("assets");
+                if (dryRun) {
+                    io.site.bloggen.util.Log.info("[dry-run] would fingerprint assets and write "
+                            + AssetFingerprints.MANIFEST);
+                } else {
+                    var keys = new java.util.ArrayList<String>();
+                    for (String k : next.paths())
+                        if (k.startsWith("assets/") && !isTextPage(k))
+                            keys.add(k);
+                    assets = AssetFingerprints.build(out, files, keys, next, cfg.domain(), stats);
+                }
+            }
+
+            // Smaller copies of the images pages show, for the srcset and size of their <img> tags
+            var images = ResponsiveImages.none();
+            int[] imageWidths = ResponsiveImages.widths(cfg);
+            if (imageWidths != null) {
+                stats.begin("images");
+                if (dryRun) {
+                    io.site.bloggen.util.Log.info("[dry-run] would write resized copies of the images pages show");
+                } else {
+                    var refs = new java.util.HashSet<String>();
+                    for (Page pg : stage.pages.values())
+                        ResponsiveImages.referenced(pg.text, cfg.domain(), refs);
+                    Path partials = src.resolve("partials");
+                    if (Files.isDirectory(partials)) {
+                        try (var s = Files.list(partials)) {
+                            for (Path p : (Iterable<Path>) s.filter(f -> f.toString().endsWith(".html"))::iterator)
+                                ResponsiveImages.referenced(Files.readString(p, StandardCharsets.UTF_8),
+                                        cfg.domain(), refs);
+                        }
+                    }
+                    images = ResponsiveImages.build(out, files, refs, imageWidths, prev, next, cfg.domain(),
+                            cfg.extras().get("image_sizes"), opts.jobs(), stats);
+                }
+            }
+
+            stats.begin("series");
             // Prepare token map
             var tokens = new java.util.LinkedHashMap<>(TemplateVars.from(cfg));
             boolean hasAbout = java.nio.file.Files.exists(src.resolve("about.html"));
             String aboutLink = hasAbout ? "<a href=\"/about.html\" {{ABOUT_CURRENT_ATTR}}>{{NAV_ABOUT_LABEL}}</a>" : "";
             tokens.put("ABOUT_LINK_HTML", aboutLink);
+            tokens.put("CRITICAL_CSS", criticalCss);
             if (!hasAbout) {
                 // Ensure any lingering label token renders as empty in custom headers
                 tokens.put("NAV_ABOUT_LABEL", "");
             }
 
-            // Precompute series contexts (prev/next) from output posts
-            var seriesCtx = computeSeriesContext(out);
+            // One site model per build: posts come from the staged text (or the index when unchanged), and
+            // every later stage reads titles, groupings and series order from it
+            int relatedCount = RelatedPosts.count(cfg);
+            var model = SiteModel.of(new ContentScanner().scanPosts(src, postIndex, stage::text, relatedCount > 0));
+            var seriesCtx = computeSeriesContext(model);
+            var related = relatedHtml(model, postIndex, relatedCount);
 
-            // Post-process HTML/XML/TXT-like files: includes -> tokens -> domain updates
-            try (var s = Files.walk(out)) {
-                s.filter(p -> Files.isRegularFile(p))
-                        .forEach(p -> {
-                            try {
-                                String name = p.getFileName().toString();
-                                boolean isText = name.endsWith(".html") || name.endsWith(".xml")
-                                        || name.endsWith(".txt") || name.endsWith(".webmanifest");
-                                if (!isText)
-                                    return;
-                                String orig = Files.readString(p, StandardCharsets.UTF_8);
-                                String t = expandIncludes(orig, src);
-                                if (!hasAbout) {
-                                    // Remove any hard-coded About anchors in included headers
-                                    t = t.replaceAll(
-                                            "(?is)\\s*<a[^>]+href=\\\"/?about(?:\\.html)?\\\"[^>]*>.*?</a>\\s*", " ");
-                                }
-                                // Front matter block visibility and behavior
-                                boolean fmShow = Boolean
-                                        .parseBoolean(cfg.extras().getOrDefault("frontmatter_show", "false"));
-                                boolean fmOpen = Boolean
-                                        .parseBoolean(cfg.extras().getOrDefault("frontmatter_always_open", "false"));
-                                if (!fmShow) {
-                                    t = t.replaceAll("(?s)<!--\\s*FM_BLOCK_START\\s*-->.*?<!--\\s*FM_BLOCK_END\\s*-->",
-                                            "");
-                                } else {
-                                    t = t.replace("{{FM_OPEN_ATTR}}", fmOpen ? "open" : "");
-                                }
-                                var local = new java.util.LinkedHashMap<>(tokens);
-                                // Page tokens
-                                var rel = out.relativize(p).toString().replace(java.io.File.separatorChar, '/');
-                                String pagePath = "/" + rel;
-                                local.put("PAGE_PATH", pagePath);
-                                local.put("PAGE_URL", cfg.domain().replaceAll("/$", "") + pagePath);
-                                // Default description
-                                if (!local.containsKey("PAGE_DESCRIPTION") || local.get("PAGE_DESCRIPTION") == null
-                                        || local.get("PAGE_DESCRIPTION").isBlank()) {
-                                    local.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
-                                }
-                                // Post-specific tokens: breadcrumb, article section, JSON-LD
-                                if (pagePath.startsWith("/posts/") && pagePath.endsWith(".html")) {
-                                    String cat = local.getOrDefault("CATEGORY_PATH", "");
-                                    local.put("BREADCRUMB", buildBreadcrumb(cat, cfg));
-                                    local.put("ARTICLE_SECTION", lastSegmentLabel(cat, cfg));
-                                    String htmlForTitle = orig; // before token application contains <h1>
-                                    local.put("POST_JSONLD", buildJsonLd(htmlForTitle, pagePath, local, cfg));
-                                    // series badge + prev/next
-                                    var sc = seriesCtx.get(pagePath);
-                                    if (sc != null) {
-                                        local.put("SERIES_BADGE", sc.badgeHtml);
-                                        // Replace token if present
-                                        if (t.contains("{{SERIES_NAV}}")) {
-                                            t = t.replace("{{SERIES_NAV}}", sc.navHtml == null ? "" : sc.navHtml);
-                                        } else {
-                                            // Fallback removed to prevent header injection ghosting
-                                        }
-                                    } else {
-                                        local.put("SERIES_BADGE", "");
-                                        t = t.replace("{{SERIES_NAV}}", "");
-                                    }
-                                }
-                                if (!local.containsKey("PAGE_DESCRIPTION") || local.get("PAGE_DESCRIPTION") == null
-                                        || local.get("PAGE_DESCRIPTION").isBlank()) {
-                                    local.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
-                                }
-                                // Sidecar meta: <filename>.meta.json
-                                var meta = p.resolveSibling(name + ".meta.json");
-                                if (java.nio.file.Files.exists(meta)) {
-                                    String mj = java.nio.file.Files.readString(meta, StandardCharsets.UTF_8);
-                                    var mm = FlatJson.parse(mj);
-                                    for (var e : mm.entrySet()) {
-                                        String k = e.getKey() == null ? "" : e.getKey().trim();
-                                        String v = sanitizeForOutput(e.getValue());
-                                        if (!k.isEmpty() && v != null && !v.isBlank()) {
-                                            local.put(k.toUpperCase(), v);
-                                        }
-                                    }
-                                }
-                                String nt = TokenEngine.apply(t, local);
-                                nt = DomainUpdater.apply(nt, cfg);
-                                if (!nt.equals(orig)) {
-                                    if (dryRun)
-                                        io.site.bloggen.util.Log.debug("[dry-run] would update: " + p);
-                                    else
-                                        Files.writeString(p, nt, StandardCharsets.UTF_8);
-                                }
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        });
-            }
-            // Remove sidecar meta files from output (only when not dry-run)
-            if (!dryRun) {
-                try (var s2 = Files.walk(out)) {
-                    s2.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(".meta.json"))
-                            .forEach(p -> {
-                                try {
-                                    Files.deleteIfExists(p);
-                                } catch (IOException ignored) {
-                                }
-                            });
+            // 2) Generate catalogs (posts, archives, tags, feeds, sitemap) into the page set
+            stats.begin("catalog");
+            var cat = new CatalogService().generate(src, cfg, model, rel -> {
+                Page pg = stage.pages.get(rel);
+                return pg != null && !pg.generated ? pg.text : null;
+            }, stage);
+            if (cat instanceof io.site.bloggen.util.Result.Err<?> err) {
+                return io.site.bloggen.util.Result.err(err.code(), err.message());
+            }
+
+            // 3) Render and write every page once (includes -> tokens -> domain updates); pages are
+            // independent, so this runs on up to opts.jobs() threads
+            stats.begin("render");
+            var ctx = new RenderCtx(src, cfg, cfg.domain().replaceAll("/$", ""), tokens, hasAbout, model,
+                    seriesCtx, related, stage.sidecars,
+                    Boolean.parseBoolean(cfg.extras().getOrDefault("frontmatter_show", "false")),
+                    Boolean.parseBoolean(cfg.extras().getOrDefault("frontmatter_always_open", "false")),
+                    globalKey(cfg, tokens, assets, images, opts.minify()), new IncludeCache(src, stats),
+                    DomainUpdater.of(cfg), assets, images, opts.minify());
+            var texts = new java.util.HashMap<String, String>();
+            var generated = new java.util.HashSet<String>();
+            for (Page pg : stage.pages.values()) {
+                if (pg.generated)
+                    generated.add(pg.rel);
+                else
+                    texts.put(pg.rel, pg.text); // before rendering replaces it
+            }
+            finish(new java.util.ArrayList<>(stage.pages.values()), ctx, prev, next, null, postIndex, out, opts,
+                    incremental, stats);
+            if (!dryRun)
+                last = new Session(src, out, cfg, opts, ctx, next, postIndex, texts, generated, relatedCount,
+                        Boolean.parseBoolean(cfg.extras().getOrDefault("search_index", "false")),
+                        imageWidths != null);
+            return io.site.bloggen.util.Result.ok(null);
+        } catch (IOException e) {
+            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO, e.getMessage());
+        } catch (RuntimeException e) {
+            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.UNKNOWN, e.getMessage());
+        }
+    }
+
+    /**
+     * Builds again after a watch batch of {@code changed} source files (absolute paths). When the last build
+     * of this instance had the same source, output, config and options and the batch only edits existing
+     * posts, it renders just those posts, keeping the site model, manifest and post index in memory: feeds
+     * that show article text and the search index follow when it changed, related lists when a post's terms did, and
+     * every catalog page when a listing field (tags, category, description, reading time) did. A changed
+     * title, date or series, a new or removed post, any other file or a changed set of images a post shows
+     * runs {@link #build} instead.
+     */
+    public io.site.bloggen.util.Result<Void> rebuild(Path src, Path out, SiteConfig cfg, BuildOptions opts,
+            java.util.Set<Path> changed) {
+        var s = last;
+        if (s != null && s.src().equals(src) && s.out().equals(out) && s.cfg().equals(cfg)
+                && s.opts().equals(opts)) {
+            io.site.bloggen.util.Log.setVerbose(opts.verbose());
+            try {
+                if (update(s, changed))
+                    return io.site.bloggen.util.Result.ok(null);
+            } catch (IOException | RuntimeException e) {
+                io.site.bloggen.util.Log.debug("targeted rebuild failed, building the site: " + e.getMessage());
+            }
+        }
+        return build(src, out, cfg, opts);
+    }
+
+    /**
+     * The targeted part of {@link #rebuild}; false, with nothing written, when the batch needs a full build.
+     * The session's maps are updated in place once the batch qualifies.
+     */
+    private boolean update(Session s, java.util.Set<Path> changed) throws IOException {
+        Path posts = s.src().toAbsolutePath().normalize().resolve("posts");
+        var names = new java.util.TreeSet<String>();
+        for (Path p : changed) {
+            String f = p.getFileName().toString();
+            String name = f.endsWith(".meta.json") ? f.substring(0, f.length() - ".meta.json".length()) : f;
+            var entry = s.manifest().get("posts/" + name);
+            if (!posts.equals(p.getParent()) || s.ctx().model().byFile().get(name) == null || entry == null
+                    || entry.origin() != 'S' || !Files.isRegularFile(posts.resolve(name)))
+                return false;
+            names.add(name);
+        }
+        if (names.isEmpty())
+            return false;
+        var stats = new BuildStats();
+        stats.begin("copy");
+        var stage = new Staging(s.out(), s.manifest(), new BuildManifest(), true, false, false, stats, sources,
+                s.opts().memory() ? sourced : null);
+        for (String name : names) {
+            stage.copy(posts.resolve(name), "posts/" + name);
+            if (Files.isRegularFile(posts.resolve(name + ".meta.json")))
+                stage.copy(posts.resolve(name + ".meta.json"), "posts/" + name + ".meta.json");
+        }
+
+        stats.begin("series");
+        var ctx = s.ctx();
+        var model = ctx.model();
+        String domain = s.cfg().domain();
+        var scanner = new ContentScanner();
+        var entries = new java.util.HashMap<String, PostIndex.Entry>();
+        boolean listed = false, body = false;
+        for (String name : names) {
+            String rel = "posts/" + name;
+            String was = s.texts().get(rel), now = stage.pages.get(rel).text;
+            var e = scanner.scanPost(posts.resolve(name), s.postIndex().get(name), stage::text,
+                    s.relatedCount() > 0);
+            Post before = model.byFile().get(name), after = e.toPost();
+            // other pages show these (order, series navigation, related lists), so they take a full build
+            if (!after.date().equals(before.date()) || !java.util.Objects.equals(after.title(), before.title())
+                    || !java.util.Objects.equals(after.series(), before.series())
+                    || !java.util.Objects.equals(after.seriesOrder(), before.seriesOrder()))
+                return false;
+            if (s.images()) {
+                var a = new java.util.HashSet<String>();
+                var b = new java.util.HashSet<String>();
+                ResponsiveImages.referenced(was, domain, a);
+                ResponsiveImages.referenced(now, domain, b);
+                if (!a.equals(b))
+                    return false;
+            }
+            listed |= !after.equals(before);
+            body |= !FeedService.articleBody(was).equals(FeedService.articleBody(now));
+            entries.put(name, e);
+        }
+
+        stats.begin("catalog");
+        var pages = new java.util.ArrayList<Page>();
+        if (listed) {
+            var list = new java.util.ArrayList<Post>(model.posts().size());
+            for (Post p : model.posts())
+                list.add(entries.containsKey(p.fileName()) ? entries.get(p.fileName()).toPost() : p);
+            model = SiteModel.of(list);
+            ctx = ctx.withModel(model);
+        }
+        java.util.function.Function<String, String> texts = rel -> {
+            Page pg = stage.pages.get(rel);
+            return pg != null && !pg.generated ? pg.text : s.texts().get(rel);
+        };
+        if (listed) {
+            var cat = new CatalogService().generate(s.src(), s.cfg(), model, texts, stage);
+            if (cat instanceof io.site.bloggen.util.Result.Err<?>)
+                return false;
+            var generated = new java.util.HashSet<String>();
+            for (Page pg : stage.pages.values())
+                if (pg.generated)
+                    generated.add(pg.rel);
+            if (!generated.equals(s.generated()))
+                return false; // a tag or category page appears or goes away
+        } else if (body) {
+            if (FeedService.readsArticles(s.cfg()))
+                new FeedService(s.src(), s.cfg(), TemplateVars.from(s.cfg()), texts).generate(model, stage);
+            if (s.search())
+                new SearchIndex(s.src(), texts).generate(model, stage);
+        }
+        pages.addAll(stage.pages.values());
+
+        // The batch qualifies: from here on the session follows it
+        for (String name : names) {
+            String meta = "posts/" + name + ".meta.json";
+            s.postIndex().put(entries.get(name));
+            s.texts().put("posts/" + name, stage.pages.get("posts/" + name).text);
+            if (stage.sidecars.containsKey(meta))
+                ctx.sidecars().put(meta, stage.sidecars.get(meta));
+            else
+                ctx.sidecars().remove(meta);
+        }
+        if (s.relatedCount() > 0 && (listed || body)) {
+            var related = relatedHtml(model, s.postIndex(), s.relatedCount());
+            for (Post p : model.posts()) {
+                String key = "/posts/" + p.fileName(), html = related.get(key);
+                if (java.util.Objects.equals(html, ctx.related().get(key)))
+                    continue;
+                if (html != null)
+                    ctx.related().put(key, html);
+                else
+                    ctx.related().remove(key);
+                String rel = key.substring(1);
+                if (!stage.pages.containsKey(rel))
+                    pages.add(new Page(rel, s.texts().get(rel), false, s.manifest().get(rel)));
+            }
+        }
+
+        stats.begin("render");
+        finish(pages, ctx, s.manifest(), new BuildManifest(), s.manifest(), s.postIndex(), s.out(), s.opts(), true,
+                stats);
+        last = s.withCtx(ctx);
+        return true;
+    }
+
+    /** The related-posts block of each post page by URL ("/posts/x.html"); empty when {@code count} is 0. */
+    private static java.util.Map<String, String> relatedHtml(SiteModel model, PostIndex postIndex, int count) {
+        var related = new java.util.HashMap<String, String>();
+        if (count > 0)
+            for (var e : RelatedPosts.compute(model, postIndex, count).entrySet())
+                related.put("/posts/" + e.getKey(), RelatedPosts.html(e.getValue()));
+        return related;
+    }
+
+    /**
+     * The stages after the page set is known, shared by {@link #build} and {@link #update}: render and write
+     * {@code pages}, precompress, then save the manifest and post index and report. {@code merged} is null for
+     * a build, whose {@code next} replaces {@code prev}; a targeted rebuild passes the session's manifest, which
+     * takes {@code next}'s entries instead. Render and compress failures are logged and thrown.
+     */
+    private void finish(java.util.List<Page> pages, RenderCtx ctx, BuildManifest prev, BuildManifest next,
+            BuildManifest merged, PostIndex postIndex, Path out, BuildOptions opts, boolean incremental,
+            BuildStats stats) throws IOException {
+        final boolean dryRun = opts.dryRun();
+        var failures = forEachPage(pages, opts.jobs(),
+                pg -> publish(pg, ctx, prev, next, out, opts.memory() ? held : null, incremental, dryRun, stats));
+        if (!failures.isEmpty()) {
+            failures.forEach(io.site.bloggen.util.Log::error);
+            throw new IOException(failures.size() + " page(s) failed to render, first: " + failures.get(0));
+        }
+
+        // Precompressed copies of every compressible output, after all of them are final (not for pages
+        // held in memory: the preview server sends them as they are)
+        if (opts.precompress() && !opts.memory()) {
+            stats.begin("compress");
+            if (dryRun) {
+                io.site.bloggen.util.Log.info("[dry-run] would write " + Precompressor.SUFFIX
+                        + " copies of compressible outputs");
+            } else {
+                var keys = new java.util.ArrayList<String>();
+                for (String k : next.paths())
+                    if (!k.startsWith("partials/")) // removed from the output below
+                        keys.add(k);
+                var compressFailures = Precompressor.compress(out, keys, prev, next, opts.jobs(), stats);
+                if (!compressFailures.isEmpty()) {
+                    compressFailures.forEach(io.site.bloggen.util.Log::error);
+                    throw new IOException(compressFailures.size() + " file(s) failed to compress, first: "
+                            + compressFailures.get(0));
                 }
+            }
+        }
+
+        stats.begin("cleanup");
+        if (!dryRun) {
+            BuildManifest saved = next;
+            if (merged != null) {
+                for (String k : next.paths())
+                    merged.put(next.get(k));
+                saved = merged;
+            } else {
                 // Remove root docs and config not needed in dist
                 try {
                     Files.deleteIfExists(out.resolve("AGENTS.md"));
@@ -353,194 +595,696 @@ public final class BuildService {
                     FS.deleteTree(out.resolve("partials"));
                 } catch (Exception ignored) {
                 }
+                // Drop outputs of the previous build that this one no longer produces
+                if (incremental)
+                    removeStale(out, prev, next);
+            }
+            saved.save(out);
+            postIndex.save(out);
+            if (opts.memory()) {
+                var m = saved;
+                held.keySet().removeIf(k -> !m.contains(k) || k.startsWith("partials/"));
+                sourced.keySet().removeIf(k -> !m.contains(k));
+                shown = m;
             }
-            // feed/sitemap/robots simple domain swap
-            Path feed = out.resolve("feed.xml");
-            if (Files.exists(feed)) {
-                String t = Files.readString(feed, StandardCharsets.UTF_8);
-                String nt = t.replaceAll("https?://[^<]*/posts/", cfg.domain().replaceAll("/$", "") + "/posts/")
-                        .replaceFirst("(<link>)https?://[^<]*(</link>)",
-                                "$1" + cfg.domain().replaceAll("/$", "") + "/$2");
-                if (!nt.equals(t)) {
-                    if (dryRun)
-                        io.site.bloggen.util.Log.debug("[dry-run] would update feed.xml");
-                    else
-                        Files.writeString(feed, nt, StandardCharsets.UTF_8);
+        }
+        report(stats, opts);
+    }
+
+    /**
+     * Renders a page and writes it, into {@code held} when that is not null, unless its bytes match the last
+     * build's output.
+     */
+    private static void publish(Page pg, RenderCtx ctx, BuildManifest prev, BuildManifest next, Path out,
+            java.util.Map<String, byte[]> held, boolean incremental, boolean dryRun, BuildStats stats)
+            throws IOException {
+        if (!render(pg, ctx, prev, next, out, held, incremental))
+            return;
+        stats.rendered();
+        Path target = out.resolve(pg.rel);
+        var old = incremental ? prev.get(pg.rel) : null;
+        if (old != null && pg.outHash.equals(old.out()) && exists(pg.rel, out, held))
+            return; // same bytes as last build
+        if (dryRun) {
+            io.site.bloggen.util.Log.debug("[dry-run] would write: " + target);
+            return;
+        }
+        if (held != null) {
+            var buf = new java.io.ByteArrayOutputStream();
+            if (pg.parts != null) {
+                try (var w = new java.io.OutputStreamWriter(buf, StandardCharsets.UTF_8)) {
+                    writeStreamed(pg, ctx, w);
                 }
+            } else {
+                buf.writeBytes(pg.text.getBytes(StandardCharsets.UTF_8));
             }
-            Path sm = out.resolve("sitemap.xml");
-            if (Files.exists(sm)) {
-                String t = Files.readString(sm, StandardCharsets.UTF_8);
-                Pattern p = Pattern.compile("https?://[^<]+");
-                Matcher m = p.matcher(t);
-                StringBuffer sb = new StringBuffer();
-                String domain = cfg.domain().replaceAll("/$", "");
-                while (m.find()) {
-                    String url = m.group();
-                    String replaced = domain + url.replaceFirst("^https?://[^/]+", "");
-                    m.appendReplacement(sb, Matcher.quoteReplacement(replaced));
+            held.put(pg.rel, buf.toByteArray());
+            stats.wrote(buf.size());
+            return;
+        }
+        if (pg.parts != null) {
+            Files.createDirectories(target.getParent());
+            try (var w = new java.io.BufferedWriter(new java.io.OutputStreamWriter(
+                    Files.newOutputStream(target), StandardCharsets.UTF_8), STREAM_BUFFER)) {
+                writeStreamed(pg, ctx, w);
+            }
+            stats.wrote(Files.size(target));
+            return;
+        }
+        byte[] bytes = pg.text.getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(target.getParent());
+        Files.write(target, bytes);
+        stats.wrote(bytes.length);
+    }
+
+    /** Joins a streamed page's shell and parts into {@code w}, minified when the page minifies. */
+    private static void writeStreamed(Page pg, RenderCtx ctx, java.io.Writer w) throws IOException {
+        if (minifies(pg, ctx)) {
+            var m = new HtmlMinifier(w);
+            CatalogService.writeJoined(m, pg.text, pg.parts);
+            m.finish();
+        } else {
+            CatalogService.writeJoined(w, pg.text, pg.parts);
+        }
+    }
+
+    private static boolean exists(String rel, Path out, java.util.Map<String, byte[]> held) {
+        return held != null ? held.containsKey(rel) : Files.exists(out.resolve(rel));
+    }
+
+    /**
+     * The outputs of the last build with {@link BuildOptions#memory} into {@code out}, for
+     * {@link PreviewServer}: pages from memory, binaries from their source files or, when derived, from
+     * {@code out}.
+     */
+    public PreviewServer.Site preview(Path out) {
+        return new PreviewServer.Site() {
+            @Override
+            public BuildManifest manifest() {
+                return shown;
+            }
+
+            @Override
+            public boolean has(String key) {
+                return held.containsKey(key) || sourced.containsKey(key) || Files.isRegularFile(out.resolve(key));
+            }
+
+            @Override
+            public byte[] read(String key) throws IOException {
+                byte[] page = held.get(key);
+                if (page != null)
+                    return page;
+                Path f = sourced.get(key);
+                return Files.readAllBytes(f != null ? f : out.resolve(key));
+            }
+        };
+    }
+
+    private static void report(BuildStats stats, BuildOptions opts) throws IOException {
+        stats.end();
+        if (opts.stats())
+            io.site.bloggen.util.Log.info(stats.table().stripTrailing());
+        if (opts.statsFile() != null) {
+            Path sf = opts.statsFile();
+            if (sf.toAbsolutePath().getParent() != null)
+                Files.createDirectories(sf.toAbsolutePath().getParent());
+            Files.writeString(sf, stats.toJson(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageTask {
+        void run(Page pg) throws IOException;
+    }
+
+    /**
+     * Runs {@code task} for every page on up to {@code jobs} threads and returns the failures as
+     * "path: message", in page order regardless of which thread finished first.
+     */
+    private static java.util.List<String> forEachPage(java.util.List<Page> pages, int jobs, PageTask task) {
+        var failures = new java.util.ArrayList<String>();
+        if (jobs <= 1 || pages.size() <= 1) {
+            for (Page pg : pages) {
+                try {
+                    task.run(pg);
+                } catch (IOException | RuntimeException e) {
+                    failures.add(pg.rel + ": " + e.getMessage());
                 }
-                m.appendTail(sb);
-                String nt = sb.toString();
-                if (!nt.equals(t)) {
-                    if (dryRun)
-                        io.site.bloggen.util.Log.debug("[dry-run] would update sitemap.xml");
-                    else
-                        Files.writeString(sm, nt, StandardCharsets.UTF_8);
+            }
+            return failures;
+        }
+        try (var pool = java.util.concurrent.Executors.newFixedThreadPool(Math.min(jobs, pages.size()))) {
+            var futures = new java.util.ArrayList<java.util.concurrent.Future<Void>>(pages.size());
+            for (Page pg : pages) {
+                futures.add(pool.submit(() -> {
+                    task.run(pg);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    failures.add(pages.get(i).rel + ": " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.add(pages.get(i).rel + ": interrupted");
+                    pool.shutdownNow();
+                    break;
                 }
             }
-            Path rb = out.resolve("robots.txt");
-            if (Files.exists(rb)) {
-                String t = Files.readString(rb, StandardCharsets.UTF_8);
-                String nt = t.replaceAll("(?m)^(Sitemap: ).*$",
-                        "$1" + cfg.domain().replaceAll("/$", "") + "/sitemap.xml");
-                if (!nt.equals(t)) {
-                    if (dryRun)
-                        io.site.bloggen.util.Log.debug("[dry-run] would update robots.txt");
-                    else
-                        Files.writeString(rb, nt, StandardCharsets.UTF_8);
+        }
+        return failures;
+    }
+
+    private static final int STREAM_BUFFER = 64 * 1024;
+    private static final String CSS_BUNDLE = "assets/css/index.css";
+    private static final String CRITICAL_CSS = "assets/css/critical.css";
+
+    /** A stylesheet as the copy stage published it: the source file, else the packaged template. */
+    private static String cssSource(Path src, String rel, BuildStats stats) throws IOException {
+        Path p = src.resolve(rel);
+        byte[] bytes;
+        if (Files.isRegularFile(p)) {
+            bytes = Files.readAllBytes(p);
+        } else {
+            try (java.io.InputStream is = BuildService.class.getResourceAsStream("/templates/" + rel)) {
+                if (is == null)
+                    return null;
+                bytes = is.readAllBytes();
+            }
+        }
+        stats.read(bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces the copied entry stylesheet with the bundle, unless it already holds the same bytes; the
+     * manifest entry records the bundle hash and the stylesheets it was made from.
+     */
+    private static void writeBundle(Path out, CssBundler.Bundle bundle, BuildManifest next, BuildStats stats)
+            throws IOException {
+        var entry = next.get(CSS_BUNDLE);
+        if (entry == null)
+            return;
+        byte[] bytes = bundle.css().getBytes(StandardCharsets.UTF_8);
+        String h = BuildManifest.hash(bytes);
+        Path target = out.resolve(CSS_BUNDLE);
+        if (!Files.exists(target) || Files.size(target) != bytes.length || !h.equals(BuildManifest.hash(target))) {
+            Files.deleteIfExists(target); // may be a hardlink to the source stylesheet
+            Files.createDirectories(target.getParent());
+            Files.write(target, bytes);
+            stats.wrote(bytes.length);
+        }
+        next.put(entry.withOut("", h, String.join("|", bundle.inputs())));
+    }
+
+    /**
+     * A text output held in memory between the copy and write stages. For streamed catalog pages
+     * {@code text} is only the shell and {@code parts} are written into its slots at write time.
+     */
+    private static final class Page {
+        final String rel;
+        final boolean generated; // produced by CatalogService rather than copied from src
+        final java.util.List<CatalogService.Fragment> parts;
+        BuildManifest.Entry entry;
+        String text;
+        String outHash;
+
+        Page(String rel, String text, boolean generated, BuildManifest.Entry entry) {
+            this(rel, text, null, generated, entry);
+        }
+
+        Page(String rel, String text, java.util.List<CatalogService.Fragment> parts, boolean generated,
+                BuildManifest.Entry entry) {
+            this.rel = rel;
+            this.text = text;
+            this.parts = parts;
+            this.generated = generated;
+            this.entry = entry;
+        }
+    }
+
+    /** {@code base} is the configured domain without its trailing slash. */
+    private record RenderCtx(Path src, SiteConfig cfg, String base, java.util.Map<String, String> tokens, boolean hasAbout,
+            SiteModel model, java.util.Map<String, SeriesCtx> seriesCtx, java.util.Map<String, String> related,
+            java.util.Map<String, String> sidecars, boolean fmShow, boolean fmOpen, String globalKey,
+            IncludeCache includes, DomainUpdater domains, AssetFingerprints assets, ResponsiveImages images,
+            boolean minify) {
+        RenderCtx withModel(SiteModel model) {
+            return new RenderCtx(src, cfg, base, tokens, hasAbout, model, seriesCtx, related, sidecars, fmShow,
+                    fmOpen, globalKey, includes, domains, assets, images, minify);
+        }
+    }
+
+    /** Copy stage state: what was copied or staged in this build, checked against the previous manifest. */
+    private static final class Staging implements CatalogService.PageSink {
+        final Path out;
+        final BuildManifest prev;
+        final BuildManifest next;
+        final boolean incremental;
+        final boolean dryRun;
+        final BuildStats stats;
+        final java.util.Map<String, Page> pages = new java.util.TreeMap<>();
+        final java.util.Map<String, String> sidecars = new java.util.HashMap<>();
+        final java.util.Map<Path, Source> sources;
+        final java.util.Map<String, Path> sourced; // null unless binaries are served from src
+        boolean link; // cleared after the first failed link; the rest of the build copies
+
+        Staging(Path out, BuildManifest prev, BuildManifest next, boolean incremental, boolean dryRun,
+                boolean link, BuildStats stats, java.util.Map<Path, Source> sources,
+                java.util.Map<String, Path> sourced) {
+            this.out = out;
+            this.prev = prev;
+            this.next = next;
+            this.incremental = incremental;
+            this.dryRun = dryRun;
+            this.link = link;
+            this.stats = stats;
+            this.sources = sources;
+            this.sourced = sourced;
+        }
+
+        boolean has(String key) {
+            return next.contains(key) || pages.containsKey(key) || sidecars.containsKey(key);
+        }
+
+        /** The staged text of a page or sidecar, or null. */
+        String text(String key) {
+            Page pg = pages.get(key);
+            return pg != null ? pg.text : sidecars.get(key);
+        }
+
+        /**
+         * Stages a text page or sidecar, or copies (or hardlinks) a binary unless the manifest shows the output
+         * is already current (same size and mtime, or same content hash). Linked entries record no hash, so a
+         * changed mtime relinks them without reading the file.
+         */
+        void copy(Path file, String key) throws IOException {
+            if (has(key))
+                return; // already handled by an earlier copy loop in this build
+            var attrs = Files.readAttributes(file, java.nio.file.attribute.BasicFileAttributes.class);
+            long size = attrs.size();
+            long mtime = attrs.lastModifiedTime().toMillis();
+            if (key.endsWith(".meta.json")) {
+                sidecars.put(key, read(file, size, mtime).text());
+                return;
+            }
+            if (isTextPage(key)) {
+                var text = read(file, size, mtime);
+                pages.put(key, new Page(key, text.text(), false,
+                        new BuildManifest.Entry(key, 'S', size, mtime, text.hash(), "", "")));
+                return;
+            }
+            if (sourced != null) {
+                sourced.put(key, file);
+                next.put(new BuildManifest.Entry(key, 'S', size, mtime, "", "", ""));
+                return;
+            }
+            Path target = out.resolve(key);
+            var old = incremental ? prev.get(key) : null;
+            if (old != null && old.origin() == 'S' && old.size() == size && Files.exists(target)
+                    && (old.mtime() == mtime || !old.hash().isEmpty())) {
+                String h = old.mtime() == mtime ? old.hash() : BuildManifest.hash(file);
+                if (old.mtime() != mtime)
+                    stats.read(size);
+                if (h.equals(old.hash())) {
+                    next.put(new BuildManifest.Entry(key, 'S', size, mtime, h, "", h));
+                    return;
                 }
             }
-            // Generate catalogs (posts, archives, tags, feeds, sitemap)
-            var cat = new CatalogService().generate(src, out, cfg, dryRun);
-            if (cat instanceof io.site.bloggen.util.Result.Err<?> err) {
-                return io.site.bloggen.util.Result.err(err.code(), err.message());
+            if (dryRun) {
+                next.put(new BuildManifest.Entry(key, 'S', size, mtime, "", "", ""));
+                return;
             }
-            // Post-process again to expand includes/tokens in generated pages
-            try (var s = Files.walk(out)) {
-                s.filter(p -> Files.isRegularFile(p))
-                        .forEach(p -> {
-                            try {
-                                String name = p.getFileName().toString();
-                                boolean isText = name.endsWith(".html") || name.endsWith(".xml")
-                                        || name.endsWith(".txt") || name.endsWith(".webmanifest");
-                                if (!isText)
-                                    return;
-                                String orig = Files.readString(p, StandardCharsets.UTF_8);
-                                String t = expandIncludes(orig, src);
-                                if (!hasAbout) {
-                                    t = t.replaceAll(
-                                            "(?is)\\s*<a[^>]+href=\\\"/?about(?:\\.html)?\\\"[^>]*>.*?</a>\\s*", " ");
-                                }
-                                boolean fmShow2 = Boolean
-                                        .parseBoolean(cfg.extras().getOrDefault("frontmatter_show", "false"));
-                                boolean fmOpen2 = Boolean
-                                        .parseBoolean(cfg.extras().getOrDefault("frontmatter_always_open", "false"));
-                                if (!fmShow2) {
-                                    t = t.replaceAll("(?s)<!--\\s*FM_BLOCK_START\\s*-->.*?<!--\\s*FM_BLOCK_END\\s*-->",
-                                            "");
-                                } else {
-                                    t = t.replace("{{FM_OPEN_ATTR}}", fmOpen2 ? "open" : "");
-                                }
-                                var local2 = new java.util.LinkedHashMap<>(tokens);
-                                var rel2 = out.relativize(p).toString().replace(java.io.File.separatorChar, '/');
-                                String pagePath2 = "/" + rel2;
-                                local2.put("PAGE_PATH", pagePath2);
-                                local2.put("PAGE_URL", cfg.domain().replaceAll("/$", "") + pagePath2);
-                                if (!local2.containsKey("PAGE_DESCRIPTION") || local2.get("PAGE_DESCRIPTION") == null
-                                        || local2.get("PAGE_DESCRIPTION").isBlank()) {
-                                    local2.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
-                                }
-                                if (pagePath2.startsWith("/posts/") && pagePath2.endsWith(".html")) {
-                                    String cat2 = local2.getOrDefault("CATEGORY_PATH", "");
-                                    local2.put("BREADCRUMB", buildBreadcrumb(cat2, cfg));
-                                    local2.put("ARTICLE_SECTION", lastSegmentLabel(cat2, cfg));
-                                    local2.put("POST_JSONLD", buildJsonLd(orig, pagePath2, local2, cfg));
-                                    // series badge + prev/next
-                                    var sc2 = seriesCtx.get(pagePath2);
-                                    if (sc2 != null) {
-                                        local2.put("SERIES_BADGE", sc2.badgeHtml);
-                                        // Replace token if present
-                                        if (t.contains("{{SERIES_NAV}}")) {
-                                            t = t.replace("{{SERIES_NAV}}", sc2.navHtml == null ? "" : sc2.navHtml);
-                                        } else {
-                                            // Fallback injection if token missing (old templates)
-                                            if (sc2.navHtml != null && !sc2.navHtml.isBlank()
-                                                    && !t.contains("c-series-nav")) {
-                                                if (t.contains("<!--FM_BLOCK_END-->")) {
-                                                    t = t.replace("<!--FM_BLOCK_END-->",
-                                                            "<!--FM_BLOCK_END-->\n" + sc2.navHtml + "\n");
-                                                } else {
-                                                    // inject inside main
-                                                    if (t.contains("role=\"main\">")) {
-                                                        t = t.replace("role=\"main\">",
-                                                                "role=\"main\">\n" + sc2.navHtml + "\n");
-                                                    } else {
-                                                        t = t.replaceFirst("</header>",
-                                                                "</header>\n" + sc2.navHtml + "\n");
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    } else {
-                                        local2.put("SERIES_BADGE", "");
-                                        t = t.replace("{{SERIES_NAV}}", "");
-                                    }
-                                }
-                                if (!local2.containsKey("PAGE_DESCRIPTION") || local2.get("PAGE_DESCRIPTION") == null
-                                        || local2.get("PAGE_DESCRIPTION").isBlank()) {
-                                    local2.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
-                                }
-                                // nav current helpers
-                                boolean isHome = "index.html".equals(rel2) || rel2.isEmpty();
-                                boolean isAbout = "about.html".equals(rel2);
-                                boolean isPosts = rel2.startsWith("posts/");
-                                boolean isCats = rel2.startsWith("categories/");
-                                local2.put("HOME_CURRENT_ATTR", isHome ? "aria-current=\"page\"" : "");
-                                local2.put("ABOUT_CURRENT_ATTR", isAbout ? "aria-current=\"page\"" : "");
-                                local2.put("POSTS_CURRENT_ATTR", isPosts ? "aria-current=\"page\"" : "");
-                                local2.put("CATS_CURRENT_ATTR", isCats ? "aria-current=\"page\"" : "");
-                                String nt2 = TokenEngine.apply(t, local2);
-                                nt2 = DomainUpdater.apply(nt2, cfg);
-                                if (!nt2.equals(orig)) {
-                                    if (dryRun)
-                                        io.site.bloggen.util.Log.debug("[dry-run] would update: " + p);
-                                    else
-                                        Files.writeString(p, nt2, StandardCharsets.UTF_8);
-                                }
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        });
+            Files.createDirectories(target.getParent());
+            if (link && link(file, target)) {
+                stats.wrote(0);
+                next.put(new BuildManifest.Entry(key, 'S', size, mtime, "", "", ""));
+                return;
             }
-            return io.site.bloggen.util.Result.ok(null);
-        } catch (IOException e) {
-            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO, e.getMessage());
-        } catch (RuntimeException e) {
-            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.UNKNOWN, e.getMessage());
+            String h = BuildManifest.copyHashing(file, target);
+            Files.setLastModifiedTime(target, attrs.lastModifiedTime());
+            stats.read(size);
+            stats.wrote(size);
+            next.put(new BuildManifest.Entry(key, 'S', size, mtime, h, "", h));
+        }
+
+        /** The text of {@code file}, from an earlier build of this instance when its size and mtime match. */
+        private Source read(Path file, long size, long mtime) throws IOException {
+            var cached = sources.get(file);
+            if (cached != null && cached.size() == size && cached.mtime() == mtime)
+                return cached;
+            byte[] bytes = Files.readAllBytes(file);
+            stats.read(bytes.length);
+            var read = new Source(size, mtime, new String(bytes, StandardCharsets.UTF_8), BuildManifest.hash(bytes));
+            sources.put(file, read);
+            return read;
         }
-    }
 
-    private static String expandIncludes(String text, Path srcRoot) {
-        // Pattern: <!-- @include path --> or <!-- @include path="..." -->
-        java.util.regex.Pattern pat = java.util.regex.Pattern
-                .compile("<!--\\s*@include\\s+(?:path=)?\"?([^\"\s]+)\"?\\s*-->");
-        java.util.regex.Matcher m = pat.matcher(text);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String rel = m.group(1).trim();
-            java.nio.file.Path inc = srcRoot.resolve(rel).normalize();
-            String repl;
+        /**
+         * Replaces {@code target} with a hardlink to {@code file}; false (and copying from then on) when the
+         * output is on another file system or links are unsupported.
+         */
+        private boolean link(Path file, Path target) throws IOException {
+            Files.deleteIfExists(target);
             try {
-                if (java.nio.file.Files.exists(inc)) {
-                    repl = java.nio.file.Files.readString(inc, java.nio.charset.StandardCharsets.UTF_8);
+                Files.createLink(target, file);
+                return true;
+            } catch (UnsupportedOperationException | java.nio.file.FileSystemException e) {
+                io.site.bloggen.util.Log.warn("cannot hardlink assets, copying instead: " + e.getMessage());
+                link = false;
+                return false;
+            }
+        }
+
+        /** Adds a packaged template file unless the source already provided it. */
+        void overlay(String line) throws IOException {
+            if (has(line))
+                return;
+            Path target = out.resolve(line);
+            var old = incremental ? prev.get(line) : null;
+            if (!isTextPage(line) && old != null && old.origin() == 'T' && Files.exists(target)) {
+                next.put(old);
+                return;
+            }
+            try (java.io.InputStream is = BuildService.class.getResourceAsStream("/templates/" + line)) {
+                if (is == null)
+                    return;
+                byte[] bytes = is.readAllBytes();
+                stats.read(bytes.length);
+                String h = BuildManifest.hash(bytes);
+                var entry = new BuildManifest.Entry(line, 'T', bytes.length, -1, h, "", h);
+                if (isTextPage(line)) {
+                    pages.put(line, new Page(line, new String(bytes, StandardCharsets.UTF_8), false, entry));
+                    return;
+                }
+                if (!dryRun) {
+                    Files.createDirectories(target.getParent());
+                    Files.deleteIfExists(target); // may be a link to a source file from an earlier build
+                    Files.write(target, bytes);
+                    stats.wrote(bytes.length);
+                }
+                next.put(entry);
+            }
+        }
+
+        /** Sink for CatalogService: generated pages replace any staged copy at the same path. */
+        @Override
+        public void accept(String rel, String html) {
+            pages.put(rel, new Page(rel, html, true, new BuildManifest.Entry(rel, 'G', -1, -1, "", "", "")));
+        }
+
+        /** Keeps the parts unjoined; they are generated again, straight into the file, at write time. */
+        @Override
+        public void accept(String rel, String shell, java.util.List<CatalogService.Fragment> parts) {
+            pages.put(rel, new Page(rel, shell, java.util.List.copyOf(parts), true,
+                    new BuildManifest.Entry(rel, 'G', -1, -1, "", "", "")));
+        }
+    }
+
+    /**
+     * Renders a page in place. Copied pages get the full two-step expansion (the second step resolves tokens
+     * introduced by the first, e.g. inside ABOUT_LINK_HTML); generated pages only the second, as their
+     * catalog tokens are already applied. Returns false when the manifest shows the output is still current:
+     * same page text, same content for every partial it included last time, same site-wide inputs.
+     */
+    private static boolean render(Page pg, RenderCtx ctx, BuildManifest prev, BuildManifest next, Path out,
+            java.util.Map<String, byte[]> held, boolean incremental) throws IOException {
+        // Streamed pages: the parts are hashed as they are generated and folded into both page hashes
+        String partsHash = pg.parts == null ? null : hashParts(pg.parts);
+        String textHash = partsHash != null ? BuildManifest.hash(pg.text + '\u0000' + partsHash)
+                : pg.entry.hash().isEmpty() ? BuildManifest.hash(pg.text) : pg.entry.hash();
+        var old = incremental ? prev.get(pg.rel) : null;
+        if (old != null && !old.out().isEmpty() && exists(pg.rel, out, held)) {
+            var was = old.includes().isEmpty() ? java.util.List.<String>of()
+                    : java.util.List.of(old.includes().split("\\|"));
+            String deps = depsKey(pg, textHash, was, ctx);
+            if (deps.equals(old.deps())) {
+                next.put(pg.entry.withOut(deps, old.out(), old.includes()));
+                return false;
+            }
+        }
+        var used = new java.util.TreeSet<String>();
+        String expanded = ctx.includes().expand(pg.text, used);
+        String t = pg.generated ? expanded
+                : domainSwap(pg.rel, renderCopied(pg.text, expanded, pg.rel, ctx), ctx.base());
+        t = renderSecond(t, pg.generated ? expanded : null, pg.rel, ctx, used);
+        t = ctx.assets().rewrite(ctx.images().rewrite(t));
+        if (pg.parts == null && minifies(pg, ctx))
+            t = HtmlMinifier.minify(t);
+        pg.text = t;
+        // streamed pages are minified as they are written, so the flag is part of their output hash
+        pg.outHash = BuildManifest.hash(partsHash == null ? t
+                : t + '\u0000' + partsHash + (minifies(pg, ctx) ? "\u0000minify" : ""));
+        next.put(pg.entry.withOut(depsKey(pg, textHash, used, ctx), pg.outHash, String.join("|", used)));
+        return true;
+    }
+
+    private static boolean minifies(Page pg, RenderCtx ctx) {
+        return ctx.minify() && pg.rel.endsWith(".html");
+    }
+
+    /** Hash of the text {@code parts} write, without holding it in memory. */
+    private static String hashParts(java.util.List<CatalogService.Fragment> parts) throws IOException {
+        var md = sha256();
+        try (var w = new java.io.BufferedWriter(new java.io.OutputStreamWriter(new java.security.DigestOutputStream(
+                java.io.OutputStream.nullOutputStream(), md), StandardCharsets.UTF_8), STREAM_BUFFER)) {
+            for (var part : parts) {
+                part.writeTo(w);
+                w.write('\u0000');
+            }
+        }
+        return java.util.HexFormat.of().formatHex(md.digest());
+    }
+
+    private static java.security.MessageDigest sha256() {
+        try {
+            return java.security.MessageDigest.getInstance("SHA-256");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Everything a page render depends on, hashed. */
+    private static String depsKey(Page pg, String textHash, java.util.Collection<String> includes, RenderCtx ctx) {
+        var sc = ctx.seriesCtx().get("/" + pg.rel);
+        return BuildManifest.hash(ctx.globalKey() + '\u0000' + pg.generated + '\u0000' + textHash + '\u0000'
+                + ctx.includes().key(includes) + '\u0000'
+                + ctx.sidecars().getOrDefault(pg.rel + ".meta.json", "") + '\u0000'
+                + (sc == null ? "" : sc.badgeHtml + '\u0000' + sc.navHtml) + '\u0000'
+                + ctx.related().getOrDefault("/" + pg.rel, ""));
+    }
+
+    /** First step for copied pages: front matter block, page/post tokens, sidecar meta, domain. */
+    private static String renderCopied(String orig, String expanded, String rel, RenderCtx ctx) {
+        var cfg = ctx.cfg();
+        var tokens = ctx.tokens();
+        String t = expanded;
+        if (!ctx.hasAbout()) {
+            // Remove any hard-coded About anchors in included headers
+            t = ABOUT_LINK.matcher(t).replaceAll(" ");
+        }
+        // Front matter block visibility and behavior
+        if (!ctx.fmShow()) {
+            t = FM_BLOCK.matcher(t).replaceAll("");
+        } else {
+            t = t.replace("{{FM_OPEN_ATTR}}", ctx.fmOpen() ? "open" : "");
+        }
+        var local = new java.util.LinkedHashMap<>(tokens);
+        // Page tokens
+        String pagePath = "/" + rel;
+        local.put("PAGE_PATH", pagePath);
+        local.put("PAGE_URL", ctx.base() + pagePath);
+        // Default description
+        if (!local.containsKey("PAGE_DESCRIPTION") || local.get("PAGE_DESCRIPTION") == null
+                || local.get("PAGE_DESCRIPTION").isBlank()) {
+            local.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
+        }
+        // Post-specific tokens: breadcrumb, article section, JSON-LD
+        if (pagePath.startsWith("/posts/") && pagePath.endsWith(".html")) {
+            String cat = local.getOrDefault("CATEGORY_PATH", "");
+            local.put("BREADCRUMB", buildBreadcrumb(cat, cfg));
+            local.put("ARTICLE_SECTION", lastSegmentLabel(cat, cfg));
+            // orig is the scanned source text, so the model already knows its <h1>
+            Post scanned = ctx.model().byFile().get(rel.substring("posts/".length()));
+            local.put("POST_JSONLD", buildJsonLd(postHeading(orig, scanned), pagePath, local, cfg));
+            local.put("RELATED_POSTS", ctx.related().getOrDefault(pagePath, ""));
+            // series badge + prev/next
+            var sc = ctx.seriesCtx().get(pagePath);
+            if (sc != null) {
+                local.put("SERIES_BADGE", sc.badgeHtml);
+                // Replace token if present
+                if (t.contains("{{SERIES_NAV}}")) {
+                    t = t.replace("{{SERIES_NAV}}", sc.navHtml == null ? "" : sc.navHtml);
                 } else {
-                    // Fallback to packaged template resource: /templates/<rel>
-                    String resourcePath = "/templates/" + rel.replace('\\', '/');
-                    try (java.io.InputStream is = BuildService.class.getResourceAsStream(resourcePath)) {
-                        if (is != null)
-                            repl = new String(is.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-                        else
-                            repl = "<!-- include not found: " + rel + " -->";
+                    // Fallback removed to prevent header injection ghosting
+                }
+            } else {
+                local.put("SERIES_BADGE", "");
+                t = t.replace("{{SERIES_NAV}}", "");
+            }
+        }
+        if (!local.containsKey("PAGE_DESCRIPTION") || local.get("PAGE_DESCRIPTION") == null
+                || local.get("PAGE_DESCRIPTION").isBlank()) {
+            local.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
+        }
+        // Sidecar meta: <filename>.meta.json
+        String mj = ctx.sidecars().get(rel + ".meta.json");
+        if (mj != null) {
+            var mm = FlatJson.parse(mj);
+            for (var e : mm.entrySet()) {
+                String k = e.getKey() == null ? "" : e.getKey().trim();
+                String v = sanitizeForOutput(e.getValue());
+                if (!k.isEmpty() && v != null && !v.isBlank()) {
+                    local.put(k.toUpperCase(), v);
+                }
+            }
+        }
+        String nt = TokenEngine.apply(t, local);
+        return ctx.domains().apply(nt);
+    }
+
+    /**
+     * Second step for every page: nested includes/tokens, nav current helpers, domain. {@code expanded} is
+     * the include-expanded text when the caller already has it.
+     */
+    private static String renderSecond(String orig, String expanded, String rel2, RenderCtx ctx,
+            java.util.Set<String> used) {
+        var cfg = ctx.cfg();
+        var tokens = ctx.tokens();
+        String t = expanded != null ? expanded : ctx.includes().expand(orig, used);
+        if (!ctx.hasAbout()) {
+            t = ABOUT_LINK.matcher(t).replaceAll(" ");
+        }
+        if (!ctx.fmShow()) {
+            t = FM_BLOCK.matcher(t).replaceAll("");
+        } else {
+            t = t.replace("{{FM_OPEN_ATTR}}", ctx.fmOpen() ? "open" : "");
+        }
+        var local2 = new java.util.LinkedHashMap<>(tokens);
+        String pagePath2 = "/" + rel2;
+        local2.put("PAGE_PATH", pagePath2);
+        local2.put("PAGE_URL", ctx.base() + pagePath2);
+        if (!local2.containsKey("PAGE_DESCRIPTION") || local2.get("PAGE_DESCRIPTION") == null
+                || local2.get("PAGE_DESCRIPTION").isBlank()) {
+            local2.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
+        }
+        if (pagePath2.startsWith("/posts/") && pagePath2.endsWith(".html")) {
+            String cat2 = local2.getOrDefault("CATEGORY_PATH", "");
+            local2.put("BREADCRUMB", buildBreadcrumb(cat2, cfg));
+            local2.put("ARTICLE_SECTION", lastSegmentLabel(cat2, cfg));
+            if (t.contains("POST_JSONLD")) // copied posts already had it resolved in the first step
+                local2.put("POST_JSONLD", buildJsonLd(postHeading(orig, null), pagePath2, local2, cfg));
+            local2.put("RELATED_POSTS", ctx.related().getOrDefault(pagePath2, ""));
+            // series badge + prev/next
+            var sc2 = ctx.seriesCtx().get(pagePath2);
+            if (sc2 != null) {
+                local2.put("SERIES_BADGE", sc2.badgeHtml);
+                // Replace token if present
+                if (t.contains("{{SERIES_NAV}}")) {
+                    t = t.replace("{{SERIES_NAV}}", sc2.navHtml == null ? "" : sc2.navHtml);
+                } else {
+                    // Fallback injection if token missing (old templates)
+                    if (sc2.navHtml != null && !sc2.navHtml.isBlank()
+                            && !t.contains("c-series-nav")) {
+                        if (t.contains("<!--FM_BLOCK_END-->")) {
+                            t = t.replace("<!--FM_BLOCK_END-->",
+                                    "<!--FM_BLOCK_END-->\n" + sc2.navHtml + "\n");
+                        } else {
+                            // inject inside main
+                            if (t.contains("role=\"main\">")) {
+                                t = t.replace("role=\"main\">",
+                                        "role=\"main\">\n" + sc2.navHtml + "\n");
+                            } else {
+                                t = t.replaceFirst("</header>",
+                                        "</header>\n" + sc2.navHtml + "\n");
+                            }
+                        }
                     }
                 }
-            } catch (java.io.IOException e) {
-                repl = "<!-- include error: " + rel + " -->";
+            } else {
+                local2.put("SERIES_BADGE", "");
+                t = t.replace("{{SERIES_NAV}}", "");
             }
-            m.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(repl));
         }
-        m.appendTail(sb);
-        return sb.toString();
+        if (!local2.containsKey("PAGE_DESCRIPTION") || local2.get("PAGE_DESCRIPTION") == null
+                || local2.get("PAGE_DESCRIPTION").isBlank()) {
+            local2.put("PAGE_DESCRIPTION", tokens.getOrDefault("SITE_DESCRIPTION", ""));
+        }
+        // nav current helpers
+        boolean isHome = "index.html".equals(rel2) || rel2.isEmpty();
+        boolean isAbout = "about.html".equals(rel2);
+        boolean isPosts = rel2.startsWith("posts/");
+        boolean isCats = rel2.startsWith("categories/");
+        local2.put("HOME_CURRENT_ATTR", isHome ? "aria-current=\"page\"" : "");
+        local2.put("ABOUT_CURRENT_ATTR", isAbout ? "aria-current=\"page\"" : "");
+        local2.put("POSTS_CURRENT_ATTR", isPosts ? "aria-current=\"page\"" : "");
+        local2.put("CATS_CURRENT_ATTR", isCats ? "aria-current=\"page\"" : "");
+        String nt2 = TokenEngine.apply(t, local2);
+        return ctx.domains().apply(nt2);
+    }
+
+    /** feed/sitemap/robots simple domain swap for copies of those files from src. */
+    private static String domainSwap(String rel, String t, String domain) {
+        switch (rel) {
+            case "feed.xml" -> {
+                String posts = FEED_POST_URL.matcher(t).replaceAll(domain + "/posts/");
+                return FEED_LINK.matcher(posts).replaceFirst("$1" + domain + "/$2");
+            }
+            case "sitemap.xml" -> {
+                Matcher m = SITEMAP_URL.matcher(t);
+                StringBuffer sb = new StringBuffer();
+                while (m.find()) {
+                    String url = m.group();
+                    String replaced = domain + URL_ORIGIN.matcher(url).replaceFirst("");
+                    m.appendReplacement(sb, Matcher.quoteReplacement(replaced));
+                }
+                m.appendTail(sb);
+                return sb.toString();
+            }
+            case "robots.txt" -> {
+                return ROBOTS_SITEMAP.matcher(t).replaceAll("$1" + domain + "/sitemap_index.xml");
+            }
+            default -> {
+                return t;
+            }
+        }
+    }
+
+    /** Hash of the site-wide render inputs; any change to site.json re-renders every page. */
+    private static String globalKey(SiteConfig cfg, java.util.Map<String, String> tokens, AssetFingerprints assets,
+            ResponsiveImages images, boolean minify) {
+        return BuildManifest.hash(cfg.domain() + '\u0000' + cfg.siteName() + '\u0000' + cfg.rssTitle() + '\u0000'
+                + cfg.ogDefault() + '\u0000' + new java.util.TreeMap<>(cfg.extras()) + '\u0000' + tokens
+                + '\u0000' + assets.key() + (images.key().isEmpty() ? "" : "\u0000" + images.key())
+                + (minify ? "\u0000minify" : ""));
+    }
+
+    private static void removeStale(Path out, BuildManifest prev, BuildManifest next) throws IOException {
+        for (String k : prev.paths()) {
+            if (next.contains(k))
+                continue;
+            Path stale = out.resolve(k);
+            if (Files.deleteIfExists(stale))
+                io.site.bloggen.util.Log.debug("removed stale output: " + k);
+            for (Path d = stale.getParent(); d != null && !d.equals(out); d = d.getParent()) {
+                try (var ls = Files.list(d)) {
+                    if (ls.findAny().isPresent())
+                        break;
+                }
+                Files.deleteIfExists(d);
+            }
+        }
+    }
+
+    private static String relKey(Path rel) {
+        return rel.toString().replace(java.io.File.separatorChar, '/');
+    }
+
+    private static boolean isTextPage(String name) {
+        return name.endsWith(".html") || name.endsWith(".xml") || name.endsWith(".txt")
+                || name.endsWith(".webmanifest");
     }
 
     private static class SeriesEntry {
@@ -548,9 +1292,6 @@ public final class BuildService {
         String url;
         String title;
         String seriesTitle;
-        String seriesSlug;
-        int order;
-        java.time.LocalDate date;
     }
 
     private static class SeriesCtx {
@@ -558,69 +1299,19 @@ public final class BuildService {
         String navHtml;
     }
 
-    private static java.util.Map<String, SeriesCtx> computeSeriesContext(Path out) {
+    private static java.util.Map<String, SeriesCtx> computeSeriesContext(SiteModel model) {
         java.util.Map<String, java.util.List<SeriesEntry>> bySeries = new java.util.LinkedHashMap<>();
-        java.nio.file.Path posts = out.resolve("posts");
-        if (!java.nio.file.Files.exists(posts))
-            return java.util.Map.of();
-        java.util.regex.Pattern filePat = java.util.regex.Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})-(.+)\\.html$");
-        java.util.regex.Pattern h1Pat = java.util.regex.Pattern.compile("<h1[^>]*>(.*?)</h1>",
-                java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.DOTALL);
-        try (var s = java.nio.file.Files.list(posts)) {
-            for (java.nio.file.Path p : (Iterable<java.nio.file.Path>) s
-                    .filter(f -> f.getFileName().toString().endsWith(".html"))::iterator) {
-                String name = p.getFileName().toString();
-                java.util.regex.Matcher fm = filePat.matcher(name);
-                if (!fm.matches())
-                    continue;
-                java.time.LocalDate date;
-                try {
-                    date = java.time.LocalDate.parse(fm.group(1));
-                } catch (Exception e) {
-                    date = java.time.LocalDate.MIN;
-                }
-                java.nio.file.Path meta = p.resolveSibling(name + ".meta.json");
-                if (!java.nio.file.Files.exists(meta))
-                    continue;
-                String mj = java.nio.file.Files.readString(meta, java.nio.charset.StandardCharsets.UTF_8);
-                var mm = io.site.bloggen.util.FlatJson.parse(mj);
-                String series = mm.getOrDefault("SERIES", "");
-                if (series == null || series.isBlank())
-                    continue;
-                String ord = mm.getOrDefault("SERIES_ORDER", "");
-                int order = Integer.MAX_VALUE;
-                try {
-                    if (ord != null && !ord.isBlank())
-                        order = Integer.parseInt(ord.trim());
-                } catch (Exception ignored) {
-                }
-                String html = java.nio.file.Files.readString(p, java.nio.charset.StandardCharsets.UTF_8);
-                java.util.regex.Matcher m = h1Pat.matcher(html);
-                String title = m.find() ? m.group(1).replaceAll("<[^>]+>", "").trim() : name;
+        for (var sr : model.series().values()) { // already in reading order
+            var list = new java.util.ArrayList<SeriesEntry>();
+            for (Post p : sr.posts()) {
                 SeriesEntry se = new SeriesEntry();
-                String rel = out.relativize(p).toString().replace(java.io.File.separatorChar, '/');
-                se.pagePath = "/" + rel;
+                se.pagePath = "/posts/" + p.fileName();
                 se.url = se.pagePath;
-                se.title = title;
-                se.seriesTitle = series;
-                se.seriesSlug = io.site.bloggen.infra.Slug.of(series);
-                se.order = order;
-                se.date = date;
-                bySeries.computeIfAbsent(se.seriesSlug, k -> new java.util.ArrayList<>()).add(se);
+                se.title = p.heading() != null ? p.heading() : p.fileName();
+                se.seriesTitle = sr.title();
+                list.add(se);
             }
-        } catch (java.io.IOException ignored) {
-        }
-        // sort
-        for (var e : bySeries.entrySet()) {
-            e.getValue().sort((a, b) -> {
-                int ao = a.order;
-                int bo = b.order;
-                if (ao != Integer.MAX_VALUE || bo != Integer.MAX_VALUE) {
-                    if (ao != bo)
-                        return Integer.compare(ao, bo);
-                }
-                return a.date.compareTo(b.date);
-            });
+            bySeries.put(sr.slug(), list);
         }
         // build ctx per page
         java.util.Map<String, SeriesCtx> ctx = new java.util.HashMap<>();
@@ -710,22 +1401,35 @@ public final class BuildService {
         return Character.toUpperCase(s.charAt(0)) + (s.length() > 1 ? s.substring(1) : "");
     }
 
-    private static String buildJsonLd(String html, String pagePath, java.util.Map<String, String> local,
+    private static final Pattern H1 = Pattern.compile("<h1[^>]*>(.*?)</h1>",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern POST_DATE = Pattern.compile("/posts/(\\d{4}-\\d{2}-\\d{2})-");
+    /** Hard-coded About anchors in included headers, dropped when the site has no about page. */
+    private static final Pattern ABOUT_LINK = Pattern.compile(
+            "(?is)\\s*<a[^>]+href=\\\"/?about(?:\\.html)?\\\"[^>]*>.*?</a>\\s*");
+    private static final Pattern FM_BLOCK = Pattern.compile(
+            "(?s)<!--\\s*FM_BLOCK_START\\s*-->.*?<!--\\s*FM_BLOCK_END\\s*-->");
+    // domainSwap: copied feed.xml, sitemap.xml and robots.txt
+    private static final Pattern FEED_POST_URL = Pattern.compile("https?://[^<]*/posts/");
+    private static final Pattern FEED_LINK = Pattern.compile("(<link>)https?://[^<]*(</link>)");
+    private static final Pattern SITEMAP_URL = Pattern.compile("https?://[^<]+");
+    private static final Pattern URL_ORIGIN = Pattern.compile("^https?://[^/]+");
+    private static final Pattern ROBOTS_SITEMAP = Pattern.compile("(?m)^(Sitemap: ).*$");
+
+    /** First {@code <h1>} text of a post page ("" when none): from the site model, else from {@code html}. */
+    private static String postHeading(String html, Post scanned) {
+        if (scanned != null)
+            return scanned.heading() == null ? "" : scanned.heading();
+        Matcher m = H1.matcher(html);
+        return m.find() ? m.group(1).replaceAll("<[^>]+>", "").trim() : "";
+    }
+
+    private static String buildJsonLd(String title, String pagePath, java.util.Map<String, String> local,
             io.site.bloggen.core.SiteConfig cfg) {
-        // Extract h1
-        String title = "";
-        try {
-            java.util.regex.Matcher m = java.util.regex.Pattern.compile("<h1[^>]*>(.*?)</h1>",
-                    java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.DOTALL).matcher(html);
-            if (m.find())
-                title = m.group(1).replaceAll("<[^>]+>", "").trim();
-        } catch (Exception ignored) {
-        }
         if (title.isBlank())
             title = cfg.siteName();
         String date = "";
-        java.util.regex.Matcher dm = java.util.regex.Pattern.compile("/posts/(\\d{4}-\\d{2}-\\d{2})-")
-                .matcher(pagePath);
+        Matcher dm = POST_DATE.matcher(pagePath);
         if (dm.find())
             date = dm.group(1);
         String section = lastSegmentLabel(local.getOrDefault("CATEGORY_PATH", ""), cfg);
@@ -0,0 +1,112 @@
+package io.site.bloggen.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-phase build metrics: wall time, files/bytes read and written, pages rendered. Phases are started
+ * from the build thread; counters may be bumped from render workers while a phase is open.
+ */
+public final class BuildStats {
+    private static final class Phase {
+        final String name;
+        final long start = System.nanoTime();
+        long nanos;
+        final LongAdder filesRead = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder filesWritten = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final LongAdder pages = new LongAdder();
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private final List<Phase> phases = new ArrayList<>();
+    private volatile Phase current = new Phase("setup");
+
+    /** Closes the open phase and starts {@code name}. */
+    public void begin(String name) {
+        end();
+        current = new Phase(name);
+    }
+
+    public void end() {
+        Phase p = current;
+        if (p != null) {
+            p.nanos = System.nanoTime() - p.start;
+            phases.add(p);
+            current = null;
+        }
+    }
+
+    public void read(long bytes) {
+        Phase p = current;
+        if (p != null) {
+            p.filesRead.increment();
+            p.bytesRead.add(bytes);
+        }
+    }
+
+    public void wrote(long bytes) {
+        Phase p = current;
+        if (p != null) {
+            p.filesWritten.increment();
+            p.bytesWritten.add(bytes);
+        }
+    }
+
+    public void rendered() {
+        Phase p = current;
+        if (p != null)
+            p.pages.increment();
+    }
+
+    public String table() {
+        StringBuilder sb = new StringBuilder();
+        String fmt = "%-10s %9s %7s %11s %7s %11s %6s%n";
+        sb.append(String.format(fmt, "phase", "ms", "read", "read KiB", "written", "written KiB", "pages"));
+        long[] total = new long[6];
+        for (Phase p : phases) {
+            long[] v = values(p);
+            for (int i = 0; i < v.length; i++)
+                total[i] += v[i];
+            sb.append(row(fmt, p.name, v));
+        }
+        sb.append(row(fmt, "total", total));
+        return sb.toString();
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"phases\": [");
+        long totalNanos = 0;
+        for (int i = 0; i < phases.size(); i++) {
+            Phase p = phases.get(i);
+            long[] v = values(p);
+            totalNanos += p.nanos;
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"name\": \"").append(p.name).append("\", \"ms\": ").append(millis(p.nanos))
+                    .append(", \"filesRead\": ").append(v[1]).append(", \"bytesRead\": ").append(v[2])
+                    .append(", \"filesWritten\": ").append(v[3]).append(", \"bytesWritten\": ").append(v[4])
+                    .append(", \"pages\": ").append(v[5]).append('}');
+        }
+        sb.append("\n  ],\n  \"totalMs\": ").append(millis(totalNanos)).append("\n}\n");
+        return sb.toString();
+    }
+
+    private static long[] values(Phase p) {
+        return new long[] { p.nanos, p.filesRead.sum(), p.bytesRead.sum(), p.filesWritten.sum(),
+                p.bytesWritten.sum(), p.pages.sum() };
+    }
+
+    private static String row(String fmt, String name, long[] v) {
+        return String.format(fmt, name, millis(v[0]), v[1], (v[2] + 1023) / 1024, v[3], (v[4] + 1023) / 1024,
+                v[5]);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(java.util.Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+}
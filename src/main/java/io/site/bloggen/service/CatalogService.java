@@ -2,35 +2,113 @@ package io.site.bloggen.service;
 
 import io.site.bloggen.core.Post;
 import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.core.SiteModel;
 import io.site.bloggen.template.TemplateVars;
-import io.site.bloggen.template.TokenEngine;
+import io.site.bloggen.template.Template;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 public final class CatalogService {
-    public io.site.bloggen.util.Result<Void> generate(Path src, Path out, SiteConfig cfg, boolean dryRun) {
-        try {
-            var posts = new ContentScanner().scanPosts(src);
-            boolean fromOut = false;
-            if (posts.isEmpty() && !out.equals(src)) {
-                // Fallback: if src/posts empty, try out/posts (robustness for atypical layouts)
-                var alt = new ContentScanner().scanPosts(out);
-                if (!alt.isEmpty()) {
-                    posts = alt;
-                    fromOut = true;
-                }
+    private static final ZoneId ZONE = ZoneId.of("Asia/Seoul");
+
+    /** Receives each generated page by its output-relative path ("posts/index.html"). */
+    @FunctionalInterface
+    public interface PageSink {
+        void accept(String rel, String content) throws IOException;
+
+        /**
+         * A page whose {@link #slot(int)} markers in {@code shell} stand for {@code parts}, so long lists can be
+         * written straight to the output. Sinks that cannot stream get the joined text.
+         */
+        default void accept(String rel, String shell, List<Fragment> parts) throws IOException {
+            StringBuilder sb = new StringBuilder(shell.length() + 4096);
+            writeJoined(sb, shell, parts);
+            accept(rel, sb.toString());
+        }
+    }
+
+    /** Writes one generated part of a page (e.g. a card per post); may be called more than once. */
+    @FunctionalInterface
+    public interface Fragment {
+        void writeTo(Appendable out) throws IOException;
+    }
+
+    /** Placeholder for {@code parts.get(i)}; survives token, include and domain passes over the shell. */
+    public static String slot(int i) {
+        return "\u0000" + i + "\u0000";
+    }
+
+    /** Writes {@code shell} with each {@link #slot(int)} replaced by its fragment. */
+    public static void writeJoined(Appendable out, String shell, List<Fragment> parts) throws IOException {
+        int from = 0;
+        int a = shell.indexOf('\u0000');
+        while (a >= 0) {
+            int b = shell.indexOf('\u0000', a + 1);
+            if (b < 0)
+                break;
+            int i = parseSlot(shell, a + 1, b);
+            if (i < 0 || i >= parts.size()) {
+                a = b;
+                continue;
             }
-            io.site.bloggen.util.Log.debug("posts found: " + posts.size() + (fromOut ? " (from out)" : " (from src)"));
+            out.append(shell, from, a);
+            parts.get(i).writeTo(out);
+            from = b + 1;
+            a = shell.indexOf('\u0000', from);
+        }
+        out.append(shell, from, shell.length());
+    }
+
+    private static int parseSlot(String s, int from, int to) {
+        if (from == to || to - from > 4)
+            return -1;
+        int n = 0;
+        for (int k = from; k < to; k++) {
+            char c = s.charAt(k);
+            if (c < '0' || c > '9')
+                return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    public io.site.bloggen.util.Result<Void> generate(Path src, SiteConfig cfg, PageSink sink) {
+        try {
+            return generate(src, cfg, SiteModel.of(new ContentScanner().scanPosts(src)), sink);
+        } catch (IOException e) {
+            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO, e.getMessage());
+        }
+    }
+
+    public io.site.bloggen.util.Result<Void> generate(Path src, SiteConfig cfg, SiteModel model, PageSink sink) {
+        return generate(src, cfg, model, rel -> null, sink);
+    }
+
+    /**
+     * Generates catalogs from the build's shared site model; {@code staged} maps "posts/x.html" to its source
+     * text when the build holds it in memory (null otherwise, read from {@code src}).
+     */
+    public io.site.bloggen.util.Result<Void> generate(Path src, SiteConfig cfg, SiteModel model,
+            java.util.function.Function<String, String> staged, PageSink sink) {
+        try {
+            var posts = model.posts();
+            io.site.bloggen.util.Log.debug("posts found: " + posts.size());
             var tokens = TemplateVars.from(cfg);
+            // every page below, in generation order, for the sitemap
+            List<SitemapUrl> urls = new ArrayList<>();
+            urls.add(new SitemapUrl("/", newest(posts), "1.0"));
+            Path about = src.resolve("about.html");
+            if (java.nio.file.Files.exists(about))
+                urls.add(new SitemapUrl("/about.html", w3c(java.nio.file.Files.getLastModifiedTime(about).toInstant()
+                        .atZone(ZONE)), null));
             // homepage (index.html) — latest post featured + recent list
             try {
-                String homeTpl = loadResource("/templates/index.html");
+                Template homeTpl = template("/templates/index.html");
                 String featured = posts.isEmpty() ? "<p>아직 게시글이 없습니다.</p>" : listItem(posts.get(0));
                 int recentLimit = homeRecentLimit(cfg);
                 String recent = posts.size() <= 1 ? ""
@@ -42,13 +120,13 @@ public final class CatalogService {
                 local.put("HOME_MORE_LABEL", cfg.extras().getOrDefault("home_more_label", "더 보기: 전체 글"));
                 local.put("HOME_FEATURED", featured);
                 local.put("HOME_RECENT", recent);
-                String homeHtml = TokenEngine.apply(homeTpl, local);
-                write(out.resolve("index.html"), homeHtml, dryRun);
+                String homeHtml = homeTpl.render(local);
+                sink.accept("index.html", homeHtml);
             } catch (IOException e) {
                 // If template missing, continue without failing build
             }
             // posts/index.html
-            String postsTpl = loadResource("/templates/posts/index.html");
+            Template postsTpl = template("/templates/posts/index.html");
             int pageSize = postsPageSize(cfg);
             if (pageSize > 0 && posts.size() > pageSize) {
                 int totalPages = (int) Math.ceil(posts.size() / (double) pageSize);
@@ -56,29 +134,27 @@ public final class CatalogService {
                     int from = (page - 1) * pageSize;
                     int to = Math.min(from + pageSize, posts.size());
                     List<Post> slice = posts.subList(from, to);
-                    String postsCards = buildPostsList(slice);
                     String pagination = buildPaginationNav(page, totalPages, cfg, i -> pageHref("/posts", i));
-                    String postsHtml = postsTpl.replace("{{POSTS_CARDS}}", postsCards)
-                            .replace("{{POSTS_PAGINATION}}", pagination);
                     var local = new LinkedHashMap<>(tokens);
+                    local.put("POSTS_CARDS", slot(0));
+                    local.put("POSTS_PAGINATION", pagination);
                     local.put("POSTS_CANONICAL_PATH", pageHref("/posts", page));
-                    postsHtml = TokenEngine.apply(postsHtml, local);
-                    Path target = page == 1 ? out.resolve("posts/index.html")
-                            : out.resolve("posts/page/" + page + "/index.html");
-                    write(target, postsHtml, dryRun);
+                    String target = page == 1 ? "posts/index.html"
+                            : "posts/page/" + page + "/index.html";
+                    urls.add(new SitemapUrl(pageHref("/posts", page), newest(slice), null));
+                    sink.accept(target, postsTpl.render(local), List.of(out -> writePostsList(out, slice)));
                 }
             } else {
-                String postsCards = buildPostsList(posts);
-                String postsHtml = postsTpl.replace("{{POSTS_CARDS}}", postsCards)
-                        .replace("{{POSTS_PAGINATION}}", "");
                 var local = new LinkedHashMap<>(tokens);
+                local.put("POSTS_CARDS", slot(0));
+                local.put("POSTS_PAGINATION", "");
                 local.put("POSTS_CANONICAL_PATH", pageHref("/posts", 1));
-                postsHtml = TokenEngine.apply(postsHtml, local);
-                write(out.resolve("posts/index.html"), postsHtml, dryRun);
+                urls.add(new SitemapUrl(pageHref("/posts", 1), newest(posts), null));
+                sink.accept("posts/index.html", postsTpl.render(local), List.of(out -> writePostsList(out, posts)));
             }
 
             // archives.html
-            String archTpl = loadResource("/templates/archives.html");
+            Template archTpl = template("/templates/archives.html");
             int archPageSize = archivesPageSize(cfg);
             if (archPageSize > 0 && posts.size() > archPageSize) {
                 int total = (int) Math.ceil(posts.size() / (double) archPageSize);
@@ -86,35 +162,35 @@ public final class CatalogService {
                     int from = (page - 1) * archPageSize;
                     int to = Math.min(from + archPageSize, posts.size());
                     List<Post> slice = posts.subList(from, to);
-                    String items = buildArchiveList(slice);
                     String pagination = buildPaginationNav(page, total, cfg, i -> archivesHref(i));
-                    String html = archTpl.replace("{{ARCHIVE_LIST}}", items)
-                            .replace("{{ARCHIVE_PAGINATION}}", pagination);
                     var local = new LinkedHashMap<>(tokens);
+                    local.put("ARCHIVE_LIST", slot(0));
+                    local.put("ARCHIVE_PAGINATION", pagination);
                     local.put("ARCHIVES_CANONICAL_PATH", archivesHref(page));
-                    html = TokenEngine.apply(html, local);
-                    Path target = page == 1 ? out.resolve("archives.html")
-                            : out.resolve("archives/page/" + page + "/index.html");
-                    write(target, html, dryRun);
+                    String target = page == 1 ? "archives.html"
+                            : "archives/page/" + page + "/index.html";
+                    urls.add(new SitemapUrl(archivesHref(page), newest(slice), null));
+                    sink.accept(target, archTpl.render(local), List.of(out -> writeArchiveList(out, slice)));
                 }
             } else {
-                String items = buildArchiveList(posts);
-                String html = archTpl.replace("{{ARCHIVE_LIST}}", items)
-                        .replace("{{ARCHIVE_PAGINATION}}", "");
                 var local = new LinkedHashMap<>(tokens);
+                local.put("ARCHIVE_LIST", slot(0));
+                local.put("ARCHIVE_PAGINATION", "");
                 local.put("ARCHIVES_CANONICAL_PATH", archivesHref(1));
-                html = TokenEngine.apply(html, local);
-                write(out.resolve("archives.html"), html, dryRun);
+                urls.add(new SitemapUrl(archivesHref(1), newest(posts), null));
+                sink.accept("archives.html", archTpl.render(local), List.of(out -> writeArchiveList(out, posts)));
             }
 
             // tags index + pages
-            Map<String, List<Post>> byTag = groupByTag(posts);
+            Map<String, List<Post>> byTag = model.tags();
             String tagsList = buildTagsList(byTag.keySet(), cfg);
-            String tagsIndexTpl = loadResource("/templates/tags/index.html");
-            String tagsIndexHtml = TokenEngine.apply(tagsIndexTpl.replace("{{TAGS_LIST}}", tagsList), tokens);
-            write(out.resolve("tags/index.html"), tagsIndexHtml, dryRun);
+            var tagsLocal = new LinkedHashMap<>(tokens);
+            tagsLocal.put("TAGS_LIST", tagsList);
+            String tagsIndexHtml = template("/templates/tags/index.html").render(tagsLocal);
+            sink.accept("tags/index.html", tagsIndexHtml);
+            urls.add(new SitemapUrl("/tags/", newest(posts), null));
             // tag pages
-            String tagTpl = loadResource("/templates/tags/tag-template.html");
+            Template tagTpl = template("/templates/tags/tag-template.html");
             int tagPageSize = tagsPageSize(cfg);
             for (String tag : byTag.keySet()) {
                 List<Post> tagged = byTag.get(tag);
@@ -127,84 +203,82 @@ public final class CatalogService {
                         int to = Math.min(from + tagPageSize, tagged.size());
                         slice = tagged.subList(from, to);
                     }
-                    String items = buildPostsList(slice);
+                    final List<Post> items = slice;
                     String pagination = buildPaginationNav(page, total, cfg, i -> tagHref(tag, i));
                     var local = new LinkedHashMap<>(tokens);
                     local.put("TAG_NAME", tagLabel(tag, cfg));
                     local.put("TAG_SLUG", tag);
                     local.put("TAG_CANONICAL_PATH", tagHref(tag, page));
-                    String html = tagTpl.replace("{{TAG_POSTS}}", items)
-                            .replace("{{TAG_PAGINATION}}", pagination);
-                    html = TokenEngine.apply(html, local);
-                    Path target = page == 1 ? out.resolve("tags/" + tag + ".html")
-                            : out.resolve("tags/" + tag + "/page/" + page + "/index.html");
-                    write(target, html, dryRun);
+                    local.put("TAG_POSTS", slot(0));
+                    local.put("TAG_PAGINATION", pagination);
+                    String target = page == 1 ? "tags/" + tag + ".html"
+                            : "tags/" + tag + "/page/" + page + "/index.html";
+                    urls.add(new SitemapUrl(tagHref(tag, page), newest(items), null));
+                    sink.accept(target, tagTpl.render(local), List.of(out -> writePostsList(out, items)));
                 }
             }
 
             // categories index + pages (CATEGORY_PATH)
-            Map<String, List<Post>> byCat = groupByCategory(posts);
+            Map<String, List<Post>> byCat = model.categories();
             if (!byCat.isEmpty()) {
-                String catsIndexTpl = loadResource("/templates/categories/index.html");
-                String explorer = buildCategoryExplorer(posts, cfg);
-                String catsIndexHtml = TokenEngine.apply(catsIndexTpl.replace("{{CATEGORIES_EXPLORER}}", explorer),
-                        tokens);
-                write(out.resolve("categories/index.html"), catsIndexHtml, dryRun);
-
-                String catTpl = loadResource("/templates/categories/category-template.html");
+                var catsLocal = new LinkedHashMap<>(tokens);
+                catsLocal.put("CATEGORIES_EXPLORER", slot(0));
+                CatNode tree = buildCategoryTree(posts);
+                urls.add(new SitemapUrl("/categories/", newest(posts), null));
+                sink.accept("categories/index.html", template("/templates/categories/index.html").render(catsLocal),
+                        List.of(out -> writeCategoryExplorer(out, tree, cfg)));
+
+                Template catTpl = template("/templates/categories/category-template.html");
                 for (String cat : byCat.keySet()) {
                     List<Post> inCat = byCat.get(cat);
-                    String items = buildPostsList(inCat);
                     var local = new LinkedHashMap<>(tokens);
                     local.put("CATEGORY_PATH", "/categories/" + cat + "/");
                     local.put("CATEGORY_LABEL", prettyPath(cat));
-                    String html = TokenEngine.apply(catTpl.replace("{{CATEGORY_POSTS}}", items), local);
-                    Path target = out.resolve("categories").resolve(cat).resolve("index.html");
-                    write(target, html, dryRun);
+                    local.put("CATEGORY_POSTS", slot(0));
+                    String target = "categories/" + cat + "/index.html";
+                    urls.add(new SitemapUrl("/categories/" + cat + "/", newest(inCat), null));
+                    sink.accept(target, catTpl.render(local), List.of(out -> writePostsList(out, inCat)));
                 }
             }
 
             // series index + pages
-            Map<String, List<Post>> bySeries = groupBySeries(posts);
+            Map<String, SiteModel.Series> bySeries = model.series();
             if (!bySeries.isEmpty()) {
-                String seriesIndexTpl = loadResource("/templates/series/index.html");
                 StringBuilder list = new StringBuilder();
-                for (var e : bySeries.entrySet()) {
-                    String slug = e.getKey();
-                    List<Post> in = e.getValue();
-                    String title = in.isEmpty() ? slug : in.get(0).series();
-                    list.append("          <li><a href=\"/series/").append(slug).append("/\">")
-                            .append(escape(title)).append("</a> ( ").append(in.size()).append(" )</li>\n");
+                for (var sr : bySeries.values()) {
+                    list.append("          <li><a href=\"/series/").append(sr.slug()).append("/\">")
+                            .append(escape(sr.title())).append("</a> ( ").append(sr.posts().size())
+                            .append(" )</li>\n");
                 }
-                String seriesIndexHtml = TokenEngine.apply(seriesIndexTpl.replace("{{SERIES_LIST}}", list.toString()),
-                        tokens);
-                write(out.resolve("series/index.html"), seriesIndexHtml, dryRun);
-
-                String seriesTpl = loadResource("/templates/series/series-template.html");
-                for (var e : bySeries.entrySet()) {
-                    String slug = e.getKey();
-                    List<Post> in = e.getValue();
-                    String items = buildPostsList(in);
+                var seriesLocal = new LinkedHashMap<>(tokens);
+                seriesLocal.put("SERIES_LIST", list.toString());
+                String seriesIndexHtml = template("/templates/series/index.html").render(seriesLocal);
+                sink.accept("series/index.html", seriesIndexHtml);
+                urls.add(new SitemapUrl("/series/", newest(posts), null));
+
+                Template seriesTpl = template("/templates/series/series-template.html");
+                for (var sr : bySeries.values()) {
                     var local = new LinkedHashMap<>(tokens);
-                    String title = in.isEmpty() ? slug : in.get(0).series();
-                    local.put("SERIES_NAME", title);
-                    local.put("SERIES_CANONICAL_PATH", "/series/" + slug + "/");
-                    String html = TokenEngine.apply(seriesTpl.replace("{{SERIES_POSTS}}", items), local);
-                    write(out.resolve("series").resolve(slug).resolve("index.html"), html, dryRun);
+                    local.put("SERIES_NAME", sr.title());
+                    local.put("SERIES_CANONICAL_PATH", "/series/" + sr.slug() + "/");
+                    local.put("SERIES_POSTS", slot(0));
+                    urls.add(new SitemapUrl("/series/" + sr.slug() + "/", newest(sr.posts()), null));
+                    sink.accept("series/" + sr.slug() + "/index.html", seriesTpl.render(local),
+                            List.of(out -> writePostsList(out, sr.posts())));
                 }
             }
 
-            // feed.xml
-            String feedTpl = loadResource("/templates/feed.xml");
-            String feedItems = buildFeedItems(posts, cfg);
-            String feedXml = TokenEngine.apply(feedTpl.replace("{{FEED_ITEMS}}", feedItems), tokens);
-            write(out.resolve("feed.xml"), feedXml, dryRun);
+            // feed.xml, atom.xml, feed.json for the site, each tag and each category
+            new FeedService(src, cfg, tokens, staged).generate(model, sink);
+
+            // search/: prebuilt client-side search index over titles, descriptions and article text
+            if (Boolean.parseBoolean(cfg.extras().getOrDefault("search_index", "false")))
+                new SearchIndex(src, staged).generate(model, sink);
 
-            // sitemap.xml
-            String smTpl = loadResource("/templates/sitemap.xml");
-            String urls = buildSitemapUrls(posts, cfg);
-            String smXml = TokenEngine.apply(smTpl.replace("{{SITEMAP_POST_URLS}}", urls), tokens);
-            write(out.resolve("sitemap.xml"), smXml, dryRun);
+            // sitemap_index.xml + sitemap-N.xml shards; sitemap.xml repeats the index for existing submissions
+            for (Post p : posts)
+                urls.add(new SitemapUrl(p.url(), w3c(p.date().atZone(ZONE)), null));
+            writeSitemaps(urls, cfg, tokens, sink);
 
             return io.site.bloggen.util.Result.ok(null);
         } catch (IOException e) {
@@ -253,29 +327,16 @@ public final class CatalogService {
         return sb.toString();
     }
 
-    private static Map<String, List<Post>> groupBySeries(List<Post> posts) {
-        Map<String, List<Post>> out = new LinkedHashMap<>();
-        for (Post p : posts) {
-            if (p.series() == null || p.series().isBlank())
-                continue;
-            String slug = io.site.bloggen.infra.Slug.of(p.series());
-            out.computeIfAbsent(slug, k -> new ArrayList<>()).add(p);
-        }
-        // sort each by seriesOrder asc then date asc
-        for (var e : out.entrySet()) {
-            e.getValue().sort((a, b) -> {
-                Integer ao = a.seriesOrder();
-                Integer bo = b.seriesOrder();
-                if (ao != null && bo != null && !ao.equals(bo))
-                    return Integer.compare(ao, bo);
-                if (ao != null && bo == null)
-                    return -1;
-                if (ao == null && bo != null)
-                    return 1;
-                return a.date().compareTo(b.date());
-            });
+    // Packaged templates never change at runtime: compile each once per process
+    private static final Map<String, Template> TEMPLATES = new java.util.concurrent.ConcurrentHashMap<>();
+
+    private static Template template(String path) throws IOException {
+        Template t = TEMPLATES.get(path);
+        if (t == null) {
+            t = Template.compile(loadResource(path));
+            TEMPLATES.put(path, t);
         }
-        return out;
+        return t;
     }
 
     private static String loadResource(String path) throws IOException {
@@ -286,15 +347,6 @@ public final class CatalogService {
         }
     }
 
-    private static void write(Path path, String content, boolean dryRun) throws IOException {
-        if (dryRun) {
-            io.site.bloggen.util.Log.info("[dry-run] would write " + path);
-            return;
-        }
-        Files.createDirectories(path.getParent());
-        Files.writeString(path, content, StandardCharsets.UTF_8);
-    }
-
     private static String buildYearSections(List<Post> posts) {
         Map<String, List<Post>> byYear = new TreeMap<>(Comparator.reverseOrder());
         for (Post p : posts)
@@ -320,9 +372,9 @@ public final class CatalogService {
         return sb.toString();
     }
 
-    private static String buildArchiveList(List<Post> posts) {
+    private static void writeArchiveList(Appendable out, List<Post> posts) throws IOException {
         // Reuse the same Row layout for Archives
-        return buildPostsList(posts);
+        writePostsList(out, posts);
     }
 
     private static String buildTagsList(Set<String> tags, SiteConfig cfg) {
@@ -337,8 +389,7 @@ public final class CatalogService {
         return sb.toString();
     }
 
-    private static String buildCategoryExplorer(List<Post> posts, SiteConfig cfg) {
-        // Build tree
+    private static CatNode buildCategoryTree(List<Post> posts) {
         CatNode root = new CatNode("", "");
         for (Post p : posts) {
             String cp = p.categoryPath();
@@ -357,96 +408,66 @@ public final class CatalogService {
             }
             cur.posts.add(p);
         }
-        // Render
-        StringBuilder sb = new StringBuilder();
-        sb.append("<div class=\"c-tree\">\n");
-        for (String key : root.children.keySet()) {
-            sb.append(renderCatNode(root.children.get(key), cfg));
-        }
-        sb.append("</div>\n");
-        return sb.toString();
+        return root;
     }
 
-    private static String renderCatNode(CatNode n, SiteConfig cfg) {
-        StringBuilder sb = new StringBuilder();
+    private static void writeCategoryExplorer(Appendable out, CatNode root, SiteConfig cfg) throws IOException {
+        out.append("<div class=\"c-tree\">\n");
+        for (CatNode child : root.children.values())
+            writeCatNode(out, child, cfg);
+        out.append("</div>\n");
+    }
+
+    private static void writeCatNode(Appendable out, CatNode n, SiteConfig cfg) throws IOException {
         String label = catSegLabel(n.name, cfg);
-        sb.append("<details>\n");
-        sb.append("  <summary>📁 <a href=\"/categories/").append(n.full).append("/\">")
+        out.append("<details>\n");
+        out.append("  <summary>📁 <a href=\"/categories/").append(n.full).append("/\">")
                 .append(escape(label)).append("</a></summary>\n");
         // children
-        for (String key : n.children.keySet())
-            sb.append(renderCatNode(n.children.get(key), cfg));
+        for (CatNode child : n.children.values())
+            writeCatNode(out, child, cfg);
         // posts
         if (!n.posts.isEmpty()) {
-            sb.append("  <ul class=\"c-tree__posts\">\n");
+            out.append("  <ul class=\"c-tree__posts\">\n");
             for (Post p : n.posts) {
-                sb.append("    <li>📄 <a href=\"").append(p.url()).append("\">")
+                out.append("    <li>📄 <a href=\"").append(p.url()).append("\">")
                         .append(escape(p.title())).append("</a></li>\n");
             }
-            sb.append("  </ul>\n");
-        }
-        sb.append("</details>\n");
-        return sb.toString();
-    }
-
-    private static Map<String, List<Post>> groupByTag(List<Post> posts) {
-        Map<String, List<Post>> by = new TreeMap<>();
-        for (Post p : posts) {
-            if (p.tags().isEmpty())
-                by.computeIfAbsent("untagged", k -> new ArrayList<>()).add(p);
-            for (String t : p.tags())
-                by.computeIfAbsent(t, k -> new ArrayList<>()).add(p);
+            out.append("  </ul>\n");
         }
-        // sort each list by date desc
-        for (var list : by.values())
-            list.sort(Comparator.comparing(Post::date).reversed());
-        return by;
+        out.append("</details>\n");
     }
 
-    private static Map<String, List<Post>> groupByCategory(List<Post> posts) {
-        Map<String, List<Post>> by = new TreeMap<>();
+    /** Writes the row list post by post, so pages with every post never hold it as one string. */
+    private static void writePostsList(Appendable out, List<Post> posts) throws IOException {
+        out.append("<div class=\"c-article-list\">\n");
         for (Post p : posts) {
-            String cp = p.categoryPath();
-            if (cp == null || cp.isBlank())
-                continue;
-            by.computeIfAbsent(cp, k -> new ArrayList<>()).add(p);
-        }
-        for (var list : by.values())
-            list.sort(Comparator.comparing(Post::date).reversed());
-        return by;
-    }
-
-    private static String buildPostsList(List<Post> posts) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("<div class=\"c-article-list\">\n");
-        for (Post p : posts) {
-            sb.append("  <article class=\"c-article-item\">\n");
-            sb.append("    <div class=\"c-article-item__content\">\n");
-            sb.append("      <div class=\"c-article-item__meta\">\n");
-            sb.append("        <time>").append(p.date().toLocalDate()).append("</time>\n");
+            out.append("  <article class=\"c-article-item\">\n");
+            out.append("    <div class=\"c-article-item__content\">\n");
+            out.append("      <div class=\"c-article-item__meta\">\n");
+            out.append("        <time>").append(p.date().toLocalDate().toString()).append("</time>\n");
             // Show only the first tag as a pill for cleaner UI, or all? Reference showed
             // one.
             if (!p.tags().isEmpty()) {
-                sb.append("        <span class=\"c-article-item__tag\">").append(escape(p.tags().get(0)))
+                out.append("        <span class=\"c-article-item__tag\">").append(escape(p.tags().get(0)))
                         .append("</span>\n");
             }
-            sb.append("      </div>\n");
-            sb.append("      <h3 class=\"c-article-item__title\">\n");
-            sb.append("        <a href=\"").append(p.url()).append("\">").append(escape(p.title())).append("</a>\n");
-            sb.append("      </h3>\n");
-            sb.append("    </div>\n");
+            out.append("      </div>\n");
+            out.append("      <h3 class=\"c-article-item__title\">\n");
+            out.append("        <a href=\"").append(p.url()).append("\">").append(escape(p.title())).append("</a>\n");
+            out.append("      </h3>\n");
+            out.append("    </div>\n");
             // Placeholder for thumbnail if we had one. For now, we skip or add a subtle
             // placeholder?
             // User design shows thumbnail. We don't have image scanning yet.
             // Leaving it text-only for layout correctness (it will just be a wide text
             // row).
-            sb.append("  </article>\n");
+            out.append("  </article>\n");
         }
-        sb.append("</div>\n");
-        return sb.toString();
+        out.append("</div>\n");
     }
 
-    private static String prettyPath(String p) {
+    static String prettyPath(String p) {
         String[] parts = p.split("/");
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < parts.length; i++) {
@@ -492,31 +513,105 @@ public final class CatalogService {
         }
     }
 
-    private static String buildFeedItems(List<Post> posts, SiteConfig cfg) {
-        StringBuilder sb = new StringBuilder();
-        DateTimeFormatter rfc822 = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneId.of("Asia/Seoul"));
-        for (Post p : posts) {
-            sb.append("    <item>\n");
-            sb.append("      <title>").append(escape(p.title())).append("</title>\n");
-            sb.append("      <link>").append(cfg.domain().replaceAll("/$", "")).append(p.url()).append("</link>\n");
-            sb.append("      <guid isPermaLink=\"true\">").append(cfg.domain().replaceAll("/$", "")).append(p.url())
-                    .append("</guid>\n");
-            sb.append("      <pubDate>").append(rfc822.format(p.date().atZone(ZoneId.of("Asia/Seoul"))))
-                    .append("</pubDate>\n");
-            if (p.description() != null && !p.description().isBlank())
-                sb.append("      <description>").append(escape(p.description())).append("</description>\n");
-            sb.append("    </item>\n");
-        }
-        return sb.toString();
+    /** One sitemap entry; {@code lastmod} is W3C datetime or null. */
+    private record SitemapUrl(String path, String lastmod, String priority) {
     }
 
-    private static String buildSitemapUrls(List<Post> posts, SiteConfig cfg) {
+    // Protocol limits per sitemap file (uncompressed)
+    private static final int SITEMAP_MAX_URLS = 50_000;
+    private static final long SITEMAP_MAX_BYTES = 50L * 1024 * 1024;
+    private static final String URLSET_OPEN = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n";
+    private static final String URLSET_CLOSE = "</urlset>\n";
+
+    /** Splits {@code urls} into shards within the protocol limits, streams each, and writes the index. */
+    private static void writeSitemaps(List<SitemapUrl> urls, SiteConfig cfg, Map<String, String> tokens,
+            PageSink sink) throws IOException {
         String base = cfg.domain().replaceAll("/$", "");
-        StringBuilder sb = new StringBuilder();
-        for (Post p : posts) {
-            sb.append("  <url><loc>").append(base).append(p.url()).append("</loc></url>\n");
+        int maxUrls = sitemapMaxUrls(cfg);
+        StringBuilder shards = new StringBuilder();
+        int from = 0;
+        int n = 0;
+        do {
+            long bytes = URLSET_OPEN.length() + URLSET_CLOSE.length();
+            String lastmod = null;
+            int to = from;
+            while (to < urls.size() && to - from < maxUrls) {
+                long len = utf8Length(sitemapLine(urls.get(to), base));
+                if (to > from && bytes + len > SITEMAP_MAX_BYTES)
+                    break;
+                bytes += len;
+                String lm = urls.get(to).lastmod();
+                if (lm != null && (lastmod == null || lm.compareTo(lastmod) > 0))
+                    lastmod = lm;
+                to++;
+            }
+            List<SitemapUrl> shard = urls.subList(from, to);
+            String name = "sitemap-" + (++n) + ".xml";
+            sink.accept(name, URLSET_OPEN + slot(0) + URLSET_CLOSE, List.of(out -> {
+                for (SitemapUrl u : shard)
+                    out.append(sitemapLine(u, base));
+            }));
+            shards.append("  <sitemap><loc>").append(base).append('/').append(name).append("</loc>");
+            if (lastmod != null)
+                shards.append("<lastmod>").append(lastmod).append("</lastmod>");
+            shards.append("</sitemap>\n");
+            from = to;
+        } while (from < urls.size());
+        var local = new LinkedHashMap<>(tokens);
+        local.put("SITEMAP_SHARDS", shards.toString());
+        String index = template("/templates/sitemap.xml").render(local);
+        sink.accept("sitemap_index.xml", index);
+        sink.accept("sitemap.xml", index);
+    }
+
+    private static String sitemapLine(SitemapUrl u, String base) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("  <url><loc>").append(base).append(escape(u.path())).append("</loc>");
+        if (u.lastmod() != null)
+            sb.append("<lastmod>").append(u.lastmod()).append("</lastmod>");
+        if (u.priority() != null)
+            sb.append("<priority>").append(u.priority()).append("</priority>");
+        return sb.append("</url>\n").toString();
+    }
+
+    private static long utf8Length(String s) {
+        long n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80)
+                n++;
+            else if (c < 0x800)
+                n += 2;
+            else if (Character.isHighSurrogate(c)) {
+                n += 4;
+                i++;
+            } else
+                n += 3;
+        }
+        return n;
+    }
+
+    /** Date of the newest post in {@code posts} (any order), or null when empty. */
+    private static String newest(List<Post> posts) {
+        java.time.LocalDateTime max = null;
+        for (Post p : posts)
+            if (max == null || p.date().isAfter(max))
+                max = p.date();
+        return max == null ? null : w3c(max.atZone(ZONE));
+    }
+
+    private static String w3c(java.time.ZonedDateTime t) {
+        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(t.truncatedTo(java.time.temporal.ChronoUnit.SECONDS));
+    }
+
+    private static int sitemapMaxUrls(SiteConfig cfg) {
+        String v = cfg.extras().getOrDefault("sitemap_max_urls", String.valueOf(SITEMAP_MAX_URLS));
+        try {
+            return Math.min(SITEMAP_MAX_URLS, Math.max(1, Integer.parseInt(v.trim())));
+        } catch (NumberFormatException e) {
+            return SITEMAP_MAX_URLS;
         }
-        return sb.toString();
     }
 
     private static int pageSize(SiteConfig cfg) {
@@ -611,7 +706,7 @@ public final class CatalogService {
         }
     }
 
-    private static String tagLabel(String tag, SiteConfig cfg) {
+    static String tagLabel(String tag, SiteConfig cfg) {
         String mapStr = cfg.extras().getOrDefault("tag_labels", "");
         if (!mapStr.isBlank()) {
             String[] pairs = mapStr.split(",");
@@ -632,7 +727,7 @@ public final class CatalogService {
         return tag;
     }
 
-    private static String escape(String s) {
+    static String escape(String s) {
         return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
     }
 }
@@ -19,74 +19,165 @@ public final class ContentScanner {
             Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
     public List<Post> scanPosts(Path srcRoot) throws IOException {
+        return scanPosts(srcRoot, new PostIndex());
+    }
+
+    public List<Post> scanPosts(Path srcRoot, PostIndex index) throws IOException {
+        return scanPosts(srcRoot, index, rel -> null);
+    }
+
+    public List<Post> scanPosts(Path srcRoot, PostIndex index, java.util.function.Function<String, String> staged)
+            throws IOException {
+        return scanPosts(srcRoot, index, staged, false);
+    }
+
+    /**
+     * Scans posts/*.html, reusing {@code index} entries whose .html and .meta.json sizes and mtimes are
+     * unchanged; only new or changed posts are read, from {@code staged} ("posts/x.html" -> text, null when
+     * not held in memory) or else from disk. With {@code terms}, each entry also gets the post's term vector
+     * for {@link RelatedPosts} (entries without one are read again). The index is updated in place (the
+     * caller saves it).
+     */
+    public List<Post> scanPosts(Path srcRoot, PostIndex index, java.util.function.Function<String, String> staged,
+            boolean terms) throws IOException {
         Path dir = srcRoot.resolve("posts");
-        if (!Files.exists(dir))
+        if (!Files.exists(dir)) {
+            index.retain(List.of());
             return List.of();
+        }
         List<Post> posts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
         try (var s = Files.list(dir)) {
             for (Path p : (Iterable<Path>) s.filter(f -> f.getFileName().toString().endsWith(".html"))::iterator) {
                 String name = p.getFileName().toString();
-                Matcher fm = FILE.matcher(name);
-                if (!fm.matches())
+                var cached = index.get(name);
+                var entry = scanPost(p, cached, staged, terms);
+                if (entry == null)
                     continue;
-                LocalDate date = LocalDate.parse(fm.group(1), DateTimeFormatter.ISO_LOCAL_DATE);
-                String slug = fm.group(2);
-                String url = "/posts/" + name;
-                String html = Files.readString(p, StandardCharsets.UTF_8);
-                String title = extractTitle(html);
-                // sidecar meta
-                String desc = "";
-                String catPath = "";
-                String series = "";
-                Integer seriesOrder = null;
-                List<String> tags = new ArrayList<>();
-                java.time.LocalDateTime dateTime = date.atStartOfDay(); // Default to filename date
-
-                Path meta = p.resolveSibling(name + ".meta.json");
-                if (Files.exists(meta)) {
-                    String mj = Files.readString(meta, StandardCharsets.UTF_8);
-                    var mm = FlatJson.parse(mj);
-                    desc = mm.getOrDefault("PAGE_DESCRIPTION", "");
-                    catPath = mm.getOrDefault("CATEGORY_PATH", "");
-                    series = mm.getOrDefault("SERIES", "");
-                    String ord = mm.getOrDefault("SERIES_ORDER", "");
-                    if (ord != null && !ord.isBlank()) {
-                        try {
-                            seriesOrder = Integer.parseInt(ord.trim());
-                        } catch (Exception ignored) {
-                        }
-                    }
-                    var tagStr = mm.getOrDefault("TAGS", "");
-                    if (tagStr != null && !tagStr.isBlank()) {
-                        for (String t : tagStr.split(",")) {
-                            var tt = t.trim();
-                            if (!tt.isEmpty())
-                                tags.add(slugify(tt));
-                        }
-                    }
-
-                    String createdAt = mm.getOrDefault("CREATED_AT", "");
-                    if (createdAt != null && !createdAt.isBlank()) {
-                        try {
-                            dateTime = java.time.LocalDateTime.parse(createdAt);
-                        } catch (Exception ignore) {
-                            // Fallback to filename date
-                        }
-                    }
+                names.add(name);
+                if (entry != cached)
+                    index.put(entry);
+                posts.add(entry.toPost());
+            }
+        }
+        index.retain(names);
+        posts.sort(Comparator.comparing(Post::date).reversed());
+        return posts;
+    }
+
+    /**
+     * The index entry of one post file: {@code cached} when its .html and .meta.json sizes and mtimes still
+     * match (and it has terms when {@code terms} asks for them), else the post read again. Null when the file
+     * name is not a post's (yyyy-mm-dd-slug.html).
+     */
+    PostIndex.Entry scanPost(Path p, PostIndex.Entry cached, java.util.function.Function<String, String> staged,
+            boolean terms) throws IOException {
+        String name = p.getFileName().toString();
+        Matcher fm = FILE.matcher(name);
+        if (!fm.matches())
+            return null;
+        LocalDate date = LocalDate.parse(fm.group(1), DateTimeFormatter.ISO_LOCAL_DATE);
+        Path meta = p.resolveSibling(name + ".meta.json");
+        var htmlAttrs = Files.readAttributes(p, java.nio.file.attribute.BasicFileAttributes.class);
+        java.nio.file.attribute.BasicFileAttributes metaAttrs = null;
+        try {
+            metaAttrs = Files.readAttributes(meta, java.nio.file.attribute.BasicFileAttributes.class);
+        } catch (NoSuchFileException ignored) {
+        }
+        long htmlSize = htmlAttrs.size(), htmlMtime = htmlAttrs.lastModifiedTime().toMillis();
+        long metaSize = metaAttrs == null ? -1 : metaAttrs.size();
+        long metaMtime = metaAttrs == null ? -1 : metaAttrs.lastModifiedTime().toMillis();
+        if (cached != null && cached.matches(htmlSize, htmlMtime, metaSize, metaMtime)
+                && (!terms || cached.terms() != null)) {
+            return cached;
+        }
+        String html = read(p, "posts/" + name, staged);
+        String title = extractTitle(html);
+        Matcher h1 = H1.matcher(html);
+        String heading = h1.find() ? stripTags(h1.group(1)).trim() : null;
+        // sidecar meta
+        String desc = "";
+        String catPath = "";
+        String series = "";
+        Integer seriesOrder = null;
+        List<String> tags = new ArrayList<>();
+        java.time.LocalDateTime dateTime = date.atStartOfDay(); // Default to filename date
+
+        if (metaAttrs != null) {
+            String mj = read(meta, "posts/" + name + ".meta.json", staged);
+            var mm = FlatJson.parse(mj);
+            desc = mm.getOrDefault("PAGE_DESCRIPTION", "");
+            catPath = mm.getOrDefault("CATEGORY_PATH", "");
+            series = mm.getOrDefault("SERIES", "");
+            String ord = mm.getOrDefault("SERIES_ORDER", "");
+            if (ord != null && !ord.isBlank()) {
+                try {
+                    seriesOrder = Integer.parseInt(ord.trim());
+                } catch (Exception ignored) {
+                }
+            }
+            var tagStr = mm.getOrDefault("TAGS", "");
+            if (tagStr != null && !tagStr.isBlank()) {
+                for (String t : tagStr.split(",")) {
+                    var tt = t.trim();
+                    if (!tt.isEmpty())
+                        tags.add(slugify(tt));
                 }
+            }
 
-                // Calculate reading time
-                String plainText = stripTags(html);
-                int wordCount = plainText.split("\\s+").length;
-                int minutes = Math.max(1, (int) Math.ceil(wordCount / 200.0));
-                String readingTime = minutes + " min read";
+            String createdAt = mm.getOrDefault("CREATED_AT", "");
+            if (createdAt != null && !createdAt.isBlank()) {
+                try {
+                    dateTime = java.time.LocalDateTime.parse(createdAt);
+                } catch (Exception ignore) {
+                    // Fallback to filename date
+                }
+            }
+        }
 
-                posts.add(new Post(name, url, dateTime, title, List.copyOf(tags), desc, readingTime, catPath,
-                        series == null ? "" : series, seriesOrder));
+        return new PostIndex.Entry(name, htmlSize, htmlMtime, metaSize, metaMtime, dateTime, title,
+                heading, List.copyOf(tags), desc, wordCount(html), catPath,
+                series == null ? "" : series, seriesOrder, terms ? RelatedPosts.vector(title, html) : null,
+                cached != null ? cached.related() : ""); // stays valid while RelatedPosts' inputs match
+    }
+
+    private static String read(Path file, String rel, java.util.function.Function<String, String> staged)
+            throws IOException {
+        String text = staged.apply(rel);
+        return text != null ? text : Files.readString(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Words in the tag-stripped text, counted like {@code stripTags(html).split("\\s+").length} (a leading
+     * blank run counts as one more) but in one pass without building the stripped copy.
+     */
+    private static int wordCount(String html) {
+        int words = 0;
+        boolean any = false, leadingBlank = false, inWord = false, tags = true;
+        for (int i = 0; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (c == '<' && tags) {
+                int close = html.indexOf('>', i + 1);
+                if (close > i + 1) { // a tag: "<" + one or more chars + ">"
+                    i = close;
+                    continue;
+                }
+                if (close < 0)
+                    tags = false; // no tag can start here or later
             }
+            boolean blank = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+            if (blank && !any)
+                leadingBlank = true;
+            if (!blank && !inWord)
+                words++;
+            inWord = !blank;
+            any = true;
         }
-        posts.sort(Comparator.comparing(Post::date).reversed());
-        return posts;
+        if (!any)
+            return 1;
+        if (words == 0)
+            return 0;
+        return words + (leadingBlank ? 1 : 0);
     }
 
     private static String extractTitle(String html) {
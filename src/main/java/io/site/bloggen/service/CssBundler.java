@@ -0,0 +1,193 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inlines a stylesheet's local @import chain, in import order, into one minified stylesheet. Imports with a
+ * media, supports or layer condition and imports of other sites stay @import rules, hoisted to the top where
+ * CSS requires them. Relative url() references in files from another directory are made root-absolute so
+ * they still resolve from the bundle.
+ */
+public final class CssBundler {
+    private static final Pattern IMPORT = Pattern.compile(
+            "@import\\s+(?:url\\(\\s*(['\"]?)([^'\")\\s]+)\\1\\s*\\)|(['\"])([^'\"]+)\\3)\\s*([^;]*);");
+    private static final Pattern URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")\\s]+)\\1\\s*\\)");
+    private static final Pattern CHARSET = Pattern.compile("@charset\\s+(['\"])[^'\"]*\\1\\s*;");
+
+    /** Reads a stylesheet by output path ({@code assets/css/base.css}); null when there is none. */
+    @FunctionalInterface
+    public interface Source {
+        String read(String rel) throws IOException;
+    }
+
+    /** The bundled text and every stylesheet read to make it, in the order they were read. */
+    public record Bundle(String css, List<String> inputs) {
+    }
+
+    private final Source source;
+
+    public CssBundler(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Bundles {@code entry}; null when it does not exist. {@code baseDir} is the directory the result is
+     * served from ("assets/css/"), or null when it is inlined into pages and every relative url() must be
+     * made root-absolute.
+     */
+    public Bundle bundle(String entry, String baseDir) throws IOException {
+        var hoisted = new StringBuilder();
+        var body = new StringBuilder();
+        var inputs = new ArrayList<String>();
+        if (!inline(entry, baseDir, new HashSet<>(), inputs, hoisted, body))
+            return null;
+        return new Bundle(minify(hoisted.append(body).toString()), List.copyOf(inputs));
+    }
+
+    private boolean inline(String rel, String baseDir, Set<String> seen, List<String> inputs, StringBuilder hoisted,
+            StringBuilder body) throws IOException {
+        if (!seen.add(rel))
+            return true; // imported twice or in a cycle: its rules are already in the bundle
+        String css = source.read(rel);
+        if (css == null)
+            return false;
+        inputs.add(rel);
+        css = CHARSET.matcher(stripComments(css)).replaceAll("");
+        String dir = rel.substring(0, rel.lastIndexOf('/') + 1);
+        if (!dir.equals(baseDir))
+            css = absoluteUrls(css, rel);
+        Matcher m = IMPORT.matcher(css);
+        int copied = 0;
+        while (m.find()) {
+            body.append(css, copied, m.start());
+            copied = m.end();
+            String ref = m.group(2) != null ? m.group(2) : m.group(4);
+            String target = AssetFingerprints.resolve(rel, ref);
+            if (m.group(5).isBlank() && target != null && inline(target, baseDir, seen, inputs, hoisted, body))
+                continue;
+            if (target != null && dir.equals(baseDir))
+                hoisted.append(m.group()).append('\n');
+            else if (target != null)
+                hoisted.append("@import url('/").append(target).append("') ").append(m.group(5)).append(";\n");
+            else
+                hoisted.append(m.group()).append('\n');
+        }
+        body.append(css, copied, css.length()).append('\n');
+        return true;
+    }
+
+    private static String absoluteUrls(String css, String rel) {
+        Matcher m = URL.matcher(css);
+        StringBuilder sb = new StringBuilder(css.length() + 64);
+        while (m.find()) {
+            String ref = m.group(2);
+            String target = ref.startsWith("/") || ref.startsWith("#") ? null : AssetFingerprints.resolve(rel, ref);
+            String repl = target == null ? m.group() : "url('/" + target + "')";
+            m.appendReplacement(sb, Matcher.quoteReplacement(repl));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    /** Drops comments outside strings, keeping {@code /*! ... *}{@code /} license comments. */
+    static String stripComments(String css) {
+        StringBuilder sb = new StringBuilder(css.length());
+        int i = 0;
+        while (i < css.length()) {
+            char c = css.charAt(i);
+            if (c == '"' || c == '\'') {
+                int end = stringEnd(css, i);
+                sb.append(css, i, end);
+                i = end;
+            } else if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                end = end < 0 ? css.length() : end + 2;
+                if (i + 2 < css.length() && css.charAt(i + 2) == '!')
+                    sb.append(css, i, end);
+                else
+                    sb.append(' ');
+                i = end;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Collapses whitespace and drops it around braces, semicolons, commas and after colons, and the last
+     * semicolon of each block. Strings and comments are kept as they are; other whitespace (descendant
+     * combinators, {@code calc(1px + 2px)}) becomes a single space.
+     */
+    static String minify(String css) {
+        StringBuilder sb = new StringBuilder(css.length());
+        boolean space = false;
+        int i = 0;
+        while (i < css.length()) {
+            char c = css.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                end = end < 0 ? css.length() : end + 2;
+                if (i + 2 < css.length() && css.charAt(i + 2) == '!') {
+                    if (sb.length() > 0 && space)
+                        sb.append('\n');
+                    sb.append(css, i, end).append('\n');
+                }
+                space = false;
+                i = end;
+                continue;
+            }
+            if (c == '}' && sb.length() > 0 && sb.charAt(sb.length() - 1) == ';')
+                sb.setLength(sb.length() - 1);
+            if (space && sb.length() > 0 && !tight(c) && !tightAfter(sb.charAt(sb.length() - 1)))
+                sb.append(' ');
+            space = false;
+            if (c == '"' || c == '\'') {
+                int end = stringEnd(css, i);
+                sb.append(css, i, end);
+                i = end;
+                continue;
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static boolean tight(char c) {
+        return c == '{' || c == '}' || c == ';' || c == ',';
+    }
+
+    private static boolean tightAfter(char c) {
+        return c == '{' || c == '}' || c == ';' || c == ',' || c == ':' || c == '\n';
+    }
+
+    /** Index after the string starting at {@code i}, honouring backslash escapes. */
+    private static int stringEnd(String s, int i) {
+        char q = s.charAt(i);
+        int p = i + 1;
+        while (p < s.length()) {
+            char c = s.charAt(p);
+            if (c == '\\') {
+                p += 2;
+                continue;
+            }
+            p++;
+            if (c == q || c == '\n')
+                break;
+        }
+        return Math.min(p, s.length());
+    }
+}
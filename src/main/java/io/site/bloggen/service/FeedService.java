@@ -0,0 +1,362 @@
+package io.site.bloggen.service;
+
+import io.site.bloggen.core.Post;
+import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.core.SiteModel;
+import io.site.bloggen.template.Template;
+import io.site.bloggen.template.TokenEngine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Site, per-tag and per-category feeds in RSS, Atom and JSON Feed. One pass over the newest-first posts
+ * renders each item once per format, only while some feed it belongs to is under {@code feed_limit}, and
+ * shares it between those feeds. Out of the box only the uncapped site feed.xml is written; the other
+ * feeds, formats and the limit are opt-in.
+ */
+public final class FeedService {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Seoul");
+    private static final DateTimeFormatter RFC822 = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZONE);
+    private static final DateTimeFormatter ISO = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    private static final Pattern FM_BLOCK = Pattern.compile("(?s)<!--\\s*FM_BLOCK_START\\s*-->.*?<!--\\s*FM_BLOCK_END\\s*-->");
+    private static final Pattern HEADER = Pattern.compile("(?is)<header\\b.*?</header>");
+    // control characters XML 1.0 does not allow (pages may carry them from pasted text)
+    private static final Pattern XML_INVALID = Pattern.compile("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\uFFFE\\uFFFF]");
+    private static final Pattern ROOT_URL = Pattern.compile("(\\s(?:src|href)=\")/(?!/)");
+
+    enum Format {
+        RSS("feed.xml", "/templates/feed.xml"),
+        ATOM("atom.xml", "/templates/feeds/atom.xml"),
+        JSON("feed.json", "/templates/feeds/feed.json");
+
+        final String file;
+        final String template;
+
+        Format(String file, String template) {
+            this.file = file;
+            this.template = template;
+        }
+    }
+
+    /** One output feed; {@code dir} is "" for the site feed or e.g. "tags/java/". */
+    private static final class Feed {
+        final String dir;
+        final String title;
+        final String link;
+        final List<Item> items = new ArrayList<>();
+
+        Feed(String dir, String title, String link) {
+            this.dir = dir;
+            this.title = title;
+            this.link = link;
+        }
+    }
+
+    /** A post rendered for each enabled format (null when disabled). */
+    private record Item(Post post, String rss, String atom, String json) {
+    }
+
+    private final SiteConfig cfg;
+    private final Path src;
+    private final Function<String, String> staged;
+    private final Map<String, String> tokens;
+    private final String base;
+    private final int limit;
+    private final boolean full;
+    private final boolean excerpt;
+    private final EnumSet<Format> formats;
+
+    /** {@code staged} maps "posts/x.html" to its source text when held in memory, else null. */
+    public FeedService(Path src, SiteConfig cfg, Map<String, String> tokens, Function<String, String> staged) {
+        this.src = src;
+        this.cfg = cfg;
+        this.tokens = tokens;
+        this.staged = staged;
+        this.base = cfg.domain().replaceAll("/$", "");
+        this.limit = feedLimit(cfg);
+        String content = feedContent(cfg);
+        this.full = content.equals("full");
+        this.excerpt = !content.equals("description");
+        this.formats = feedFormats(cfg);
+    }
+
+    public void generate(SiteModel model, CatalogService.PageSink sink) throws IOException {
+        Feed site = new Feed("", tokens.getOrDefault("RSS_TITLE", cfg.rssTitle()), base + "/");
+        Map<String, Feed> byTag = new HashMap<>();
+        if (flag("feed_per_tag"))
+            for (String tag : model.tags().keySet())
+                byTag.put(tag, new Feed("tags/" + tag + "/", site.title + " — #" + CatalogService.tagLabel(tag, cfg),
+                        base + "/tags/" + tag + ".html"));
+        Map<String, Feed> byCat = new HashMap<>();
+        if (flag("feed_per_category"))
+            for (String cat : model.categories().keySet())
+                byCat.put(cat, new Feed("categories/" + cat + "/",
+                        site.title + " — " + CatalogService.prettyPath(cat), base + "/categories/" + cat + "/"));
+
+        List<Feed> targets = new ArrayList<>();
+        for (Post p : model.posts()) {
+            targets.clear();
+            addIfOpen(targets, site);
+            if (p.tags().isEmpty())
+                addIfOpen(targets, byTag.get("untagged"));
+            for (String t : p.tags())
+                addIfOpen(targets, byTag.get(t));
+            if (p.categoryPath() != null && !p.categoryPath().isBlank())
+                addIfOpen(targets, byCat.get(p.categoryPath()));
+            if (targets.isEmpty())
+                continue;
+            Item item = item(p, targets.get(0) == site);
+            for (Feed f : targets)
+                f.items.add(item);
+        }
+
+        // an empty feed is dated by the newest post of the site (else the epoch), so builds stay reproducible
+        ZonedDateTime newest = model.posts().isEmpty() ? Instant.EPOCH.atZone(ZONE)
+                : model.posts().get(0).date().atZone(ZONE);
+        write(site, newest, sink);
+        for (Feed f : new TreeMap<>(byTag).values())
+            write(f, newest, sink);
+        for (Feed f : new TreeMap<>(byCat).values())
+            write(f, newest, sink);
+    }
+
+    private void addIfOpen(List<Feed> targets, Feed f) {
+        if (f != null && (limit == 0 || f.items.size() < limit) && !targets.contains(f))
+            targets.add(f);
+    }
+
+    private void write(Feed f, ZonedDateTime newest, CatalogService.PageSink sink) throws IOException {
+        ZonedDateTime updated = f.items.isEmpty() ? newest : f.items.get(0).post().date().atZone(ZONE);
+        // feed.xml at the site root is always written: existing subscribers poll it
+        for (Format fmt : Format.values()) {
+            if (!formats.contains(fmt) && !(fmt == Format.RSS && f.dir.isEmpty()))
+                continue;
+            var local = new LinkedHashMap<>(tokens);
+            local.put("FEED_TITLE", fmt == Format.JSON ? json(f.title) : CatalogService.escape(f.title));
+            local.put("FEED_LINK", f.link);
+            local.put("FEED_SELF", base + "/" + f.dir + fmt.file);
+            local.put("FEED_UPDATED", fmt == Format.RSS ? RFC822.format(updated) : ISO.format(updated));
+            local.put("FEED_ITEMS", CatalogService.slot(0));
+            List<Item> items = f.items;
+            sink.accept(f.dir + fmt.file, template(fmt.template).render(local), List.of(out -> {
+                for (int i = 0; i < items.size(); i++) {
+                    Item it = items.get(i);
+                    switch (fmt) {
+                        case RSS -> out.append(it.rss());
+                        case ATOM -> out.append(it.atom());
+                        case JSON -> out.append(i > 0 ? ",\n" : "").append(it.json());
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * {@code inSite}: the item is in the site feed, whose feed.xml is written whatever the formats. Titles and
+     * descriptions come HTML-escaped from the page and sidecar, so they are decoded once here and each format
+     * escapes them its own way.
+     */
+    private Item item(Post p, boolean inSite) throws IOException {
+        String title = unescapeBasic(p.title() == null ? "" : p.title());
+        String body = full ? articleHtml(p) : null;
+        String summary = summary(p, body);
+        return new Item(p, inSite || formats.contains(Format.RSS) ? rss(p, title, summary, body) : null,
+                formats.contains(Format.ATOM) ? atom(p, title, summary, body) : null,
+                formats.contains(Format.JSON) ? jsonItem(p, title, summary, body) : null);
+    }
+
+    /**
+     * The post description, or else the first paragraph of its article text ("" when {@code feed_content} is
+     * {@code description}); plain text.
+     */
+    private String summary(Post p, String body) throws IOException {
+        if (p.description() != null && !p.description().isBlank())
+            return unescapeBasic(p.description());
+        if (!excerpt)
+            return "";
+        String html = body != null ? body : articleHtml(p);
+        return html.isEmpty() ? "" : unescapeBasic(io.site.bloggen.util.Markdown.excerpt(html));
+    }
+
+    private String rss(Post p, String title, String summary, String body) {
+        StringBuilder sb = new StringBuilder(256 + (body == null ? 0 : body.length()));
+        sb.append("    <item>\n");
+        sb.append("      <title>").append(CatalogService.escape(title)).append("</title>\n");
+        sb.append("      <link>").append(base).append(p.url()).append("</link>\n");
+        sb.append("      <guid isPermaLink=\"true\">").append(base).append(p.url()).append("</guid>\n");
+        sb.append("      <pubDate>").append(RFC822.format(p.date().atZone(ZONE))).append("</pubDate>\n");
+        if (!summary.isBlank())
+            sb.append("      <description>").append(CatalogService.escape(summary)).append("</description>\n");
+        if (body != null)
+            sb.append("      <content:encoded><![CDATA[").append(body.replace("]]>", "]]]]><![CDATA[>"))
+                    .append("]]></content:encoded>\n");
+        sb.append("    </item>\n");
+        return sb.toString();
+    }
+
+    private String atom(Post p, String title, String summary, String body) {
+        String date = ISO.format(p.date().atZone(ZONE));
+        StringBuilder sb = new StringBuilder(256 + (body == null ? 0 : body.length() + body.length() / 8));
+        sb.append("  <entry>\n");
+        sb.append("    <title>").append(CatalogService.escape(title)).append("</title>\n");
+        sb.append("    <link href=\"").append(base).append(p.url()).append("\" />\n");
+        sb.append("    <id>").append(base).append(p.url()).append("</id>\n");
+        sb.append("    <published>").append(date).append("</published>\n");
+        sb.append("    <updated>").append(date).append("</updated>\n");
+        for (String t : p.tags())
+            sb.append("    <category term=\"").append(CatalogService.escape(t)).append("\" />\n");
+        if (!summary.isBlank())
+            sb.append("    <summary>").append(CatalogService.escape(summary)).append("</summary>\n");
+        if (body != null)
+            sb.append("    <content type=\"html\">").append(CatalogService.escape(body)).append("</content>\n");
+        sb.append("  </entry>\n");
+        return sb.toString();
+    }
+
+    private String jsonItem(Post p, String title, String summary, String body) {
+        StringBuilder sb = new StringBuilder(256 + (body == null ? 0 : body.length() + body.length() / 8));
+        sb.append("    {\n");
+        sb.append("      \"id\": \"").append(json(base + p.url())).append("\",\n");
+        sb.append("      \"url\": \"").append(json(base + p.url())).append("\",\n");
+        sb.append("      \"title\": \"").append(json(title)).append("\",\n");
+        sb.append("      \"date_published\": \"").append(ISO.format(p.date().atZone(ZONE))).append("\",\n");
+        if (!p.tags().isEmpty()) {
+            sb.append("      \"tags\": [");
+            for (int i = 0; i < p.tags().size(); i++)
+                sb.append(i > 0 ? ", " : "").append('"').append(json(p.tags().get(i))).append('"');
+            sb.append("],\n");
+        }
+        if (body != null) {
+            if (!summary.isBlank())
+                sb.append("      \"summary\": \"").append(json(summary)).append("\",\n");
+            sb.append("      \"content_html\": \"").append(json(body)).append("\"\n");
+        } else {
+            sb.append("      \"content_text\": \"").append(json(summary)).append("\"\n");
+        }
+        sb.append("    }");
+        return sb.toString();
+    }
+
+    /**
+     * The post's article body without its header or front matter block, tokens resolved and root-relative
+     * links made absolute; "" when the page has no {@code <article>}.
+     */
+    private String articleHtml(Post p) throws IOException {
+        String rel = "posts/" + p.fileName();
+        String page = staged.apply(rel);
+        if (page == null) {
+            Path file = src.resolve(rel);
+            if (!Files.exists(file))
+                return "";
+            page = Files.readString(file, StandardCharsets.UTF_8);
+        }
+        String html = articleBody(page);
+        if (html.isEmpty())
+            return "";
+        html = TokenEngine.apply(html, tokens);
+        html = ROOT_URL.matcher(html).replaceAll("$1" + java.util.regex.Matcher.quoteReplacement(base) + "/");
+        return XML_INVALID.matcher(html).replaceAll("").strip();
+    }
+
+    /** The inside of a post page's {@code <article>} without its header or front matter block; "" if none. */
+    static String articleBody(String page) {
+        int a = page.indexOf("<article");
+        int s = a < 0 ? -1 : page.indexOf('>', a) + 1;
+        int e = page.lastIndexOf("</article>");
+        if (s <= 0 || e < s)
+            return "";
+        String html = FM_BLOCK.matcher(page.substring(s, e)).replaceAll("");
+        return HEADER.matcher(html).replaceFirst("");
+    }
+
+    /** Whether feed items show article text, so an edit to a post body changes the feeds. */
+    static boolean readsArticles(SiteConfig cfg) {
+        return !feedContent(cfg).equals("description");
+    }
+
+    private static String feedContent(SiteConfig cfg) {
+        return cfg.extras().getOrDefault("feed_content", "description").trim().toLowerCase();
+    }
+
+    private boolean flag(String key) {
+        return Boolean.parseBoolean(cfg.extras().getOrDefault(key, "false").trim());
+    }
+
+    private static int feedLimit(SiteConfig cfg) {
+        String v = cfg.extras().getOrDefault("feed_limit", "0");
+        try {
+            return Math.max(0, Integer.parseInt(v.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static EnumSet<Format> feedFormats(SiteConfig cfg) {
+        EnumSet<Format> set = EnumSet.noneOf(Format.class);
+        for (String f : cfg.extras().getOrDefault("feed_formats", "rss").split(",")) {
+            switch (f.trim().toLowerCase()) {
+                case "rss" -> set.add(Format.RSS);
+                case "atom" -> set.add(Format.ATOM);
+                case "json" -> set.add(Format.JSON);
+                default -> {
+                }
+            }
+        }
+        return set;
+    }
+
+    private static final Map<String, Template> TEMPLATES = new java.util.concurrent.ConcurrentHashMap<>();
+
+    private static Template template(String path) throws IOException {
+        Template t = TEMPLATES.get(path);
+        if (t == null) {
+            try (var is = FeedService.class.getResourceAsStream(path)) {
+                if (is == null)
+                    throw new IOException("Missing resource: " + path);
+                t = Template.compile(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            TEMPLATES.put(path, t);
+        }
+        return t;
+    }
+
+    private static String unescapeBasic(String s) {
+        if (s.indexOf('&') < 0)
+            return s;
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&#39;", "'")
+                .replace("&amp;", "&");
+    }
+
+    static String json(String s) {
+        if (s == null)
+            return "";
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Markdown import state kept in the site root between runs (one tab-separated line per source note).
+ * {@code out} is the post written for the note, or "-" when the note was skipped (unpublished, no date).
+ * The header carries the {@link io.site.bloggen.util.Markdown#VERSION renderer version} and the post template
+ * hash so a renderer or template change re-imports everything.
+ */
+public final class ImportManifest {
+    public static final String FILE_NAME = ".llog-import";
+    private static final String HEADER = "# llog-import 2\tmd" + io.site.bloggen.util.Markdown.VERSION;
+
+    public record Entry(String src, long size, long mtime, String hash, String out) {
+        public boolean skipped() {
+            return "-".equals(out);
+        }
+    }
+
+    private final String templateHash;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    public ImportManifest(String templateHash) {
+        this.templateHash = templateHash;
+    }
+
+    /** Loads the previous state; empty when missing, unreadable or made with another renderer or template. */
+    public static ImportManifest load(Path siteRoot, String templateHash) {
+        ImportManifest m = new ImportManifest(templateHash);
+        Path file = siteRoot.resolve(FILE_NAME);
+        if (!Files.exists(file))
+            return m;
+        try {
+            var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !(HEADER + "\t" + templateHash).equals(lines.get(0)))
+                return m;
+            for (int i = 1; i < lines.size(); i++) {
+                String[] f = lines.get(i).split("\t", -1);
+                if (f.length != 5)
+                    continue;
+                try {
+                    m.put(new Entry(f[0], Long.parseLong(f[1]), Long.parseLong(f[2]), f[3], f[4]));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            io.site.bloggen.util.Log.warn("import manifest unreadable, re-importing: " + e.getMessage());
+            return new ImportManifest(templateHash);
+        }
+        return m;
+    }
+
+    public void save(Path siteRoot) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER).append('\t').append(templateHash).append('\n');
+        for (Entry e : entries.values()) {
+            sb.append(e.src()).append('\t').append(e.size()).append('\t').append(e.mtime()).append('\t')
+                    .append(e.hash()).append('\t').append(e.out()).append('\n');
+        }
+        Files.writeString(siteRoot.resolve(FILE_NAME), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    public Entry get(String src) {
+        return entries.get(src);
+    }
+
+    public void put(Entry e) {
+        entries.put(e.src(), e);
+    }
+}
@@ -0,0 +1,142 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Build-scoped resolver for {@code <!-- @include path -->}: each partial is read once (src first, then the
+ * packaged /templates copy), nested includes are expanded, and cycles are cut with a comment. Callers pass
+ * a set that collects every partial a page pulled in, directly or through other partials.
+ */
+public final class IncludeCache {
+    // Pattern: <!-- @include path --> or <!-- @include path="..." -->
+    private static final Pattern INCLUDE = Pattern
+            .compile("<!--\\s*@include\\s+(?:path=)?\"?([^\"\s]+)\"?\\s*-->");
+
+    private final Path srcRoot;
+    private final BuildStats stats;
+    private final ConcurrentHashMap<String, Optional<String>> raw = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<>();
+    // fully expanded partials and the partials each one pulled in (only cached when cycle-free)
+    private final ConcurrentHashMap<String, String> expanded = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> closure = new ConcurrentHashMap<>();
+    private final Set<String> cycles = ConcurrentHashMap.newKeySet();
+
+    public IncludeCache(Path srcRoot, BuildStats stats) {
+        this.srcRoot = srcRoot;
+        this.stats = stats;
+    }
+
+    public String expand(String text, Set<String> used) {
+        return expand(text, used, new ArrayDeque<>());
+    }
+
+    /** Stable key over the current content of {@code includes}; changes when any of them is edited. */
+    public String key(Collection<String> includes) {
+        StringBuilder sb = new StringBuilder();
+        for (String rel : new TreeSet<>(includes)) {
+            String h = hashes.get(rel);
+            if (h == null) {
+                h = BuildManifest.hash(load(rel).orElse(""));
+                hashes.putIfAbsent(rel, h);
+            }
+            sb.append(rel).append('=').append(h).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String expand(String text, Set<String> used, Deque<String> stack) {
+        if (!text.contains("@include"))
+            return text;
+        Matcher m = INCLUDE.matcher(text);
+        StringBuilder sb = null;
+        int last = 0;
+        while (m.find()) {
+            if (sb == null)
+                sb = new StringBuilder(text.length() + 4096);
+            String rel = m.group(1).trim();
+            used.add(rel);
+            String repl;
+            if (stack.contains(rel)) {
+                var chain = new java.util.ArrayList<>(stack);
+                Collections.reverse(chain);
+                String path = String.join(" -> ", chain) + " -> " + rel;
+                if (cycles.add(path))
+                    io.site.bloggen.util.Log.warn("include cycle: " + path);
+                repl = "<!-- include cycle: " + path + " -->";
+            } else {
+                repl = partial(rel, used, stack);
+            }
+            sb.append(text, last, m.start()).append(repl);
+            last = m.end();
+        }
+        if (sb == null)
+            return text;
+        return sb.append(text, last, text.length()).toString();
+    }
+
+    private String partial(String rel, Set<String> used, Deque<String> stack) {
+        String done = expanded.get(rel);
+        if (done != null) {
+            used.addAll(closure.get(rel));
+            return done;
+        }
+        Optional<String> body = load(rel);
+        if (body.isEmpty())
+            return "<!-- include not found: " + rel + " -->";
+        Set<String> inner = new TreeSet<>();
+        stack.push(rel);
+        String out;
+        try {
+            out = expand(body.get(), inner, stack);
+        } finally {
+            stack.pop();
+        }
+        used.addAll(inner);
+        if (!inner.contains(rel) && Collections.disjoint(inner, stack)) {
+            closure.putIfAbsent(rel, Set.copyOf(inner));
+            expanded.putIfAbsent(rel, out);
+        }
+        return out;
+    }
+
+    private Optional<String> load(String rel) {
+        Optional<String> cached = raw.get(rel);
+        if (cached != null)
+            return cached;
+        Optional<String> v;
+        try {
+            Path inc = srcRoot.resolve(rel).normalize();
+            byte[] bytes;
+            if (Files.exists(inc)) {
+                bytes = Files.readAllBytes(inc);
+            } else {
+                // Fallback to packaged template resource: /templates/<rel>
+                String resourcePath = "/templates/" + rel.replace('\\', '/');
+                try (InputStream is = IncludeCache.class.getResourceAsStream(resourcePath)) {
+                    bytes = is != null ? is.readAllBytes() : null;
+                }
+            }
+            if (bytes != null)
+                stats.read(bytes.length);
+            v = bytes != null ? Optional.of(new String(bytes, StandardCharsets.UTF_8)) : Optional.empty();
+        } catch (IOException e) {
+            v = Optional.of("<!-- include error: " + rel + " -->");
+        }
+        Optional<String> prior = raw.putIfAbsent(rel, v);
+        return prior != null ? prior : v;
+    }
+}
@@ -13,135 +13,253 @@ import java.time.format.DateTimeFormatter;
 import java.util.Map;
 
 public final class MdImportService {
+    private static final DateTimeFormatter DATE_TIME_SPACE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final java.util.regex.Pattern ISO_DATE = java.util.regex.Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+
+    /** One source note: its import state, plus the rendered files when it has to be (re)written. */
+    private static final class Note {
+        String src;
+        long size;
+        long mtime;
+        String hash;
+        String out; // "posts/<date>-<slug>.html", or null when the note is not published
+        String html; // null when the existing outputs are current
+        String meta;
+        String cat = "";
+        String info;
+        String warn;
+    }
+
     public io.site.bloggen.util.Result<Integer> importAll(Path mdDir, Path siteRoot, boolean dryRun, boolean verbose) {
+        return importAll(mdDir, siteRoot, dryRun, verbose, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Imports published notes on up to {@code jobs} threads. A note whose bytes (front matter included) and
+     * the post template match the previous run's {@link ImportManifest}, and whose outputs still exist, is
+     * neither rendered nor rewritten. Returns the number of published notes.
+     */
+    public io.site.bloggen.util.Result<Integer> importAll(Path mdDir, Path siteRoot, boolean dryRun, boolean verbose,
+            int jobs) {
         io.site.bloggen.util.Log.setVerbose(verbose);
         int count = 0;
         try {
             if (!Files.exists(mdDir))
                 return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO, "md path not found: " + mdDir);
+            String tpl = loadTemplate();
+            String tplHash = BuildManifest.hash(tpl);
+            var prev = ImportManifest.load(siteRoot, tplHash);
+            var next = new ImportManifest(tplHash);
+            java.util.List<Path> files;
             try (var walk = Files.walk(mdDir)) {
-                for (Path p : (Iterable<Path>) walk.filter(f -> Files.isRegularFile(f)
-                        && f.getFileName().toString().toLowerCase().endsWith(".md"))::iterator) {
-                    String md = Files.readString(p, StandardCharsets.UTF_8);
-                    // detect presence of front matter block
-                    String s = md;
-                    if (s.startsWith("\uFEFF"))
-                        s = s.substring(1);
-                    s = s.stripLeading();
-                    boolean hasFM = s.startsWith("---") && s.indexOf('\n') >= 0
-                            && s.indexOf("\n---", s.indexOf('\n')) >= 0;
-                    Map<String, String> fm = FrontMatter.parse(md);
-                    String publish = firstOf(fm, "publish");
-                    if (publish == null)
-                        publish = "false";
-                    if (!"true".equalsIgnoreCase(publish)) {
-                        if (hasFM)
-                            io.site.bloggen.util.Log.info("skip: publish!=true " + p);
-                        continue;
-                    }
-                    String title = sanitizeVisible(defaultString(firstOf(fm, "title", "subject", "name")));
-                    String rawPath = defaultString(firstOf(fm, "path", "category", "categories", "category_path"));
-                    String dateStr = defaultString(
-                            firstOf(fm, "createdDate", "createDate", "created_at", "created", "date"));
-                    if (title.isBlank() || dateStr.isBlank()) {
-                        if (hasFM)
-                            io.site.bloggen.util.Log.warn("skip: missing title/date: " + p);
-                        continue;
-                    }
-                    java.time.LocalDateTime dateTime;
-                    try {
-                        // Try ISO_LOCAL_DATE_TIME first (2025-12-27T00:00:00)
-                        dateTime = java.time.LocalDateTime.parse(dateStr);
-                    } catch (Exception ex) {
-                        try {
-                            // Try "yyyy-MM-dd HH:mm:ss"
-                            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                            dateTime = java.time.LocalDateTime.parse(dateStr, dtf);
-                        } catch (Exception ex2) {
-                            try {
-                                // Fallback to Date (yyyy-MM-dd)
-                                LocalDate d = LocalDate.parse(dateStr);
-                                dateTime = d.atStartOfDay();
-                            } catch (Exception ex3) {
-                                // Regex fallback for yyyy-MM-dd
-                                java.util.regex.Matcher m = java.util.regex.Pattern.compile("(\\d{4}-\\d{2}-\\d{2})")
-                                        .matcher(dateStr);
-                                if (m.find()) {
-                                    try {
-                                        dateTime = LocalDate.parse(m.group(1)).atStartOfDay();
-                                    } catch (Exception ex4) {
-                                        if (hasFM)
-                                            io.site.bloggen.util.Log.warn("skip: invalid createdDate: " + p);
-                                        continue;
-                                    }
-                                } else {
-                                    if (hasFM)
-                                        io.site.bloggen.util.Log.warn("skip: invalid createdDate: " + p);
-                                    continue;
-                                }
-                            }
-                        }
-                    }
+                files = walk.filter(f -> Files.isRegularFile(f)
+                        && f.getFileName().toString().toLowerCase().endsWith(".md")).sorted().toList();
+            }
+            var notes = convertAll(files, jobs, p -> convert(p, mdDir, siteRoot, tpl, prev));
+            java.util.Set<String> written = new java.util.HashSet<>();
+            for (Note n : notes) {
+                if (n.info != null)
+                    io.site.bloggen.util.Log.info(n.info);
+                if (n.warn != null)
+                    io.site.bloggen.util.Log.warn(n.warn);
+                next.put(new ImportManifest.Entry(n.src, n.size, n.mtime, n.hash, n.out == null ? "-" : n.out));
+                if (n.out == null)
+                    continue;
+                count++;
+                Path out = siteRoot.resolve(n.out);
+                if (n.html == null) {
+                    io.site.bloggen.util.Log.debug("unchanged: " + n.src + " -> " + out);
+                    continue;
+                }
+                if (!written.add(n.out))
+                    io.site.bloggen.util.Log.warn("import: " + n.src + " overwrites " + out);
+                if (dryRun) {
+                    io.site.bloggen.util.Log.info("[dry-run] import: " + mdDir.resolve(n.src) + " -> " + out
+                            + (n.cat.isBlank() ? "" : " (cat: " + n.cat + ")"));
+                } else {
+                    FS.ensureDir(out.getParent());
+                    Files.writeString(out, n.html, StandardCharsets.UTF_8);
+                    Path meta = out.resolveSibling(out.getFileName().toString() + ".meta.json");
+                    Files.writeString(meta, n.meta, StandardCharsets.UTF_8);
+                    io.site.bloggen.util.Log.info("imported: " + mdDir.resolve(n.src) + " -> " + out);
+                }
+            }
+            if (!dryRun)
+                next.save(siteRoot);
+            return io.site.bloggen.util.Result.ok(count);
+        } catch (IOException e) {
+            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO, e.getMessage());
+        }
+    }
 
-                    LocalDate date = dateTime.toLocalDate(); // For filename
+    @FunctionalInterface
+    private interface NoteTask {
+        Note run(Path p) throws IOException;
+    }
 
-                    String slug = slugFromFile(p.getFileName().toString(), title);
-                    String htmlContent = Markdown.toHtml(md);
-                    // Optional frontmatter block (always embedded; visibility controlled at build)
-                    if (!fm.isEmpty()) {
-                        String fmBlock = buildFrontMatterBlock(fm);
-                        htmlContent = fmBlock + htmlContent;
-                    }
-                    String excerpt = Markdown.firstParagraphText(md);
-                    String series = defaultString(firstOf(fm, "series", "Series"));
-                    String seriesOrderStr = defaultString(firstOf(fm, "series-order", "series_order", "order"));
-                    String seriesOrder = "";
-                    if (!series.isBlank()) {
+    /** Runs {@code task} for every file on up to {@code jobs} threads; results keep the file order. */
+    private static java.util.List<Note> convertAll(java.util.List<Path> files, int jobs, NoteTask task)
+            throws IOException {
+        var notes = new java.util.ArrayList<Note>(files.size());
+        if (jobs <= 1 || files.size() <= 1) {
+            for (Path p : files)
+                notes.add(task.run(p));
+            return notes;
+        }
+        try (var pool = java.util.concurrent.Executors.newFixedThreadPool(Math.min(jobs, files.size()))) {
+            var futures = new java.util.ArrayList<java.util.concurrent.Future<Note>>(files.size());
+            for (Path p : files)
+                futures.add(pool.submit(() -> task.run(p)));
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    notes.add(futures.get(i).get());
+                } catch (java.util.concurrent.ExecutionException e) {
+                    pool.shutdownNow();
+                    if (e.getCause() instanceof IOException io)
+                        throw io;
+                    throw new IOException(files.get(i) + ": " + e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    pool.shutdownNow();
+                    throw new IOException("import interrupted");
+                }
+            }
+        }
+        return notes;
+    }
+
+    private static Note convert(Path p, Path mdDir, Path siteRoot, String tpl, ImportManifest prev)
+            throws IOException {
+        Note n = new Note();
+        n.src = mdDir.relativize(p).toString().replace(java.io.File.separatorChar, '/');
+        n.size = Files.size(p);
+        n.mtime = Files.getLastModifiedTime(p).toMillis();
+        var old = prev.get(n.src);
+        if (old != null && old.size() == n.size && old.mtime() == n.mtime && outputsExist(siteRoot, old))
+            return unchanged(n, old.hash(), old);
+        byte[] bytes = Files.readAllBytes(p);
+        String hash = BuildManifest.hash(bytes);
+        if (old != null && old.hash().equals(hash) && outputsExist(siteRoot, old))
+            return unchanged(n, hash, old);
+        n.hash = hash;
+        String md = new String(bytes, StandardCharsets.UTF_8);
+        // detect presence of front matter block
+        String s = md;
+        if (s.startsWith("\uFEFF"))
+            s = s.substring(1);
+        s = s.stripLeading();
+        boolean hasFM = s.startsWith("---") && s.indexOf('\n') >= 0
+                && s.indexOf("\n---", s.indexOf('\n')) >= 0;
+        Map<String, String> fm = FrontMatter.parse(md);
+        String publish = firstOf(fm, "publish");
+        if (publish == null)
+            publish = "false";
+        if (!"true".equalsIgnoreCase(publish)) {
+            if (hasFM)
+                n.info = "skip: publish!=true " + p;
+            return n;
+        }
+        String title = sanitizeVisible(defaultString(firstOf(fm, "title", "subject", "name")));
+        String rawPath = defaultString(firstOf(fm, "path", "category", "categories", "category_path"));
+        String dateStr = defaultString(
+                firstOf(fm, "createdDate", "createDate", "created_at", "created", "date"));
+        if (title.isBlank() || dateStr.isBlank()) {
+            if (hasFM)
+                n.warn = "skip: missing title/date: " + p;
+            return n;
+        }
+        java.time.LocalDateTime dateTime = parseDateTime(dateStr);
+        if (dateTime == null) {
+            if (hasFM)
+                n.warn = "skip: invalid createdDate: " + p;
+            return n;
+        }
+
+        LocalDate date = dateTime.toLocalDate(); // For filename
+
+        String slug = slugFromFile(p.getFileName().toString(), title);
+        String body = Markdown.toHtml(md);
+        String htmlContent = body;
+        // Optional frontmatter block (always embedded; visibility controlled at build)
+        if (!fm.isEmpty()) {
+            String fmBlock = buildFrontMatterBlock(fm);
+            htmlContent = fmBlock + htmlContent;
+        }
+        String excerpt = Markdown.excerpt(body);
+        String series = defaultString(firstOf(fm, "series", "Series"));
+        String seriesOrderStr = defaultString(firstOf(fm, "series-order", "series_order", "order"));
+        String seriesOrder = "";
+        if (!series.isBlank()) {
+            try {
+                Integer.parseInt(seriesOrderStr.trim());
+                seriesOrder = seriesOrderStr.trim();
+            } catch (Exception ignore) {
+                seriesOrder = "";
+            }
+        }
+        String tagRaw = defaultString(firstOf(fm, "tags", "tag", "keywords"));
+        // Clean up YAML list style ["a", "b"] -> a, b
+        String tags = tagRaw.replaceAll("^\\[|\\]$", "").replace("\"", "").replace("'", "");
+        // Handle hyphenated lists "- a - b" -> "a,b"
+        if (tags.contains("- ")) {
+            tags = tags.replace("- ", ",");
+        }
+
+        n.out = "posts/" + date + "-" + slug + ".html";
+        n.html = tpl.replace("{{TITLE}}", escape(title)).replace("{{DATE}}", date.toString())
+                .replace("{{CONTENT_HTML}}", htmlContent);
+        String cat = normalizeCatPath(rawPath);
+        n.cat = cat;
+        n.meta = "{\n  \"PAGE_DESCRIPTION\": \"" + escape(excerpt) + "\""
+                + (cat.isBlank() ? "" : "\n,  \"CATEGORY_PATH\": \"" + escape(cat) + "\"")
+                + (!series.isBlank() ? "\n,  \"SERIES\": \"" + escape(series) + "\"" : "")
+                + (!series.isBlank() && !seriesOrder.isBlank()
+                        ? "\n,  \"SERIES_ORDER\": \"" + escape(seriesOrder) + "\""
+                        : "")
+                + (!tags.isBlank() ? "\n,  \"TAGS\": \"" + escape(tags) + "\"" : "")
+                + "\n,  \"CREATED_AT\": \"" + dateTime.toString() + "\""
+                + "\n}\n";
+        return n;
+    }
+
+    private static Note unchanged(Note n, String hash, ImportManifest.Entry old) {
+        n.hash = hash;
+        n.out = old.skipped() ? null : old.out();
+        return n;
+    }
+
+    private static boolean outputsExist(Path siteRoot, ImportManifest.Entry e) {
+        if (e.skipped())
+            return true;
+        Path out = siteRoot.resolve(e.out());
+        return Files.exists(out) && Files.exists(out.resolveSibling(out.getFileName().toString() + ".meta.json"));
+    }
+
+    private static java.time.LocalDateTime parseDateTime(String dateStr) {
+        try {
+            // Try ISO_LOCAL_DATE_TIME first (2025-12-27T00:00:00)
+            return java.time.LocalDateTime.parse(dateStr);
+        } catch (Exception ex) {
+            try {
+                // Try "yyyy-MM-dd HH:mm:ss"
+                return java.time.LocalDateTime.parse(dateStr, DATE_TIME_SPACE);
+            } catch (Exception ex2) {
+                try {
+                    // Fallback to Date (yyyy-MM-dd)
+                    return LocalDate.parse(dateStr).atStartOfDay();
+                } catch (Exception ex3) {
+                    // Regex fallback for yyyy-MM-dd
+                    java.util.regex.Matcher m = ISO_DATE.matcher(dateStr);
+                    if (m.find()) {
                         try {
-                            Integer.parseInt(seriesOrderStr.trim());
-                            seriesOrder = seriesOrderStr.trim();
-                        } catch (Exception ignore) {
-                            seriesOrder = "";
+                            return LocalDate.parse(m.group(1)).atStartOfDay();
+                        } catch (Exception ex4) {
+                            return null;
                         }
                     }
-                    String tagRaw = defaultString(firstOf(fm, "tags", "tag", "keywords"));
-                    // Clean up YAML list style ["a", "b"] -> a, b
-                    String tags = tagRaw.replaceAll("^\\[|\\]$", "").replace("\"", "").replace("'", "");
-                    // Handle hyphenated lists "- a - b" -> "a,b"
-                    if (tags.contains("- ")) {
-                        tags = tags.replace("- ", ",");
-                    }
-
-                    Path out = siteRoot.resolve("posts").resolve(date + "-" + slug + ".html");
-                    String tpl = loadTemplate();
-                    String html = tpl.replace("{{TITLE}}", escape(title)).replace("{{DATE}}", date.toString())
-                            .replace("{{CONTENT_HTML}}", htmlContent);
-                    if (dryRun) {
-                        io.site.bloggen.util.Log.info("[dry-run] import: " + p + " -> " + out
-                                + (rawPath.isBlank() ? "" : " (cat: " + normalizeCatPath(rawPath) + ")"));
-                    } else {
-                        FS.ensureDir(out.getParent());
-                        Files.writeString(out, html, StandardCharsets.UTF_8);
-                        Path meta = out.resolveSibling(out.getFileName().toString() + ".meta.json");
-                        String cat = normalizeCatPath(rawPath);
-                        String metaJson = "{\n  \"PAGE_DESCRIPTION\": \"" + escape(excerpt) + "\""
-                                + (cat.isBlank() ? "" : "\n,  \"CATEGORY_PATH\": \"" + escape(cat) + "\"")
-                                + (!series.isBlank() ? "\n,  \"SERIES\": \"" + escape(series) + "\"" : "")
-                                + (!series.isBlank() && !seriesOrder.isBlank()
-                                        ? "\n,  \"SERIES_ORDER\": \"" + escape(seriesOrder) + "\""
-                                        : "")
-                                + (!tags.isBlank() ? "\n,  \"TAGS\": \"" + escape(tags) + "\"" : "")
-                                + "\n,  \"CREATED_AT\": \"" + dateTime.toString() + "\""
-                                + "\n}\n";
-                        Files.writeString(meta, metaJson, StandardCharsets.UTF_8);
-                        io.site.bloggen.util.Log.info("imported: " + p + " -> " + out);
-                    }
-                    count++;
+                    return null;
                 }
             }
-            return io.site.bloggen.util.Result.ok(count);
-        } catch (IOException e) {
-            return io.site.bloggen.util.Result.err(io.site.bloggen.util.Exit.IO, e.getMessage());
         }
     }
 
@@ -0,0 +1,184 @@
+package io.site.bloggen.service;
+
+import io.site.bloggen.core.Post;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Post metadata kept in the output directory between builds (one tab-separated line per post), so a scan
+ * only reads posts whose .html or .meta.json changed size or mtime since the index was written.
+ * {@code heading} is {@link Post#heading()}; "\N" stands for null. {@code terms} is the post's term vector
+ * (null when the scan did not compute one) and {@code related} the file names {@link RelatedPosts} chose for
+ * it, separated by '|'; a "# related" line records the inputs those lists were computed from.
+ */
+public final class PostIndex {
+    public static final String FILE_NAME = ".llog-posts";
+    private static final String HEADER = "# llog-posts 3";
+    private static final String RELATED = "# related ";
+
+    public record Entry(String name, long htmlSize, long htmlMtime, long metaSize, long metaMtime, LocalDateTime date,
+            String title, String heading, List<String> tags, String description, int words, String categoryPath,
+            String series, Integer seriesOrder, String terms, String related) {
+        public boolean matches(long htmlSize, long htmlMtime, long metaSize, long metaMtime) {
+            return this.htmlSize == htmlSize && this.htmlMtime == htmlMtime && this.metaSize == metaSize
+                    && this.metaMtime == metaMtime;
+        }
+
+        public Post toPost() {
+            int minutes = Math.max(1, (int) Math.ceil(words / 200.0));
+            return new Post(name, "/posts/" + name, date, title, tags, description, minutes + " min read",
+                    categoryPath, series, seriesOrder, heading);
+        }
+
+        public Entry withRelated(String related) {
+            return new Entry(name, htmlSize, htmlMtime, metaSize, metaMtime, date, title, heading, tags, description,
+                    words, categoryPath, series, seriesOrder, terms, related);
+        }
+    }
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private String relatedKey = "";
+    private boolean dirty;
+
+    /** Loads the index; empty (every post is re-read) when missing or in an unknown format. */
+    public static PostIndex load(Path outDir) {
+        PostIndex idx = new PostIndex();
+        Path file = outDir.resolve(FILE_NAME);
+        if (!Files.exists(file))
+            return idx;
+        try {
+            var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !HEADER.equals(lines.get(0)))
+                return idx;
+            for (int i = 1; i < lines.size(); i++) {
+                if (lines.get(i).startsWith(RELATED)) {
+                    idx.relatedKey = lines.get(i).substring(RELATED.length());
+                    continue;
+                }
+                String[] f = lines.get(i).split("\t", -1);
+                if (f.length != 16)
+                    continue;
+                try {
+                    List<String> tags = f[8].isEmpty() ? List.of()
+                            : List.of(unescape(f[8]).substring(1).split(",", -1));
+                    String heading = "\\N".equals(f[7]) ? null : unescape(f[7]);
+                    idx.entries.put(unescape(f[0]), new Entry(unescape(f[0]), Long.parseLong(f[1]),
+                            Long.parseLong(f[2]), Long.parseLong(f[3]), Long.parseLong(f[4]), LocalDateTime.parse(f[5]),
+                            unescape(f[6]), heading, tags, unescape(f[9]), Integer.parseInt(f[10]), unescape(f[11]),
+                            unescape(f[12]), f[13].isEmpty() ? null : Integer.valueOf(f[13]),
+                            "\\N".equals(f[14]) ? null : unescape(f[14]), unescape(f[15])));
+                } catch (RuntimeException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            io.site.bloggen.util.Log.warn("post index unreadable, rescanning posts: " + e.getMessage());
+            return new PostIndex();
+        }
+        return idx;
+    }
+
+    /** Writes the index if a scan changed it or the file is gone (a full build wipes the output dir). */
+    public void save(Path outDir) throws IOException {
+        if (!dirty && Files.exists(outDir.resolve(FILE_NAME)))
+            return;
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        if (!relatedKey.isEmpty())
+            sb.append(RELATED).append(relatedKey).append('\n');
+        for (Entry e : entries.values()) {
+            sb.append(escape(e.name())).append('\t').append(e.htmlSize()).append('\t').append(e.htmlMtime())
+                    .append('\t').append(e.metaSize()).append('\t').append(e.metaMtime()).append('\t')
+                    .append(e.date()).append('\t').append(escape(e.title())).append('\t')
+                    .append(e.heading() == null ? "\\N" : escape(e.heading())).append('\t')
+                    .append(escape(joinTags(e.tags())))
+                    .append('\t').append(escape(e.description())).append('\t').append(e.words()).append('\t')
+                    .append(escape(e.categoryPath())).append('\t').append(escape(e.series())).append('\t')
+                    .append(e.seriesOrder() == null ? "" : e.seriesOrder().toString()).append('\t')
+                    .append(e.terms() == null ? "\\N" : escape(e.terms())).append('\t').append(escape(e.related()))
+                    .append('\n');
+        }
+        Files.createDirectories(outDir);
+        Files.writeString(outDir.resolve(FILE_NAME), sb.toString(), StandardCharsets.UTF_8);
+        dirty = false;
+    }
+
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    public void put(Entry e) {
+        if (!e.equals(entries.put(e.name(), e)))
+            dirty = true;
+    }
+
+    /** Hash of the inputs the stored related lists were computed from; "" when there are none. */
+    public String relatedKey() {
+        return relatedKey;
+    }
+
+    public void relatedKey(String key) {
+        if (!key.equals(relatedKey))
+            dirty = true;
+        relatedKey = key;
+    }
+
+    /** Drops entries for posts that no longer exist. */
+    public void retain(Collection<String> names) {
+        if (entries.keySet().retainAll(new HashSet<>(names)))
+            dirty = true;
+    }
+
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /** Each tag prefixed with ',' so an empty list and a list of one empty slug stay distinct. */
+    private static String joinTags(List<String> tags) {
+        StringBuilder sb = new StringBuilder();
+        for (String t : tags)
+            sb.append(',').append(t);
+        return sb.toString();
+    }
+
+    private static String escape(String s) {
+        if (s.indexOf('\\') < 0 && s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+            return s;
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0)
+            return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) {
+                sb.append(c);
+                continue;
+            }
+            char n = s.charAt(++i);
+            sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+        }
+        return sb.toString();
+    }
+}
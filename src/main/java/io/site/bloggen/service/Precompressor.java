@@ -0,0 +1,109 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a gzip copy next to each compressible output ({@code index.html} -> {@code index.html.gz}) for
+ * servers that send precompressed files as they are (nginx {@code gzip_static}). Files under
+ * {@value #MIN_SIZE} bytes are left alone. A copy is recorded with the content hash of the file it was made
+ * from, so an incremental build keeps it while that file is unchanged.
+ */
+public final class Precompressor {
+    public static final String SUFFIX = ".gz";
+    static final int MIN_SIZE = 1024;
+    private static final String[] TYPES = { ".html", ".xml", ".css", ".js", ".svg" };
+
+    private Precompressor() {
+    }
+
+    /**
+     * Compresses the compressible {@code keys} (outputs recorded in {@code next}) on up to {@code jobs} threads
+     * and records the copies in {@code next}; returns the failures as "path: message".
+     */
+    public static List<String> compress(Path out, Collection<String> keys, BuildManifest prev, BuildManifest next,
+            int jobs, BuildStats stats) throws IOException {
+        var todo = new ArrayList<BuildManifest.Entry>();
+        for (String k : new TreeSet<>(keys)) {
+            if (compressible(k) && !next.contains(k + SUFFIX) && Files.size(out.resolve(k)) >= MIN_SIZE)
+                todo.add(next.get(k));
+        }
+        var failures = new ArrayList<String>();
+        if (todo.isEmpty())
+            return failures;
+        try (var pool = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs, todo.size())))) {
+            var futures = new ArrayList<Future<Void>>(todo.size());
+            for (var e : todo) {
+                futures.add(pool.submit(() -> {
+                    compress(out, e, prev, next, stats);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < todo.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.add(todo.get(i).path() + SUFFIX + ": " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.add(todo.get(i).path() + SUFFIX + ": interrupted");
+                    pool.shutdownNow();
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static void compress(Path out, BuildManifest.Entry src, BuildManifest prev, BuildManifest next,
+            BuildStats stats) throws IOException {
+        String key = src.path() + SUFFIX;
+        Path file = out.resolve(src.path());
+        Path target = out.resolve(key);
+        String from = src.identity();
+        var old = prev.get(key);
+        if (old != null && old.origin() == 'G' && old.hash().equals(from) && Files.exists(target)
+                && Files.size(target) == old.size()) {
+            next.put(old);
+            return;
+        }
+        byte[] raw = Files.readAllBytes(file);
+        stats.read(raw.length);
+        var buf = new java.io.ByteArrayOutputStream(raw.length / 3 + 64);
+        try (var gz = gzip(buf)) {
+            gz.write(raw);
+        }
+        byte[] bytes = buf.toByteArray();
+        Files.deleteIfExists(target); // never write through a link into the source tree
+        Files.write(target, bytes);
+        stats.wrote(bytes.length);
+        next.put(new BuildManifest.Entry(key, 'G', bytes.length, -1, from, "", BuildManifest.hash(bytes)));
+    }
+
+    /** gzip at the highest level: the copy is made once and served many times. The header has no mtime. */
+    private static GZIPOutputStream gzip(OutputStream os) throws IOException {
+        return new GZIPOutputStream(os, 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+    }
+
+    private static boolean compressible(String name) {
+        for (String t : TYPES)
+            if (name.endsWith(t))
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,230 @@
+package io.site.bloggen.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local preview of a built site on the JDK HTTP server, one virtual thread per exchange. The site is an
+ * output dir or a build held in memory ({@link BuildService#preview}). Only paths in the build manifest are
+ * served; the manifest's content hash is the ETag, so an unchanged file answers 304, and
+ * responses are kept in memory until a rebuild changes their hash. HTML pages get a small script that
+ * listens on {@value #EVENTS} and reloads the tab after {@link #reload()}.
+ */
+public final class PreviewServer implements AutoCloseable {
+    static final String EVENTS = "/__llog/events";
+    private static final long KEEPALIVE_SECONDS = 15;
+    private static final String SCRIPT = "<script>new EventSource('" + EVENTS
+            + "').onmessage=function(){location.reload()}</script>";
+    private static final Map<String, String> TYPES = Map.ofEntries(
+            Map.entry("html", "text/html; charset=utf-8"), Map.entry("css", "text/css; charset=utf-8"),
+            Map.entry("js", "text/javascript; charset=utf-8"), Map.entry("json", "application/json"),
+            Map.entry("xml", "application/xml"), Map.entry("txt", "text/plain; charset=utf-8"),
+            Map.entry("webmanifest", "application/manifest+json"), Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"), Map.entry("jpg", "image/jpeg"), Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"), Map.entry("webp", "image/webp"), Map.entry("avif", "image/avif"),
+            Map.entry("ico", "image/x-icon"), Map.entry("woff2", "font/woff2"), Map.entry("woff", "font/woff"),
+            Map.entry("ttf", "font/ttf"), Map.entry("otf", "font/otf"), Map.entry("gz", "application/gzip"));
+
+    private record Body(String etag, byte[] bytes) {
+    }
+
+    /** Where the outputs of the last build are read from. */
+    public interface Site {
+        BuildManifest manifest();
+
+        /** Whether the output was produced (partials stay in the manifest but are not). */
+        boolean has(String key);
+
+        byte[] read(String key) throws IOException;
+
+        /** The files a build wrote to {@code out}. */
+        static Site of(Path out) {
+            return new Site() {
+                @Override
+                public BuildManifest manifest() {
+                    return BuildManifest.load(out);
+                }
+
+                @Override
+                public boolean has(String key) {
+                    return Files.isRegularFile(out.resolve(key));
+                }
+
+                @Override
+                public byte[] read(String key) throws IOException {
+                    return Files.readAllBytes(out.resolve(key));
+                }
+            };
+        }
+    }
+
+    private final Site site;
+    private final HttpServer server;
+    private final Map<String, Body> bodies = new ConcurrentHashMap<>();
+    private final Set<BlockingQueue<String>> listeners = ConcurrentHashMap.newKeySet();
+    private volatile BuildManifest manifest;
+
+    public PreviewServer(Path out, String host, int port) throws IOException {
+        this(Site.of(out), host, port);
+    }
+
+    public PreviewServer(Site site, String host, int port) throws IOException {
+        this.site = site;
+        this.manifest = site.manifest();
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(EVENTS, this::events);
+        server.createContext("/", this::file);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Picks up the output of a rebuild and tells every open page to reload. */
+    public void reload() {
+        manifest = site.manifest();
+        for (var q : listeners)
+            q.offer("reload");
+    }
+
+    private void file(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            var m = manifest;
+            String key = lookup(m, ex.getRequestURI().getPath());
+            int status = 200;
+            if (key == null) {
+                status = 404;
+                key = has(m, "404.html") ? "404.html" : null;
+                if (key == null) {
+                    ex.sendResponseHeaders(404, -1);
+                    return;
+                }
+            }
+            Body body = body(key, m.get(key));
+            var h = ex.getResponseHeaders();
+            h.set("Content-Type", type(key));
+            h.set("Cache-Control", "no-cache");
+            h.set("ETag", body.etag());
+            if (status == 200 && body.etag().equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+            if (method.equals("HEAD")) {
+                h.set("Content-Length", Long.toString(body.bytes().length));
+                ex.sendResponseHeaders(status, -1);
+                return;
+            }
+            ex.sendResponseHeaders(status, body.bytes().length == 0 ? -1 : body.bytes().length);
+            ex.getResponseBody().write(body.bytes());
+        } catch (IOException e) {
+            io.site.bloggen.util.Log.debug("serve " + ex.getRequestURI() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The output for a request path, if the last build wrote it: {@code /} and {@code /dir/} are their
+     * index.html, and {@code /about} is about.html when there is no file of that name.
+     */
+    private String lookup(BuildManifest m, String path) {
+        if (path == null || !path.startsWith("/") || path.contains("/../") || path.endsWith("/.."))
+            return null;
+        String key = path.substring(1);
+        if (key.isEmpty() || key.endsWith("/"))
+            key = key + "index.html";
+        for (String k : new String[] { key, key + ".html", key + "/index.html" })
+            if (has(m, k))
+                return k;
+        return null;
+    }
+
+    private boolean has(BuildManifest m, String key) {
+        return m.contains(key) && site.has(key);
+    }
+
+    private Body body(String key, BuildManifest.Entry e) throws IOException {
+        String etag = '"' + e.identity() + '"';
+        Body cached = bodies.get(key);
+        if (cached != null && cached.etag().equals(etag))
+            return cached;
+        byte[] bytes = site.read(key);
+        if (key.endsWith(".html"))
+            bytes = withScript(bytes);
+        Body body = new Body(etag, bytes);
+        bodies.put(key, body);
+        return body;
+    }
+
+    /** Inserts the reload script before the last {@code </body>}, or at the end when there is none. */
+    private static byte[] withScript(byte[] page) {
+        String html = new String(page, StandardCharsets.UTF_8);
+        int at = html.length();
+        for (int i = html.length() - 7; i >= 0; i--) {
+            if (html.charAt(i) == '<' && html.regionMatches(true, i, "</body>", 0, 7)) {
+                at = i;
+                break;
+            }
+        }
+        return (html.substring(0, at) + SCRIPT + html.substring(at)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Server-sent events: one "reload" message per rebuild, a comment line every few seconds to keep it open. */
+    private void events(HttpExchange ex) throws IOException {
+        var q = new LinkedBlockingQueue<String>();
+        listeners.add(q);
+        try (ex) {
+            ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+            ex.getResponseHeaders().set("Cache-Control", "no-cache");
+            ex.sendResponseHeaders(200, 0);
+            OutputStream os = ex.getResponseBody();
+            os.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            while (true) {
+                String msg = q.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+                String line = msg == null ? ": keepalive\n\n" : "data: " + msg + "\n\n";
+                os.write(line.getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+        } catch (IOException e) {
+            // the tab was closed or reloaded
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            listeners.remove(q);
+        }
+    }
+
+    private static String type(String key) {
+        String ext = key.substring(key.lastIndexOf('.') + 1).toLowerCase(java.util.Locale.ROOT);
+        return TYPES.getOrDefault(ext, "application/octet-stream");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,289 @@
+package io.site.bloggen.service;
+
+import io.site.bloggen.core.Post;
+import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.core.SiteModel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Related posts for {@code {{RELATED_POSTS}}}, scored as a blend of body text similarity (cosine of tf-idf
+ * vectors), shared tags (cosine of idf-weighted tag sets) and category proximity (the share of leading path
+ * segments two posts have in common). Each post's vector is its {@value #MAX_TERMS} most frequent terms,
+ * computed when the post is scanned and kept in the {@link PostIndex}. Candidates come from inverted lists
+ * of terms, tags and categories; a feature on more than {@value #MAX_DF} posts is too common to say two posts
+ * are related and links none, so the work grows with the post count rather than its square. The lists are
+ * kept in the index too and reused while no post's vector, tags, category or date changed.
+ */
+public final class RelatedPosts {
+    static final int DEFAULT_COUNT = 5;
+    static final int MAX_TERMS = 40;
+    static final int MAX_DF = 256;
+    private static final int TITLE_WEIGHT = 3;
+    private static final float BODY_WEIGHT = 0.5f, TAG_WEIGHT = 0.3f, CATEGORY_WEIGHT = 0.2f;
+    private static final float MIN_SCORE = 0.05f;
+    private static final String VERSION = "1";
+
+    private RelatedPosts() {
+    }
+
+    /** Posts listed per page: site.json {@code related_posts} as a number, or true for the default; 0 is off. */
+    public static int count(SiteConfig cfg) {
+        String v = cfg.extras().getOrDefault("related_posts", "false").trim();
+        if (v.equalsIgnoreCase("true"))
+            return DEFAULT_COUNT;
+        try {
+            return Math.max(0, Integer.parseInt(v));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The index form of a post's term vector: its {@value #MAX_TERMS} most frequent title and article terms as
+     * space-separated "term:count" (title terms count {@value #TITLE_WEIGHT} times).
+     */
+    static String vector(String title, String page) {
+        var tf = new HashMap<String, Integer>();
+        if (title != null)
+            for (String t : SearchIndex.terms(title))
+                tf.merge(t, TITLE_WEIGHT, Integer::sum);
+        for (String t : SearchIndex.terms(SearchIndex.text(FeedService.articleBody(page))))
+            tf.merge(t, 1, Integer::sum);
+        var top = new ArrayList<>(tf.entrySet());
+        top.sort((a, b) -> a.getValue().equals(b.getValue()) ? a.getKey().compareTo(b.getKey())
+                : b.getValue() - a.getValue());
+        var sb = new StringBuilder();
+        for (int i = 0; i < Math.min(MAX_TERMS, top.size()); i++)
+            sb.append(i == 0 ? "" : " ").append(top.get(i).getKey()).append(':').append(top.get(i).getValue());
+        return sb.toString();
+    }
+
+    /**
+     * Up to {@code count} related posts per post file name, best first; posts with none are left out. Reads the
+     * vectors from {@code index} and stores the lists back in it.
+     */
+    public static Map<String, List<Post>> compute(SiteModel model, PostIndex index, int count) {
+        var posts = model.posts();
+        var entries = new PostIndex.Entry[posts.size()];
+        var key = new StringBuilder(VERSION).append('\u0000').append(count);
+        for (int i = 0; i < posts.size(); i++) {
+            Post p = posts.get(i);
+            entries[i] = index.get(p.fileName());
+            key.append('\u0000').append(p.fileName()).append('\u0001').append(p.date()).append('\u0001')
+                    .append(p.tags()).append('\u0001').append(p.categoryPath()).append('\u0001')
+                    .append(entries[i] == null ? "" : entries[i].terms());
+        }
+        String hash = BuildManifest.hash(key.toString());
+        if (!hash.equals(index.relatedKey())) {
+            var lists = rank(posts, entries, count);
+            for (int i = 0; i < posts.size(); i++)
+                if (entries[i] != null)
+                    index.put(entries[i] = entries[i].withRelated(lists.get(i)));
+            index.relatedKey(hash);
+        }
+        var out = new LinkedHashMap<String, List<Post>>();
+        for (int i = 0; i < posts.size(); i++) {
+            if (entries[i] == null || entries[i].related().isEmpty())
+                continue;
+            var list = new ArrayList<Post>();
+            for (String name : entries[i].related().split("\\|"))
+                if (model.byFile().get(name) != null)
+                    list.add(model.byFile().get(name));
+            if (!list.isEmpty())
+                out.put(posts.get(i).fileName(), List.copyOf(list));
+        }
+        return out;
+    }
+
+    /** {@code {{RELATED_POSTS}}} markup for a list; "" when it is empty. */
+    static String html(List<Post> related) {
+        if (related == null || related.isEmpty())
+            return "";
+        var sb = new StringBuilder("<nav class=\"c-related\" aria-label=\"{{RELATED_POSTS_LABEL}}\">")
+                .append("<h2 class=\"c-related__title\">{{RELATED_POSTS_LABEL}}</h2><ul class=\"c-related__list\">");
+        for (Post p : related) {
+            String date = p.date().toLocalDate().toString();
+            sb.append("<li><a href=\"").append(p.url()).append("\">").append(escapeHtml(p.title()))
+                    .append("</a> <time datetime=\"").append(date).append("\">").append(date).append("</time></li>");
+        }
+        return sb.append("</ul></nav>").toString();
+    }
+
+    /** The related file names of each post, joined by '|', in model order. */
+    private static List<String> rank(List<Post> posts, PostIndex.Entry[] entries, int count) {
+        int n = posts.size();
+        var body = new ArrayList<Map<String, Float>>(n);
+        var tags = new ArrayList<Map<String, Float>>(n);
+        var cats = new ArrayList<Map<String, Float>>(n);
+        for (int i = 0; i < n; i++) {
+            var tf = new HashMap<String, Float>();
+            String v = entries[i] == null || entries[i].terms() == null ? "" : entries[i].terms();
+            for (String pair : v.isEmpty() ? new String[0] : v.split(" ")) {
+                int c = pair.lastIndexOf(':');
+                if (c > 0)
+                    tf.put(pair.substring(0, c), 1 + (float) Math.log(Integer.parseInt(pair.substring(c + 1))));
+            }
+            body.add(tf);
+            var tg = new HashMap<String, Float>();
+            for (String t : posts.get(i).tags())
+                tg.put(t, 1f);
+            tags.add(tg);
+            String cp = posts.get(i).categoryPath();
+            cats.add(cp == null || cp.isBlank() ? Map.of() : Map.of(cp, 1f));
+        }
+        var bodySpace = new Space(body);
+        var tagSpace = new Space(tags);
+        var catSpace = new Space(cats); // candidates only: the score is path proximity
+        var paths = new String[n][];
+        for (int i = 0; i < n; i++) {
+            String cp = posts.get(i).categoryPath();
+            paths[i] = cp == null || cp.isBlank() ? new String[0] : cp.split("/");
+        }
+
+        float[] acc = new float[n];
+        int[] seen = new int[n];
+        int[] touched = new int[n];
+        var out = new ArrayList<String>(n);
+        for (int a = 0; a < n; a++) {
+            int stamp = a + 1, m = 0;
+            m = bodySpace.accumulate(a, BODY_WEIGHT, acc, seen, stamp, touched, m);
+            m = tagSpace.accumulate(a, TAG_WEIGHT, acc, seen, stamp, touched, m);
+            m = catSpace.accumulate(a, 0f, acc, seen, stamp, touched, m);
+            // min-heap of the best so far; on equal scores the older post (higher index) goes first
+            Comparator<Integer> worse = (x, y) -> acc[x] != acc[y] ? Float.compare(acc[x], acc[y])
+                    : Integer.compare(y, x);
+            var heap = new PriorityQueue<Integer>(count + 1, worse);
+            for (int k = 0; k < m; k++) {
+                int b = touched[k];
+                acc[b] += CATEGORY_WEIGHT * proximity(paths[a], paths[b]);
+                if (acc[b] < MIN_SCORE || heap.size() == count && worse.compare(b, heap.peek()) <= 0)
+                    continue;
+                heap.add(b);
+                if (heap.size() > count)
+                    heap.poll();
+            }
+            var best = new String[heap.size()];
+            for (int k = best.length - 1; k >= 0; k--)
+                best[k] = posts.get(heap.poll()).fileName();
+            out.add(String.join("|", best));
+            for (int k = 0; k < m; k++)
+                acc[touched[k]] = 0;
+        }
+        return out;
+    }
+
+    /** Shared leading segments over the deeper path's depth: 1 for the same category, 0 for unrelated ones. */
+    private static float proximity(String[] x, String[] y) {
+        if (x.length == 0 || y.length == 0)
+            return 0;
+        int shared = 0;
+        while (shared < Math.min(x.length, y.length) && x[shared].equals(y[shared]))
+            shared++;
+        return (float) shared / Math.max(x.length, y.length);
+    }
+
+    /**
+     * Unit-length tf-idf vectors of one kind of feature, plus an inverted list for each feature on 2 to
+     * {@value #MAX_DF} posts (a feature on one post links nothing, one on too many links everything).
+     */
+    private static final class Space {
+        final int[][] features;
+        final float[][] weights;
+        final int[][] postings;
+        final float[][] postingWeights;
+
+        Space(List<Map<String, Float>> docs) {
+            var ids = new HashMap<String, Integer>();
+            var df = new ArrayList<int[]>();
+            for (var doc : docs) {
+                for (String f : doc.keySet()) {
+                    Integer id = ids.get(f);
+                    if (id == null) {
+                        ids.put(f, id = df.size());
+                        df.add(new int[1]);
+                    }
+                    df.get(id)[0]++;
+                }
+            }
+            int n = docs.size();
+            features = new int[n][];
+            weights = new float[n][];
+            int[] listed = new int[ids.size()];
+            for (int d = 0; d < n; d++) {
+                var doc = docs.get(d);
+                int[] fs = new int[doc.size()];
+                float[] ws = new float[doc.size()];
+                double norm = 0;
+                int k = 0;
+                for (var e : doc.entrySet()) {
+                    int id = ids.get(e.getKey());
+                    fs[k] = id;
+                    ws[k] = e.getValue() * (float) Math.log((double) n / df.get(id)[0]);
+                    norm += ws[k] * ws[k];
+                    k++;
+                }
+                float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+                for (int i = 0; i < ws.length; i++) {
+                    ws[i] *= scale;
+                    if (linked(df.get(fs[i])[0]))
+                        listed[fs[i]]++;
+                }
+                features[d] = fs;
+                weights[d] = ws;
+            }
+            postings = new int[ids.size()][];
+            postingWeights = new float[ids.size()][];
+            for (int f = 0; f < listed.length; f++) {
+                postings[f] = new int[listed[f]];
+                postingWeights[f] = new float[listed[f]];
+                listed[f] = 0;
+            }
+            for (int d = 0; d < n; d++) {
+                for (int i = 0; i < features[d].length; i++) {
+                    int f = features[d][i];
+                    if (!linked(df.get(f)[0]))
+                        continue;
+                    postings[f][listed[f]] = d;
+                    postingWeights[f][listed[f]++] = weights[d][i];
+                }
+            }
+        }
+
+        private static boolean linked(int df) {
+            return df >= 2 && df <= MAX_DF;
+        }
+
+        /**
+         * Adds {@code scale} times the dot product of {@code doc} with every post it shares a listed feature with
+         * to {@code acc}, recording newly reached posts in {@code touched}; returns the new touched count.
+         */
+        int accumulate(int doc, float scale, float[] acc, int[] seen, int stamp, int[] touched, int m) {
+            for (int i = 0; i < features[doc].length; i++) {
+                int[] list = postings[features[doc][i]];
+                float w = weights[doc][i] * scale;
+                for (int j = 0; j < list.length; j++) {
+                    int other = list[j];
+                    if (other == doc)
+                        continue;
+                    if (seen[other] != stamp) {
+                        seen[other] = stamp;
+                        touched[m++] = other;
+                    }
+                    acc[other] += w * postingWeights[features[doc][i]][j];
+                }
+            }
+            return m;
+        }
+    }
+
+    private static String escapeHtml(String s) {
+        return s == null ? "" : s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
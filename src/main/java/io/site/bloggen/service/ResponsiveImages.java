@@ -0,0 +1,465 @@
+package io.site.bloggen.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Smaller copies of the PNG and JPEG files under assets/ that pages show with {@code <img>}
+ * ({@code assets/img/photo.jpg} -> {@code assets/img/photo-800w.1a2b3c4d.jpg}), one per configured width
+ * below the image's own, in the image's own format (the JDK has no WebP or AVIF encoder). A copy is named and
+ * recorded with the content hash of its source, so an incremental build reuses it until the source changes,
+ * and only images with a missing copy are decoded, once for all their widths. {@link #rewrite} gives each
+ * {@code <img>} of those images its intrinsic {@code width}/{@code height}, a {@code srcset} and {@code sizes},
+ * and {@code loading="lazy"} (except the first on the page, likely the largest paint) and
+ * {@code decoding="async"}; attributes a page already sets are kept.
+ */
+public final class ResponsiveImages {
+    static final int[] DEFAULT_WIDTHS = { 480, 800, 1200, 1600 };
+    /** About the reading column ({@code --measure}); images narrower than this are shown at their own size. */
+    static final int SLOT_WIDTH = 800;
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final int HEAD_BYTES = 64 * 1024;
+
+    record Variant(String key, int width) {
+    }
+
+    record Image(int width, int height, List<Variant> variants) {
+    }
+
+    private final Map<String, Image> images; // "assets/img/photo.jpg" -> size and copies
+    private final String domain;
+    private final String sizes;
+    private final String key;
+
+    private ResponsiveImages(Map<String, Image> images, String domain, String sizes) {
+        this.images = images;
+        this.domain = domain;
+        this.sizes = sizes;
+        this.key = images.isEmpty() ? "" : BuildManifest.hash(images + "\u0000" + sizes);
+    }
+
+    /** No image processing: {@link #rewrite} returns pages unchanged. */
+    public static ResponsiveImages none() {
+        return new ResponsiveImages(Map.of(), "", "");
+    }
+
+    /**
+     * Widths from site.json {@code image_widths} ("480,800"), else {@link #DEFAULT_WIDTHS}; null when
+     * {@code responsive_images} is not true.
+     */
+    public static int[] widths(io.site.bloggen.core.SiteConfig cfg) {
+        if (!Boolean.parseBoolean(cfg.extras().getOrDefault("responsive_images", "false")))
+            return null;
+        var set = new TreeSet<Integer>();
+        for (String w : cfg.extras().getOrDefault("image_widths", "").split(",")) {
+            try {
+                int v = Integer.parseInt(w.trim());
+                if (v > 0)
+                    set.add(v);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return set.isEmpty() ? DEFAULT_WIDTHS.clone() : set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** The output keys of the images {@code <img>} tags in {@code html} point at, added to {@code keys}. */
+    public static void referenced(String html, String domain, Collection<String> keys) {
+        String base = trimSlash(domain);
+        for (int i = indexOfImg(html, 0); i >= 0; i = indexOfImg(html, i + 4)) {
+            var tag = Tag.parse(html, i);
+            if (tag == null)
+                return;
+            String k = keyOf(tag.attr("src"), base);
+            if (k != null)
+                keys.add(k);
+        }
+    }
+
+    /**
+     * Reads the size of each of {@code keys} that is a PNG or JPEG output recorded in {@code next} (from
+     * {@code files.apply(key)}), writes the copies it lacks into {@code out} on up to {@code jobs} threads and
+     * records them in {@code next}. An image that cannot be
+     * read is left as it is, with a warning.
+     */
+    public static ResponsiveImages build(Path out, java.util.function.Function<String, Path> files,
+            Collection<String> keys, int[] widths, BuildManifest prev, BuildManifest next, String domain,
+            String sizes, int jobs, BuildStats stats) {
+        var todo = new ArrayList<String>();
+        for (String k : new TreeSet<>(keys))
+            if (supported(k) && next.contains(k))
+                todo.add(k);
+        var images = new TreeMap<String, Image>();
+        if (!todo.isEmpty()) {
+            try (var pool = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs, todo.size())))) {
+                var futures = new ArrayList<Future<Image>>(todo.size());
+                for (String k : todo)
+                    futures.add(pool.submit(() -> process(out, files.apply(k), next.get(k), widths, prev, next, stats)));
+                for (int i = 0; i < todo.size(); i++) {
+                    try {
+                        Image img = futures.get(i).get();
+                        if (img != null)
+                            images.put(todo.get(i), img);
+                    } catch (ExecutionException e) {
+                        io.site.bloggen.util.Log.warn("image left as is: " + todo.get(i) + ": "
+                                + e.getCause().getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        pool.shutdownNow();
+                        break;
+                    }
+                }
+            }
+        }
+        return new ResponsiveImages(images, trimSlash(domain), sizes == null ? "" : sizes.trim());
+    }
+
+    /** Digest of the images and their copies, for cache keys of pages that show them. */
+    public String key() {
+        return key;
+    }
+
+    /** Adds size, srcset, sizes, loading and decoding attributes to the {@code <img>} tags of known images. */
+    public String rewrite(String html) {
+        if (images.isEmpty())
+            return html;
+        int i = indexOfImg(html, 0);
+        if (i < 0)
+            return html;
+        StringBuilder sb = null;
+        int copied = 0;
+        boolean first = true;
+        for (; i >= 0; i = indexOfImg(html, i + 4)) {
+            var tag = Tag.parse(html, i);
+            if (tag == null)
+                break;
+            String k = keyOf(tag.attr("src"), domain);
+            Image img = k == null ? null : images.get(k);
+            if (img == null)
+                continue;
+            String extra = attributes(tag, img, first);
+            first = false;
+            if (extra.isEmpty())
+                continue;
+            if (sb == null)
+                sb = new StringBuilder(html.length() + 256);
+            sb.append(html, copied, tag.insertAt()).append(extra);
+            copied = tag.insertAt();
+        }
+        if (sb == null)
+            return html;
+        return sb.append(html, copied, html.length()).toString();
+    }
+
+    private String attributes(Tag tag, Image img, boolean first) {
+        var sb = new StringBuilder();
+        if (!tag.has("width") && !tag.has("height"))
+            sb.append(" width=\"").append(img.width()).append("\" height=\"").append(img.height()).append('"');
+        if (!img.variants().isEmpty() && !tag.has("srcset")) {
+            sb.append(" srcset=\"");
+            for (var v : img.variants())
+                sb.append(url(v.key())).append(' ').append(v.width()).append("w, ");
+            String src = tag.attr("src");
+            boolean plain = src.chars().noneMatch(c -> c == ',' || Character.isWhitespace(c));
+            sb.append(plain ? src : url(keyOf(src, domain))).append(' ').append(img.width()).append("w\"");
+            if (!tag.has("sizes")) {
+                int slot = Math.min(img.width(), SLOT_WIDTH);
+                sb.append(" sizes=\"").append(sizes.isEmpty()
+                        ? "(max-width: " + slot + "px) 100vw, " + slot + "px" : sizes.replace("\"", "&quot;"))
+                        .append('"');
+            }
+        }
+        if (!first && !tag.has("loading"))
+            sb.append(" loading=\"lazy\"");
+        if (!tag.has("decoding"))
+            sb.append(" decoding=\"async\"");
+        return sb.toString();
+    }
+
+    private static Image process(Path out, Path file, BuildManifest.Entry src, int[] widths, BuildManifest prev,
+            BuildManifest next, BuildStats stats) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(HEAD_BYTES);
+        }
+        if (jpeg(src.path()) && rotated(head)) {
+            // browsers turn the original by its EXIF orientation; copies without it would show turned
+            io.site.bloggen.util.Log.debug("image left as is (EXIF orientation): " + src.path());
+            return null;
+        }
+        try (var iis = ImageIO.createImageInputStream(file.toFile())) {
+            var readers = iis == null ? null : ImageIO.getImageReaders(iis);
+            if (readers == null || !readers.hasNext())
+                throw new IOException("no image reader");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int w = reader.getWidth(0), h = reader.getHeight(0);
+                String hash = src.hash().isEmpty() ? BuildManifest.hash(file) : src.hash();
+                var variants = new ArrayList<Variant>();
+                var missing = new ArrayList<Variant>();
+                for (int vw : widths) {
+                    if (vw >= w)
+                        continue;
+                    var v = new Variant(variantKey(src.path(), vw, hash), vw);
+                    variants.add(v);
+                    var old = prev.get(v.key());
+                    if (old != null && old.origin() == 'G' && old.hash().equals(hash)
+                            && Files.exists(out.resolve(v.key())) && Files.size(out.resolve(v.key())) == old.size())
+                        next.put(old);
+                    else
+                        missing.add(v);
+                }
+                if (!missing.isEmpty()) {
+                    BufferedImage image = reader.read(0);
+                    stats.read(Files.size(file));
+                    for (var v : missing) {
+                        int vh = Math.max(1, Math.round((float) h * v.width() / w));
+                        byte[] bytes = encode(resize(image, v.width(), vh, jpeg(src.path())), jpeg(src.path()));
+                        Path target = out.resolve(v.key());
+                        Files.deleteIfExists(target);
+                        Files.createDirectories(target.getParent());
+                        Files.write(target, bytes);
+                        stats.wrote(bytes.length);
+                        next.put(new BuildManifest.Entry(v.key(), 'G', bytes.length, -1, hash, "",
+                                BuildManifest.hash(bytes)));
+                    }
+                }
+                return new Image(w, h, List.copyOf(variants));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Halves the image until it is within 2x of the target, then scales to it: bilinear at every step. */
+    private static BufferedImage resize(BufferedImage src, int w, int h, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage img = src;
+        int cw = src.getWidth(), ch = src.getHeight();
+        do {
+            cw = Math.max(w, cw / 2);
+            ch = Math.max(h, ch / 2);
+            if (cw < w * 2 || ch < h * 2) {
+                cw = w;
+                ch = h;
+            }
+            var step = new BufferedImage(cw, ch, type);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (opaque) {
+                g.setColor(java.awt.Color.WHITE); // what a transparent pixel in a JPEG source stood for
+                g.fillRect(0, 0, cw, ch);
+            }
+            g.drawImage(img, 0, 0, cw, ch, null);
+            g.dispose();
+            img = step;
+        } while (cw != w || ch != h);
+        return img;
+    }
+
+    private static byte[] encode(BufferedImage img, boolean jpeg) throws IOException {
+        var buf = new ByteArrayOutputStream();
+        if (!jpeg) {
+            ImageIO.write(img, "png", buf);
+            return buf.toByteArray();
+        }
+        var writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (var ios = ImageIO.createImageOutputStream(buf)) {
+            writer.setOutput(ios);
+            ImageWriteParam p = writer.getDefaultWriteParam();
+            p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            p.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(img, null, null), p);
+        } finally {
+            writer.dispose();
+        }
+        return buf.toByteArray();
+    }
+
+    /** {@code assets/img/photo.jpg} at 800 -> {@code assets/img/photo-800w.<hash>.jpg}. */
+    static String variantKey(String key, int width, String hash) {
+        int slash = key.lastIndexOf('/');
+        int dot = key.lastIndexOf('.');
+        String sized = dot <= slash + 1 ? key + "-" + width + "w"
+                : key.substring(0, dot) + "-" + width + "w" + key.substring(dot);
+        return AssetFingerprints.hashed(sized, hash);
+    }
+
+    /** True when a JPEG's EXIF block asks for an orientation other than as stored. */
+    static boolean rotated(byte[] b) {
+        int i = 2;
+        while (i + 4 <= b.length && (b[i] & 0xFF) == 0xFF) {
+            int marker = b[i + 1] & 0xFF, len = ((b[i + 2] & 0xFF) << 8) | (b[i + 3] & 0xFF);
+            if (marker == 0xDA || len < 2)
+                return false; // image data starts: no EXIF before it
+            int s = i + 4;
+            if (marker == 0xE1 && s + 14 <= b.length
+                    && new String(b, s, 4, StandardCharsets.ISO_8859_1).equals("Exif")) {
+                int t = s + 6; // TIFF header
+                boolean le = b[t] == 'I';
+                int ifd = t + u32(b, t + 4, le);
+                if (ifd + 2 > b.length)
+                    return false;
+                int n = u16(b, ifd, le);
+                for (int k = 0; k < n && ifd + 2 + k * 12 + 10 <= b.length; k++) {
+                    int e = ifd + 2 + k * 12;
+                    if (u16(b, e, le) == 0x0112)
+                        return u16(b, e + 8, le) > 1;
+                }
+                return false;
+            }
+            i += 2 + len;
+        }
+        return false;
+    }
+
+    private static int u16(byte[] b, int i, boolean le) {
+        return le ? (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 : (b[i] & 0xFF) << 8 | (b[i + 1] & 0xFF);
+    }
+
+    private static int u32(byte[] b, int i, boolean le) {
+        return le ? u16(b, i, true) | u16(b, i + 2, true) << 16 : u16(b, i, false) << 16 | u16(b, i + 2, false);
+    }
+
+    private static boolean supported(String key) {
+        return jpeg(key) || key.toLowerCase(java.util.Locale.ROOT).endsWith(".png");
+    }
+
+    private static boolean jpeg(String key) {
+        String k = key.toLowerCase(java.util.Locale.ROOT);
+        return k.endsWith(".jpg") || k.endsWith(".jpeg");
+    }
+
+    /** The assets/ output key of an {@code src} on this site ("/assets/x.png" or the domain's), else null. */
+    private static String keyOf(String src, String domain) {
+        if (src == null)
+            return null;
+        String s = src;
+        if (!domain.isEmpty() && s.startsWith(domain + "/"))
+            s = s.substring(domain.length());
+        if (!s.startsWith("/assets/"))
+            return null;
+        int cut = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '?' || s.charAt(i) == '#') {
+                cut = i;
+                break;
+            }
+        }
+        s = s.substring(1, cut);
+        if (s.indexOf('%') >= 0) {
+            try {
+                s = java.net.URLDecoder.decode(s.replace("+", "%2B"), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return s.contains("..") ? null : s;
+    }
+
+    /** A site URL for an output key, with everything but unreserved chars and '/' percent-encoded. */
+    private static String url(String key) {
+        var sb = new StringBuilder("/");
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || "-._~/".indexOf(c) >= 0)
+                sb.append(c);
+            else
+                sb.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 15, 16)));
+        }
+        return sb.toString();
+    }
+
+    private static String trimSlash(String domain) {
+        return domain == null ? "" : domain.endsWith("/") ? domain.substring(0, domain.length() - 1) : domain;
+    }
+
+    private static int indexOfImg(String html, int from) {
+        for (int i = html.indexOf('<', from); i >= 0; i = html.indexOf('<', i + 1)) {
+            if (html.regionMatches(true, i + 1, "img", 0, 3) && i + 4 < html.length()) {
+                char c = html.charAt(i + 4);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '/' || c == '>')
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /** An {@code <img>} start tag: its attributes by lower-case name, and where new ones go (before "/>" or ">"). */
+    private record Tag(Map<String, String> attrs, int insertAt) {
+        boolean has(String name) {
+            return attrs.containsKey(name);
+        }
+
+        String attr(String name) {
+            return attrs.get(name);
+        }
+
+        /** Null when the tag is not closed. */
+        static Tag parse(String html, int at) {
+            var attrs = new TreeMap<String, String>();
+            int i = at + 4, n = html.length();
+            while (i < n) {
+                char c = html.charAt(i);
+                if (c == '>' || c == '/' && i + 1 < n && html.charAt(i + 1) == '>') {
+                    int insert = i;
+                    while (insert > at + 4 && Character.isWhitespace(html.charAt(insert - 1)))
+                        insert--;
+                    return new Tag(attrs, insert);
+                }
+                if (Character.isWhitespace(c) || c == '/') {
+                    i++;
+                    continue;
+                }
+                int s = i;
+                while (i < n && !Character.isWhitespace(html.charAt(i)) && "=>/".indexOf(html.charAt(i)) < 0)
+                    i++;
+                String name = html.substring(s, i).toLowerCase(java.util.Locale.ROOT);
+                String value = "";
+                while (i < n && Character.isWhitespace(html.charAt(i)))
+                    i++;
+                if (i < n && html.charAt(i) == '=') {
+                    i++;
+                    while (i < n && Character.isWhitespace(html.charAt(i)))
+                        i++;
+                    if (i < n && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                        int close = html.indexOf(html.charAt(i), i + 1);
+                        if (close < 0)
+                            return null;
+                        value = html.substring(i + 1, close);
+                        i = close + 1;
+                    } else {
+                        int vs = i;
+                        while (i < n && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '>')
+                            i++;
+                        value = html.substring(vs, i);
+                    }
+                }
+                attrs.putIfAbsent(name, value);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package io.site.bloggen.service;
+
+import io.site.bloggen.core.Post;
+import io.site.bloggen.core.SiteModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Prebuilt client-side search over post titles, descriptions and article text, written under {@value #DIR}.
+ * Words of letters and digits are terms as they are; Hangul (and kana/CJK) runs become overlapping two-char
+ * n-grams, so Korean matches inside compounds and before particles without a dictionary. Each term keeps
+ * only its {@value #MAX_POSTINGS} best-scoring posts, so the index grows with the vocabulary rather than
+ * with the post count. Terms are sharded by their first char (the initial consonant for Hangul), and a shard
+ * over {@value #SHARD_BYTES} bytes is split again by the second, so a query only loads the shards of its
+ * own terms. {@code search.js} reads it; the tokenizer there must match {@link #terms}.
+ */
+public final class SearchIndex {
+    static final String DIR = "search/";
+    static final int MAX_POSTINGS = 100;
+    static final int SHARD_BYTES = 48 * 1024;
+    private static final int DOCS_PER_FILE = 500;
+    private static final int MAX_WORD = 32;
+    private static final int TITLE_WEIGHT = 8, DESCRIPTION_WEIGHT = 3;
+    private static final int MAX_SCORE = 255;
+
+    private final Path src;
+    private final Function<String, String> staged;
+
+    /** {@code staged} maps "posts/x.html" to its source text when held in memory, else null. */
+    public SearchIndex(Path src, Function<String, String> staged) {
+        this.src = src;
+        this.staged = staged;
+    }
+
+    public void generate(SiteModel model, CatalogService.PageSink sink) throws IOException {
+        var posts = model.posts();
+        // term -> [doc, score, doc, score, ...] in doc order (newest post first)
+        Map<String, int[]> postings = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int doc = 0; doc < posts.size(); doc++) {
+            Post p = posts.get(doc);
+            var tf = new HashMap<String, Integer>();
+            count(plain(p.title()), TITLE_WEIGHT, tf);
+            count(plain(p.description()), DESCRIPTION_WEIGHT, tf);
+            count(text(FeedService.articleBody(page(p))), 1, tf);
+            for (var e : tf.entrySet()) {
+                int n = counts.merge(e.getKey(), 1, Integer::sum);
+                int[] list = postings.get(e.getKey());
+                if (list == null || list.length < n * 2)
+                    postings.put(e.getKey(), list = java.util.Arrays.copyOf(list == null ? new int[4] : list,
+                            Math.max(4, n * 4)));
+                list[n * 2 - 2] = doc;
+                list[n * 2 - 1] = Math.min(MAX_SCORE, e.getValue());
+            }
+        }
+
+        // shard by first char, then split the large ones by the second
+        Map<String, Map<String, String>> shards = new TreeMap<>();
+        for (var e : postings.entrySet())
+            shards.computeIfAbsent(bucket(e.getKey(), 0), k -> new TreeMap<>())
+                    .put(e.getKey(), postingJson(e.getValue(), counts.get(e.getKey())));
+        var split = new ArrayList<String>();
+        var files = new TreeMap<String, Map<String, String>>();
+        for (var s : shards.entrySet()) {
+            if (size(s.getValue()) <= SHARD_BYTES) {
+                files.put(s.getKey(), s.getValue());
+                continue;
+            }
+            split.add(s.getKey());
+            for (var t : s.getValue().entrySet())
+                files.computeIfAbsent(s.getKey() + "-" + bucket(t.getKey(), 1), k -> new TreeMap<>())
+                        .put(t.getKey(), t.getValue());
+        }
+        for (var f : files.entrySet())
+            sink.accept(DIR + f.getKey() + ".json", shardJson(f.getValue()));
+
+        for (int from = 0; from < posts.size(); from += DOCS_PER_FILE) {
+            var sb = new StringBuilder("[");
+            for (int i = from; i < Math.min(posts.size(), from + DOCS_PER_FILE); i++) {
+                Post p = posts.get(i);
+                sb.append(i == from ? "\n" : ",\n").append("[\"").append(FeedService.json(p.url())).append("\",\"")
+                        .append(FeedService.json(plain(p.title()))).append("\",\"").append(p.date().toLocalDate())
+                        .append("\"]");
+            }
+            sink.accept(DIR + "docs-" + (from / DOCS_PER_FILE) + ".json", sb.append("\n]\n").toString());
+        }
+        var meta = new StringBuilder("{\"version\":1,\"docs\":").append(posts.size()).append(",\"docsPerFile\":")
+                .append(DOCS_PER_FILE).append(",\"shards\":[");
+        int n = 0;
+        for (String f : files.keySet())
+            meta.append(n++ == 0 ? "\"" : ",\"").append(f).append('"');
+        meta.append("],\"split\":[");
+        for (int i = 0; i < split.size(); i++)
+            meta.append(i == 0 ? "\"" : ",\"").append(split.get(i)).append('"');
+        sink.accept(DIR + "index.json", meta.append("]}\n").toString());
+        sink.accept(DIR + "search.js", script());
+    }
+
+    private String page(Post p) throws IOException {
+        String rel = "posts/" + p.fileName();
+        String page = staged.apply(rel);
+        if (page != null)
+            return page;
+        Path file = src.resolve(rel);
+        return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : "";
+    }
+
+    private static void count(String text, int weight, Map<String, Integer> tf) {
+        if (text != null && !text.isEmpty())
+            for (String t : terms(text))
+                tf.merge(t, weight, Integer::sum);
+    }
+
+    /** {@code [df, doc, score, doc, score, ...]}: the best {@value #MAX_POSTINGS} by score, doc ids as deltas. */
+    private static String postingJson(int[] list, int df) {
+        int keep = Math.min(df, MAX_POSTINGS);
+        int[] order = new int[df];
+        for (int i = 0; i < df; i++)
+            order[i] = i;
+        if (keep < df) {
+            // stable by score, so ties keep the newer post
+            Integer[] boxed = new Integer[df];
+            for (int i = 0; i < df; i++)
+                boxed[i] = i;
+            java.util.Arrays.sort(boxed, (x, y) -> list[y * 2 + 1] - list[x * 2 + 1]);
+            for (int i = 0; i < keep; i++)
+                order[i] = boxed[i];
+            java.util.Arrays.sort(order, 0, keep);
+        }
+        var sb = new StringBuilder().append('[').append(df);
+        int last = 0;
+        for (int i = 0; i < keep; i++) {
+            int doc = list[order[i] * 2];
+            sb.append(',').append(doc - last).append(',').append(list[order[i] * 2 + 1]);
+            last = doc;
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String shardJson(Map<String, String> terms) {
+        var sb = new StringBuilder("{");
+        int n = 0;
+        for (var e : terms.entrySet())
+            sb.append(n++ == 0 ? "\n\"" : ",\n\"").append(FeedService.json(e.getKey())).append("\":")
+                    .append(e.getValue());
+        return sb.append("\n}\n").toString();
+    }
+
+    private static int size(Map<String, String> terms) {
+        int bytes = 0;
+        for (var e : terms.entrySet())
+            bytes += e.getKey().length() * 3 + e.getValue().length() + 4;
+        return bytes;
+    }
+
+    /** Search terms of {@code text}, in order, repeats included. */
+    static List<String> terms(String text) {
+        String s = Normalizer.normalize(text, Normalizer.Form.NFC);
+        var out = new ArrayList<String>();
+        int i = 0;
+        while (i < s.length()) {
+            char c = Character.toLowerCase(s.charAt(i));
+            if (gram(c)) {
+                int start = i;
+                while (i < s.length() && gram(s.charAt(i)))
+                    i++;
+                if (i - start == 1)
+                    out.add(String.valueOf(c));
+                for (int j = start; j + 1 < i; j++)
+                    out.add(s.substring(j, j + 2));
+            } else if (Character.isLetterOrDigit(c)) {
+                var w = new StringBuilder();
+                while (i < s.length() && !gram(s.charAt(i)) && Character.isLetterOrDigit(s.charAt(i))) {
+                    if (w.length() < MAX_WORD)
+                        w.append(Character.toLowerCase(s.charAt(i)));
+                    i++;
+                }
+                if (w.length() >= 2)
+                    out.add(w.toString());
+            } else {
+                i++;
+            }
+        }
+        return out;
+    }
+
+    /** Hangul syllables, kana and CJK ideographs: indexed as two-char n-grams. */
+    private static boolean gram(char c) {
+        return c >= '\uAC00' && c <= '\uD7A3' || c >= '\u3040' && c <= '\u30FF' || c >= '\u4E00' && c <= '\u9FFF';
+    }
+
+    /** Shard of a term by its char at {@code i}: a-z, 0 (digits), k00-k18 (Hangul initial), x (else), _ (none). */
+    static String bucket(String term, int i) {
+        if (i >= term.length())
+            return "_";
+        char c = term.charAt(i);
+        if (c >= 'a' && c <= 'z')
+            return String.valueOf(c);
+        if (c >= '0' && c <= '9')
+            return "0";
+        if (c >= '\uAC00' && c <= '\uD7A3') {
+            int initial = (c - '\uAC00') / 588; // 21 vowels x 28 finals per initial consonant
+            return (initial < 10 ? "k0" : "k") + initial;
+        }
+        return "x";
+    }
+
+    /** A title or description, which pages carry HTML-escaped, as plain text; "" for null. */
+    private static String plain(String escaped) {
+        return escaped == null ? "" : text(escaped);
+    }
+
+    /** Visible text of article HTML: tags, comments, scripts, styles and template tokens dropped. */
+    static String text(String html) {
+        var sb = new StringBuilder(html.length());
+        int i = 0;
+        while (i < html.length()) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end;
+                if (html.startsWith("<!--", i)) {
+                    end = html.indexOf("-->", i + 4);
+                    end = end < 0 ? html.length() : end + 3;
+                } else if (html.regionMatches(true, i, "<script", 0, 7)
+                        || html.regionMatches(true, i, "<style", 0, 6)) {
+                    String close = html.charAt(i + 2) == 'c' || html.charAt(i + 2) == 'C' ? "</script" : "</style";
+                    int at = indexOfIgnoreCase(html, close, i);
+                    end = at < 0 ? html.length() : html.indexOf('>', at) + 1;
+                    if (end <= 0)
+                        end = html.length();
+                } else {
+                    end = html.indexOf('>', i);
+                    end = end < 0 ? html.length() : end + 1;
+                }
+                sb.append(' ');
+                i = end;
+            } else if (c == '{' && html.startsWith("{{", i)) {
+                int end = html.indexOf("}}", i + 2);
+                i = end < 0 ? html.length() : end + 2;
+                sb.append(' ');
+            } else if (c == '&') {
+                int end = html.indexOf(';', i);
+                if (end > i && end - i <= 10) {
+                    sb.append(entity(html.substring(i + 1, end)));
+                    i = end + 1;
+                } else {
+                    sb.append(c);
+                    i++;
+                }
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String entity(String name) {
+        try {
+            if (name.startsWith("#x") || name.startsWith("#X"))
+                return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+            if (name.startsWith("#"))
+                return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+        } catch (IllegalArgumentException e) {
+            return " ";
+        }
+        return switch (name) {
+            case "amp" -> "&";
+            case "lt" -> "<";
+            case "gt" -> ">";
+            case "quot" -> "\"";
+            case "apos" -> "'";
+            default -> " ";
+        };
+    }
+
+    private static int indexOfIgnoreCase(String s, String what, int from) {
+        for (int i = from; i + what.length() <= s.length(); i++)
+            if (s.regionMatches(true, i, what, 0, what.length()))
+                return i;
+        return -1;
+    }
+
+    private static String script() throws IOException {
+        try (InputStream is = SearchIndex.class.getResourceAsStream("/search/search.js")) {
+            if (is == null)
+                throw new IOException("Missing resource: /search/search.js");
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
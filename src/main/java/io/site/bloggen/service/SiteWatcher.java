@@ -0,0 +1,136 @@
+package io.site.bloggen.service;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a site for edits and reports them in batches: the source root (site.json and root pages), posts/,
+ * partials/, assets/ and tags/ with everything under them, the Markdown import dir and a config file kept
+ * elsewhere. A batch is reported once no event has arrived for {@value #QUIET_MS} ms, so an editor's
+ * save-rename-touch sequence is one change. Dot files, backups ending in '~' and the output dir are ignored.
+ */
+public final class SiteWatcher implements AutoCloseable {
+    static final long QUIET_MS = 30;
+    private static final String[] TREES = { "posts", "partials", "assets", "tags" };
+
+    /** A watched directory; {@code only} limits it to one file (a config outside the source root). */
+    private record Dir(Path path, boolean tree, Path only) {
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void changed(Set<Path> paths) throws IOException;
+    }
+
+    private final WatchService ws;
+    private final Map<WatchKey, Dir> dirs = new HashMap<>();
+    private final Path src;
+    private final Path out;
+
+    public SiteWatcher(Path src, Path out, Path importSrc, Path config) throws IOException {
+        this.src = src.toAbsolutePath().normalize();
+        this.out = out.toAbsolutePath().normalize();
+        this.ws = FileSystems.getDefault().newWatchService();
+        register(this.src, false, null);
+        for (String t : TREES)
+            registerTree(this.src.resolve(t));
+        if (importSrc != null)
+            registerTree(importSrc.toAbsolutePath().normalize());
+        if (config != null) {
+            Path c = config.toAbsolutePath().normalize();
+            if (c.getParent() != null && !c.getParent().equals(this.src) && Files.isDirectory(c.getParent()))
+                register(c.getParent(), false, c);
+        }
+    }
+
+    /** Blocks, calling {@code listener} with the changed paths of each batch, until interrupted. */
+    public void run(Listener listener) throws IOException, InterruptedException {
+        while (true) {
+            var changed = new TreeSet<Path>();
+            collect(ws.take(), changed);
+            WatchKey key;
+            while ((key = ws.poll(QUIET_MS, TimeUnit.MILLISECONDS)) != null)
+                collect(key, changed);
+            if (!changed.isEmpty())
+                listener.changed(changed);
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Dir dir = dirs.get(key);
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (dir == null)
+                continue;
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.add(dir.path()); // events were lost: report the whole dir
+                continue;
+            }
+            Path p = dir.path().resolve((Path) ev.context());
+            String name = p.getFileName().toString();
+            if (name.startsWith(".") || name.endsWith("~") || p.startsWith(out))
+                continue;
+            if (dir.only() != null && !p.equals(dir.only()))
+                continue;
+            if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                // a directory made or moved into a watched tree: watch it, and what it already holds
+                if (ev.kind() == StandardWatchEventKinds.ENTRY_CREATE && (dir.tree() || tree(p))) {
+                    registerTree(p);
+                    changed.add(p);
+                }
+                continue;
+            }
+            changed.add(p);
+        }
+        if (!key.reset())
+            dirs.remove(key);
+    }
+
+    private boolean tree(Path p) {
+        if (!src.equals(p.getParent()))
+            return false;
+        for (String t : TREES)
+            if (t.equals(p.getFileName().toString()))
+                return true;
+        return false;
+    }
+
+    private void registerTree(Path root) throws IOException {
+        if (!Files.isDirectory(root) || root.startsWith(out))
+            return;
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                if (d.startsWith(out) || d != root && d.getFileName().toString().startsWith("."))
+                    return FileVisitResult.SKIP_SUBTREE;
+                register(d, true, null);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path d, boolean tree, Path only) throws IOException {
+        WatchKey key = d.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        dirs.put(key, new Dir(d, tree, only));
+    }
+
+    @Override
+    public void close() throws IOException {
+        ws.close();
+    }
+}
@@ -2,38 +2,175 @@ package io.site.bloggen.template;
 
 import io.site.bloggen.core.SiteConfig;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+/**
+ * Points canonical, og:url and og:image at the configured domain and sets the RSS alternate link title to
+ * the site name, in one scan over the page. Matching follows the tags as written by the templates:
+ * {@code <link rel="canonical" href="...">}, {@code <meta property="og:url" content="...">},
+ * {@code <meta property="og:image" content="..." />} and
+ * {@code <link rel="alternate" type="application/rss+xml" title="...">}, with any whitespace between
+ * attributes. Pages without any of them are returned unchanged without a copy.
+ */
 public final class DomainUpdater {
-    private DomainUpdater() {}
+    private static final String CANONICAL = "rel=\"canonical\"";
+    private static final String HREF = "href=\"";
+    private static final String OG_URL = "property=\"og:url\"";
+    private static final String OG_IMAGE = "property=\"og:image\"";
+    private static final String CONTENT = "content=\"";
+    private static final String ALTERNATE = "rel=\"alternate\"";
+    private static final String RSS_TYPE = "type=\"application/rss+xml\"";
+    private static final String TITLE = "title=\"";
+
+    private final String domain;
+    private final String siteName;
+
+    private DomainUpdater(String domain, String siteName) {
+        this.domain = domain;
+        this.siteName = siteName;
+    }
+
+    /** An updater for {@code cfg}; build one per site and reuse it for every page. */
+    public static DomainUpdater of(SiteConfig cfg) {
+        String d = cfg.domain();
+        return new DomainUpdater(d.endsWith("/") ? d.substring(0, d.length() - 1) : d, cfg.siteName());
+    }
 
     public static String apply(String html, SiteConfig cfg) {
-        String domain = cfg.domain().replaceAll("/$", "");
-        String siteName = cfg.siteName();
-        // canonical: preserve path
-        html = html.replaceAll("(<link\\s+rel=\\\"canonical\\\"\\s+href=\\\")https?://[^/<>\\\"]*([^\\\"<>]*)", "$1" + Matcher.quoteReplacement(domain) + "$2");
-        // og:url: preserve path
-        html = html.replaceAll("(<meta\\s+property=\\\"og:url\\\"\\s+content=\\\")https?://[^/<>\\\"]*([^\\\"<>]*)", "$1" + Matcher.quoteReplacement(domain) + "$2");
-        // og:image
-        Pattern p = Pattern.compile("(<meta\\s+property=\\\"og:image\\\"\\s+content=\\\")(.*?)\\\"\\s*/?>");
-        Matcher m = p.matcher(html);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String url = m.group(2);
-            String repl = url;
-            if (url.startsWith("http://") || url.startsWith("https://")) {
-                repl = domain + url.replaceFirst("^https?://[^/]*", "");
-            } else if (url.startsWith("/")) {
-                repl = domain + url;
+        return of(cfg).apply(html);
+    }
+
+    public String apply(String html) {
+        if (html.indexOf("canonical") < 0 && html.indexOf("og:") < 0 && html.indexOf("rss+xml") < 0)
+            return html;
+        StringBuilder sb = null;
+        int copied = 0;
+        int i = html.indexOf('<');
+        while (i >= 0) {
+            int next = i + 1;
+            boolean link = html.startsWith("<link", i);
+            if (link || html.startsWith("<meta", i)) {
+                int a = ws(html, i + 5);
+                if (a > i + 5) {
+                    int v; // start of the attribute value being rewritten
+                    if (link && (v = attrs(html, a, CANONICAL, HREF)) >= 0) {
+                        int host = hostEnd(html, v);
+                        if (host >= 0) {
+                            sb = copy(sb, html, copied, v);
+                            sb.append(domain);
+                            copied = next = host;
+                        }
+                    } else if (!link && (v = attrs(html, a, OG_URL, CONTENT)) >= 0) {
+                        int host = hostEnd(html, v);
+                        if (host >= 0) {
+                            sb = copy(sb, html, copied, v);
+                            sb.append(domain);
+                            copied = next = host;
+                        }
+                    } else if (!link && (v = attrs(html, a, OG_IMAGE, CONTENT)) >= 0) {
+                        int q = imageEnd(html, v);
+                        if (q >= 0) {
+                            int close = html.indexOf('>', q) + 1;
+                            sb = copy(sb, html, copied, v);
+                            sb.append(imageUrl(html.substring(v, q))).append("\" />");
+                            copied = next = close;
+                        }
+                    } else if (link && (v = rssTitle(html, a)) >= 0) {
+                        int q = html.indexOf('"', v);
+                        if (q >= 0) {
+                            sb = copy(sb, html, copied, v);
+                            sb.append(siteName);
+                            copied = q;
+                            next = q + 1;
+                        }
+                    }
+                }
             }
-            m.appendReplacement(sb, Matcher.quoteReplacement(m.group(1) + repl + "\" />"));
+            i = html.indexOf('<', next);
+        }
+        if (sb == null)
+            return html;
+        return sb.append(html, copied, html.length()).toString();
+    }
+
+    private static StringBuilder copy(StringBuilder sb, String html, int from, int to) {
+        if (sb == null)
+            sb = new StringBuilder(html.length() + 64);
+        return sb.append(html, from, to);
+    }
+
+    /** {@code first} whitespace {@code second} at {@code at}: the index after {@code second}, or -1. */
+    private static int attrs(String s, int at, String first, String second) {
+        if (!s.startsWith(first, at))
+            return -1;
+        int b = ws(s, at + first.length());
+        if (b == at + first.length() || !s.startsWith(second, b))
+            return -1;
+        return b + second.length();
+    }
+
+    private static int rssTitle(String s, int at) {
+        int v = attrs(s, at, ALTERNATE, RSS_TYPE);
+        if (v < 0)
+            return -1;
+        int b = ws(s, v);
+        if (b == v || !s.startsWith(TITLE, b))
+            return -1;
+        return b + TITLE.length();
+    }
+
+    /** For "http(s)://host..." at {@code v}: the index after the host, else -1. */
+    private static int hostEnd(String s, int v) {
+        int p;
+        if (s.startsWith("http://", v))
+            p = v + 7;
+        else if (s.startsWith("https://", v))
+            p = v + 8;
+        else
+            return -1;
+        while (p < s.length()) {
+            char c = s.charAt(p);
+            if (c == '/' || c == '<' || c == '>' || c == '"')
+                break;
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * The og:image value ends at the first quote on the same line that is followed by optional whitespace,
+     * an optional '/', and '>'; returns that quote's index or -1.
+     */
+    private static int imageEnd(String s, int v) {
+        for (int p = v; p < s.length(); p++) {
+            char c = s.charAt(p);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+                return -1;
+            if (c != '"')
+                continue;
+            int k = ws(s, p + 1);
+            if (k < s.length() && s.charAt(k) == '/')
+                k++;
+            if (k < s.length() && s.charAt(k) == '>')
+                return p;
+        }
+        return -1;
+    }
+
+    private String imageUrl(String url) {
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            int slash = url.indexOf('/', url.startsWith("https") ? 8 : 7);
+            return slash < 0 ? domain : domain + url.substring(slash);
+        }
+        return url.startsWith("/") ? domain + url : url;
+    }
+
+    /** Index of the first non-whitespace char (regex {@code \s}) at or after {@code p}. */
+    private static int ws(String s, int p) {
+        while (p < s.length()) {
+            char c = s.charAt(p);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r')
+                break;
+            p++;
         }
-        m.appendTail(sb);
-        html = sb.toString();
-        // RSS title
-        html = html.replaceAll("(<link\\s+rel=\\\"alternate\\\"\\s+type=\\\"application/rss\\+xml\\\"\\s+title=\\\")[^\\\"]*(\\\")",
-                "$1" + Matcher.quoteReplacement(siteName) + "$2");
-        return html;
+        return p;
     }
 }
@@ -0,0 +1,291 @@
+package io.site.bloggen.template;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Minifies HTML in one pass as it is appended, passing the result to {@code out}: whitespace runs in text
+ * become one newline (when the run had one) or one space, comments are dropped (conditional comments are
+ * kept), whitespace inside tags is collapsed and quotes are dropped from attribute values made only of
+ * letters, digits and {@code -_.:/}. {@code <pre>}, {@code <code>}, {@code <textarea>}, {@code <script>} and
+ * {@code <style>} content is copied as it is. Rendering is unchanged: whitespace is collapsed, never removed,
+ * so inline and inline-block spacing stays. Call {@link #finish()} after the last append.
+ */
+public final class HtmlMinifier implements Appendable {
+    private static final int TEXT = 0, TAG_OPEN = 1, TAG = 2, COMMENT = 3, RAW = 4;
+    private static final String[] RAW_ELEMENTS = { "pre", "code", "textarea", "script", "style" };
+    private static final int FLUSH_AT = 8 * 1024;
+
+    private final Appendable out;
+    private final StringBuilder buf = new StringBuilder(FLUSH_AT + 256);
+    private final StringBuilder tag = new StringBuilder(256);
+    private int mode = TEXT;
+    private int space; // pending whitespace in text: 0 none, 1 space, 2 newline
+    private boolean started; // anything emitted yet (leading whitespace is dropped)
+    private char quote; // open quote inside a tag, or 0
+    private String raw; // closing tag that ends RAW mode, e.g. "</pre"
+    private final StringBuilder rawSeen = new StringBuilder(16); // chars of raw matched so far, as written
+
+    public HtmlMinifier(Appendable out) {
+        this.out = out;
+    }
+
+    public static String minify(String html) {
+        StringBuilder sb = new StringBuilder(html.length());
+        HtmlMinifier m = new HtmlMinifier(sb);
+        m.append(html);
+        m.finish();
+        return sb.toString();
+    }
+
+    @Override
+    public HtmlMinifier append(CharSequence s) {
+        return append(s, 0, s.length());
+    }
+
+    @Override
+    public HtmlMinifier append(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++)
+            put(s.charAt(i));
+        return this;
+    }
+
+    @Override
+    public HtmlMinifier append(char c) {
+        put(c);
+        return this;
+    }
+
+    /** Emits anything still buffered (an unterminated tag or comment as it was) and flushes to {@code out}. */
+    public void finish() {
+        if (mode == TAG_OPEN || mode == TAG || mode == COMMENT) {
+            flushSpace();
+            buf.append(tag);
+        } else if (mode == RAW) {
+            buf.append(rawSeen);
+            rawSeen.setLength(0);
+        }
+        if (space == 2 && started)
+            buf.append('\n');
+        mode = TEXT;
+        space = 0;
+        tag.setLength(0);
+        flush();
+    }
+
+    private void put(char c) {
+        switch (mode) {
+            case TEXT -> text(c);
+            case TAG_OPEN -> tagOpen(c);
+            case TAG -> inTag(c);
+            case COMMENT -> comment(c);
+            default -> rawText(c);
+        }
+        if (buf.length() >= FLUSH_AT)
+            flush();
+    }
+
+    private void text(char c) {
+        if (isSpace(c)) {
+            if (c == '\n')
+                space = 2;
+            else if (space == 0)
+                space = 1;
+            return;
+        }
+        if (c == '<') {
+            tag.setLength(0);
+            tag.append(c);
+            mode = TAG_OPEN;
+            return;
+        }
+        flushSpace();
+        buf.append(c);
+    }
+
+    /** The char after '<': a tag, end tag, comment, doctype or processing instruction, else plain text. */
+    private void tagOpen(char c) {
+        if (Character.isLetter(c) || c == '/' || c == '!' || c == '?') {
+            tag.append(c);
+            quote = 0;
+            mode = TAG;
+            return;
+        }
+        flushSpace();
+        buf.append('<');
+        mode = TEXT;
+        text(c);
+    }
+
+    private void inTag(char c) {
+        tag.append(c);
+        if (quote != 0) {
+            if (c == quote)
+                quote = 0;
+            return;
+        }
+        if (tag.length() == 4 && tag.charAt(1) == '!' && tag.charAt(2) == '-' && c == '-') {
+            mode = COMMENT;
+            return;
+        }
+        if (c == '"' || c == '\'') {
+            if (tag.length() > 1 && tag.charAt(tag.length() - 2) == '=' || endsWithEqualsAndSpace())
+                quote = c;
+            return;
+        }
+        if (c == '>')
+            endTag();
+    }
+
+    private boolean endsWithEqualsAndSpace() {
+        for (int i = tag.length() - 2; i > 0; i--) {
+            char p = tag.charAt(i);
+            if (p == '=')
+                return true;
+            if (!isSpace(p))
+                return false;
+        }
+        return false;
+    }
+
+    private void comment(char c) {
+        tag.append(c);
+        int n = tag.length();
+        if (c != '>' || n < 7 || tag.charAt(n - 2) != '-' || tag.charAt(n - 3) != '-')
+            return;
+        if (n > 5 && tag.charAt(4) == '[') { // <!--[if ...]> ... <![endif]-->
+            flushSpace();
+            buf.append(tag);
+        }
+        tag.setLength(0);
+        mode = TEXT;
+    }
+
+    private void rawText(char c) {
+        if (rawSeen.length() < raw.length()) {
+            if (Character.toLowerCase(c) == raw.charAt(rawSeen.length())) {
+                rawSeen.append(c);
+                return;
+            }
+            if (rawSeen.length() > 0) {
+                buf.append(rawSeen);
+                rawSeen.setLength(0);
+                rawText(c);
+                return;
+            }
+            buf.append(c);
+            return;
+        }
+        // "</name" matched: it ends the element only when the name ends here
+        if (isSpace(c) || c == '>' || c == '/') {
+            tag.setLength(0);
+            tag.append(rawSeen);
+            rawSeen.setLength(0);
+            raw = null;
+            quote = 0;
+            mode = TAG;
+            inTag(c);
+            return;
+        }
+        buf.append(rawSeen);
+        rawSeen.setLength(0);
+        rawText(c);
+    }
+
+    /** Writes the buffered tag with its whitespace collapsed and safe attribute quotes dropped. */
+    private void endTag() {
+        flushSpace();
+        int start = buf.length();
+        int n = tag.length();
+        boolean ws = false;
+        for (int i = 0; i < n; i++) {
+            char c = tag.charAt(i);
+            if (isSpace(c)) {
+                ws = true;
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                int close = tag.indexOf(String.valueOf(c), i + 1);
+                if (close < 0)
+                    close = n - 1;
+                boolean value = buf.charAt(buf.length() - 1) == '=';
+                if (ws && !value)
+                    buf.append(' ');
+                // only when whitespace or '>' ends the value: a following attribute or "/" would merge into it
+                if (value && close > i + 1 && bareValue(tag, i + 1, close) && close + 1 < n
+                        && (isSpace(tag.charAt(close + 1)) || tag.charAt(close + 1) == '>'))
+                    buf.append(tag, i + 1, close);
+                else
+                    buf.append(tag, i, close + 1);
+                ws = false;
+                i = close;
+                continue;
+            }
+            if (ws) {
+                char prev = buf.charAt(buf.length() - 1);
+                // no space around '=' or before '>'; keep it before "/>" unless a quote closes the value
+                boolean drop = c == '=' || prev == '=' || c == '>'
+                        || c == '/' && i + 1 < n && tag.charAt(i + 1) == '>' && (prev == '"' || prev == '\'');
+                if (!drop)
+                    buf.append(' ');
+                ws = false;
+            }
+            buf.append(c);
+        }
+        String name = tagName();
+        tag.setLength(0);
+        mode = TEXT;
+        if (name != null && tag(buf, start) && buf.charAt(buf.length() - 2) != '/') {
+            raw = "</" + name;
+            rawSeen.setLength(0);
+            mode = RAW;
+        }
+    }
+
+    /** Whether the tag just written starts with '<' + letter (an opening tag, not an end tag). */
+    private static boolean tag(StringBuilder buf, int start) {
+        return buf.length() > start + 1 && Character.isLetter(buf.charAt(start + 1));
+    }
+
+    /** The lower-case name of the buffered tag when it opens a raw-text element, else null. */
+    private String tagName() {
+        int i = 1;
+        while (i < tag.length() && Character.isLetterOrDigit(tag.charAt(i)))
+            i++;
+        String name = tag.substring(1, i).toLowerCase(java.util.Locale.ROOT);
+        for (String r : RAW_ELEMENTS)
+            if (r.equals(name))
+                return r;
+        return null;
+    }
+
+    private static boolean bareValue(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_'
+                    || c == '.' || c == ':' || c == '/'))
+                return false;
+        }
+        return true;
+    }
+
+    private void flushSpace() {
+        if (space != 0 && started)
+            buf.append(space == 2 ? '\n' : ' ');
+        space = 0;
+        started = true;
+    }
+
+    private void flush() {
+        try {
+            out.append(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.setLength(0);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+}
@@ -0,0 +1,84 @@
+package io.site.bloggen.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template parsed once into literal text and {{TOKEN}} slots, rendered in a single pass.
+ * Unknown tokens are kept as written; token values may themselves contain tokens, which are
+ * resolved against the same map (up to a small depth, so self-references terminate).
+ */
+public final class Template {
+    private static final int MAX_DEPTH = 4;
+
+    private final String[] literals; // literals.length == slots.length + 1
+    private final String[] slots;
+    private final int literalLength;
+
+    private Template(String[] literals, String[] slots, int literalLength) {
+        this.literals = literals;
+        this.slots = slots;
+        this.literalLength = literalLength;
+    }
+
+    public static Template compile(String text) {
+        List<String> lits = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int len = 0;
+        int from = 0;
+        int i = text.indexOf("{{");
+        while (i >= 0) {
+            int j = text.indexOf("}}", i + 2);
+            if (j < 0)
+                break;
+            String name = text.substring(i + 2, j);
+            int inner = name.lastIndexOf("{{");
+            if (inner >= 0) { // "{{a {{B}}": the slot starts at the innermost opener
+                i += 2 + inner;
+                continue;
+            }
+            if (name.indexOf('{') >= 0) { // "{{{B}}": skip one brace
+                i++;
+                continue;
+            }
+            String lit = text.substring(from, i);
+            lits.add(lit);
+            len += lit.length();
+            slots.add(name);
+            from = j + 2;
+            i = text.indexOf("{{", from);
+        }
+        String tail = text.substring(from);
+        lits.add(tail);
+        len += tail.length();
+        return new Template(lits.toArray(String[]::new), slots.toArray(String[]::new), len);
+    }
+
+    public String render(Map<String, String> tokens) {
+        if (slots.length == 0)
+            return literals[0];
+        StringBuilder sb = new StringBuilder(literalLength + slots.length * 32);
+        renderTo(sb, tokens, 0);
+        return sb.toString();
+    }
+
+    private void renderTo(StringBuilder sb, Map<String, String> tokens, int depth) {
+        for (int k = 0; k < slots.length; k++) {
+            sb.append(literals[k]);
+            String name = slots[k];
+            if (!tokens.containsKey(name)) {
+                sb.append("{{").append(name).append("}}");
+                continue;
+            }
+            String val = tokens.get(name);
+            if (val == null)
+                continue;
+            if (depth < MAX_DEPTH && val.contains("{{"))
+                compile(val).renderTo(sb, tokens, depth + 1);
+            else
+                sb.append(val);
+        }
+        sb.append(literals[slots.length]);
+    }
+}
@@ -26,6 +26,7 @@ public final class TemplateVars {
         m.put("NAV_ABOUT_LABEL", sanitizeVisible(ex.getOrDefault("nav_about_label", "소개")));
         m.put("NAV_CATEGORIES_LABEL", sanitizeVisible(ex.getOrDefault("nav_categories_label", "카테고리")));
         m.put("NAV_POSTS_LABEL", sanitizeVisible(ex.getOrDefault("nav_posts_label", "글")));
+        m.put("RELATED_POSTS_LABEL", sanitizeVisible(ex.getOrDefault("related_posts_label", "관련 글")));
         m.put("FAVICON_PATH", ex.getOrDefault("favicon_path", "/favicon.svg"));
         m.put("THEME_COLOR_LIGHT", ex.getOrDefault("theme_color_light", "#f7f3e9"));
         m.put("THEME_COLOR_DARK", ex.getOrDefault("theme_color_dark", "#151311"));
@@ -63,6 +64,8 @@ public final class TemplateVars {
         } else {
             m.put("CF_SNIPPET", "");
         }
+        // Inline <style> from assets/css/critical.css; set by the build when css_bundle is on
+        m.put("CRITICAL_CSS", "");
         String cr = ex.getOrDefault("copyright", "");
         if (cr == null || cr.isBlank()) {
             cr = "© " + m.get("YEAR") + " " + cfg.siteName();
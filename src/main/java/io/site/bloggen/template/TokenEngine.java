@@ -5,15 +5,8 @@ import java.util.Map;
 public final class TokenEngine {
     private TokenEngine() {}
 
+    /** Replaces {{KEY}} tokens in one pass; see {@link Template} for repeated use of the same text. */
     public static String apply(String text, Map<String,String> tokens) {
-        String out = text;
-        for (var e : tokens.entrySet()) {
-            String key = "{{" + e.getKey() + "}}";
-            String val = e.getValue();
-            if (val == null) val = "";
-            out = out.replace(key, val);
-        }
-        return out;
+        return Template.compile(text).render(tokens);
     }
 }
-
@@ -1,362 +1,491 @@
 package io.site.bloggen.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Small Markdown dialect: fenced code, pipe tables, rules, headings, blockquotes, nested lists (indent by
+ * spaces or tabs) and paragraphs; inline images, links, **bold**, *em* and `code`. Blocks are parsed in one
+ * pass over the lines and written straight to the output; inline markup is resolved with a linear delimiter
+ * scan per block, no regular expressions.
+ */
 public final class Markdown {
+    /** Bumped whenever the HTML written for the same input changes, so cached conversions are redone. */
+    public static final int VERSION = 1;
+
     private Markdown() {
     }
 
     public static String toHtml(String md) {
+        StringBuilder sb = new StringBuilder(md.length() + (md.length() >> 2));
+        try {
+            toHtml(md, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    public static void toHtml(String md, Appendable out) throws IOException {
         // Remove front matter if present
         String s = md;
+        int pos = 0;
         if (s.stripLeading().startsWith("---")) {
             int start = s.indexOf('\n');
             int end = s.indexOf("\n---", start);
             if (start >= 0 && end > start) {
-                s = s.substring(end + 4); // skip "\n---"
+                pos = end + 4; // skip "\n---"
             }
         }
-        List<String> out = new ArrayList<>();
-        String[] lines = s.split("\r?\n");
+        new BlockParser(s, pos, out).run();
+    }
+
+    /** Line bounds plus the open block state; every finished block is written through {@link #emitStart}. */
+    private static final class BlockParser {
+        final String src;
+        final Appendable out;
+        boolean firstBlock = true;
+        // line i is src[starts[i], ends[i]) without its "\r?\n"; trailing empty lines are dropped
+        int[] starts = new int[64], ends = new int[64];
+        int lines;
+        // current line with tabs expanded to 4 spaces (reused buffer)
+        final StringBuilder line = new StringBuilder();
+
+        final StringBuilder para = new StringBuilder();
+        final StringBuilder bq = new StringBuilder();
+        boolean inBq = false;
+        final StringBuilder code = new StringBuilder();
         boolean inCode = false;
-        StringBuilder code = new StringBuilder();
         String codeLang = "";
-        StringBuilder para = new StringBuilder();
-
-        // List state: stack of "ul" or "ol"
-        java.util.Stack<String> listTypeStack = new java.util.Stack<>();
-        // Indent stack prevents mixed indentation issues, though mostly we just count
-        java.util.Stack<Integer> indentStack = new java.util.Stack<>();
+        // open lists: element names ("ul"/"ol") and their indents
+        final List<String> listTypes = new ArrayList<>();
+        final List<Integer> listIndents = new ArrayList<>();
+
+        BlockParser(String src, int pos, Appendable out) {
+            this.src = src;
+            this.out = out;
+            splitLines(pos);
+        }
 
-        boolean inBq = false;
-        StringBuilder bq = new StringBuilder();
-
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            // Normalize tabs to 4 spaces
-            line = line.replace("\t", "    ");
-
-            // 1. Code Block Handling (simplistic)
-            String ltrim = line.stripLeading();
-            if (ltrim.startsWith("```")) {
-                // Close any open lists/paragraphs/blockquotes before code block
-                if (para.length() > 0) {
-                    out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                    para.setLength(0);
-                }
-                while (!listTypeStack.isEmpty()) {
-                    out.add("</" + listTypeStack.pop() + ">");
-                    indentStack.pop();
+        /** Same lines as {@code split("\\r?\\n")}, kept as offsets. */
+        private void splitLines(int pos) {
+            int from = pos;
+            while (true) {
+                int nl = src.indexOf('\n', from);
+                int end = nl < 0 ? src.length() : nl;
+                if (lines == starts.length) {
+                    starts = java.util.Arrays.copyOf(starts, lines * 2);
+                    ends = java.util.Arrays.copyOf(ends, lines * 2);
                 }
-                if (inBq) {
-                    out.add(renderBlockquote(bq.toString()));
-                    bq.setLength(0);
-                    inBq = false;
+                starts[lines] = from;
+                ends[lines] = nl > from && src.charAt(nl - 1) == '\r' ? nl - 1 : end;
+                lines++;
+                if (nl < 0)
+                    break;
+                from = nl + 1;
+            }
+            if (pos == src.length())
+                return; // "".split(..) is one empty line
+            while (lines > 0 && starts[lines - 1] == ends[lines - 1])
+                lines--;
+        }
+
+        void run() throws IOException {
+            for (int i = 0; i < lines; i++) {
+                // Normalize tabs to 4 spaces
+                line.setLength(0);
+                for (int k = starts[i], e = ends[i]; k < e; k++) {
+                    char c = src.charAt(k);
+                    if (c == '\t')
+                        line.append("    ");
+                    else
+                        line.append(c);
                 }
+                i = handleLine(i);
+            }
+            // Final cleanup
+            flushPara();
+            closeLists();
+            if (inBq)
+                emitBlockquote();
+        }
+
+        /** Handles line {@code i}; returns the last line consumed. */
+        private int handleLine(int i) throws IOException {
+            StringBuilder l = line;
+            int n = l.length();
+            int lt = skipWs(l, 0, n); // stripLeading
 
+            // 1. Code block (fence toggles)
+            if (startsWith(l, lt, n, "```")) {
+                closeAll();
                 if (!inCode) {
                     inCode = true;
                     code.setLength(0);
-                    codeLang = ltrim.substring(3).trim();
+                    codeLang = trimmed(l, lt + 3, n);
                 } else {
                     inCode = false;
-                    String cls = codeLang.isEmpty() ? "" : " class=\"language-" + escape(codeLang) + "\"";
-                    out.add("<pre><code" + cls + ">" + escape(code.toString()) + "</code></pre>");
+                    emitStart();
+                    out.append("<pre><code");
+                    if (!codeLang.isEmpty())
+                        out.append(" class=\"language-").append(escape(codeLang)).append('"');
+                    out.append('>');
+                    escapeTo(code, 0, code.length(), out);
+                    out.append("</code></pre>");
                     codeLang = "";
                 }
-                continue;
+                return i;
             }
             if (inCode) {
-                code.append(line).append('\n');
-                continue;
+                code.append(l).append('\n');
+                return i;
             }
-
-            // 2. Table detection
-            if (!line.isBlank() && i + 1 < lines.length) {
-                String next = lines[i + 1].trim();
-                // If it looks like a table, close everything else
-                if (looksLikeTableHeader(line) && isTableSeparatorRow(next)) {
-                    if (para.length() > 0) {
-                        out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                        para.setLength(0);
-                    }
-                    while (!listTypeStack.isEmpty()) {
-                        out.add("</" + listTypeStack.pop() + ">");
-                        indentStack.pop();
-                    }
-                    if (inBq) {
-                        out.add(renderBlockquote(bq.toString()));
-                        bq.setLength(0);
-                        inBq = false;
-                    }
-
-                    java.util.List<String> headers = splitTableRow(line);
-                    java.util.List<String> aligns = parseAlignRow(lines[i + 1], headers.size());
-                    i += 2;
-                    java.util.List<java.util.List<String>> rows = new java.util.ArrayList<>();
-                    while (i < lines.length) {
-                        String r = lines[i];
-                        if (r.isBlank())
-                            break;
-                        if (!r.contains("|"))
-                            break;
-                        rows.add(splitTableRow(r));
-                        i++;
-                    }
-                    i--;
-                    out.add(renderTable(headers, aligns, rows));
-                    continue;
+            boolean blank = lt == n;
+
+            // 2. Table: a line with '|' followed by a separator row
+            if (!blank && i + 1 < lines && indexOf(l, 0, n, '|') >= 0
+                    && isTableSeparatorRow(src, starts[i + 1], ends[i + 1])) {
+                closeAll();
+                List<String> headers = splitTableRow(l, 0, n);
+                List<String> aligns = parseAlignRow(src, starts[i + 1], ends[i + 1], headers.size());
+                List<List<String>> rows = new ArrayList<>();
+                int r = i + 2;
+                for (; r < lines; r++) {
+                    int rs = starts[r], re = ends[r];
+                    if (skipWs(src, rs, re) == re || indexOf(src, rs, re, '|') < 0)
+                        break;
+                    rows.add(splitTableRow(src, rs, re));
                 }
+                emitStart();
+                renderTable(headers, aligns, rows);
+                return r - 1;
             }
 
-            // 3. Horizontal Rule
-            String tline = line.trim();
-            if (tline.matches("^[-*_]{3,}$")) {
-                if (para.length() > 0) {
-                    out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                    para.setLength(0);
-                }
-                while (!listTypeStack.isEmpty()) {
-                    out.add("</" + listTypeStack.pop() + ">");
-                    indentStack.pop();
-                }
-                if (inBq) {
-                    out.add(renderBlockquote(bq.toString()));
-                    bq.setLength(0);
-                    inBq = false;
-                }
-                out.add("<hr />");
-                continue;
+            // 3. Horizontal rule: 3+ of '-', '*', '_' (after trim)
+            int ts = trimStart(l, 0, n), te = trimEnd(l, ts, n);
+            if (te - ts >= 3 && allRuleChars(l, ts, te)) {
+                closeAll();
+                emitStart();
+                out.append("<hr />");
+                return i;
             }
 
-            // 4. Blank Line
-            if (line.isBlank()) {
-                if (para.length() > 0) {
-                    out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                    para.setLength(0);
-                }
-                // Only close lists if double blank? No, standard md usually closes on blank if
-                // next line isn't list.
-                // But simplified: blank line breaks paragraph. Lists might continue if next is
-                // list.
-                // For safety and simplicity in this custom parser: close paragraph. Keep lists
-                // open?
-                // Let's close lists on blank line to match previous behavior if strict.
-                // But real markdown allows loose lists. Let's try to KEEP lists open on blank
-                // lines for now,
-                // but if the next line is NOT a list item, they will be closed then.
-                if (inBq) {
-                    out.add(renderBlockquote(bq.toString()));
-                    bq.setLength(0);
-                    inBq = false;
-                }
-                continue;
+            // 4. Blank line: ends paragraph and blockquote; lists stay open
+            if (blank) {
+                flushPara();
+                if (inBq)
+                    emitBlockquote();
+                return i;
             }
 
             // 5. Headings
-            if (ltrim.startsWith("#")) {
-                if (para.length() > 0) {
-                    out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                    para.setLength(0);
-                }
-                while (!listTypeStack.isEmpty()) {
-                    out.add("</" + listTypeStack.pop() + ">");
-                    indentStack.pop();
-                }
-                if (inBq) {
-                    out.add(renderBlockquote(bq.toString()));
-                    bq.setLength(0);
-                    inBq = false;
-                }
-                int level = Math.min(6, (int) ltrim.chars().takeWhile(ch -> ch == '#').count());
-                String text = ltrim.substring(level).trim();
-                out.add("<h" + level + ">" + inline(text) + "</h" + level + ">");
-                continue;
+            if (l.charAt(lt) == '#') {
+                closeAll();
+                int hashes = 0;
+                while (lt + hashes < n && l.charAt(lt + hashes) == '#')
+                    hashes++;
+                int level = Math.min(6, hashes);
+                int hs = trimStart(l, lt + level, n);
+                emitStart();
+                out.append("<h").append((char) ('0' + level)).append('>');
+                inline(l, hs, trimEnd(l, hs, n), out);
+                out.append("</h").append((char) ('0' + level)).append('>');
+                return i;
             }
 
             // 6. Blockquote
-            if (ltrim.startsWith(">")) {
-                if (para.length() > 0) {
-                    out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                    para.setLength(0);
-                }
-                while (!listTypeStack.isEmpty()) {
-                    out.add("</" + listTypeStack.pop() + ">");
-                    indentStack.pop();
-                }
+            if (l.charAt(lt) == '>') {
+                flushPara();
+                closeLists();
                 inBq = true;
-                String content = ltrim.substring(1).stripLeading();
-                bq.append(content).append(' ');
-                continue;
+                bq.append(l, skipWs(l, lt + 1, n), n).append(' ');
+                return i;
             }
 
-            // 7. List Items (UL / OL)
-            // Calc indent
+            // 7. List items (UL / OL)
             int indent = 0;
-            while (indent < line.length() && line.charAt(indent) == ' ') {
+            while (indent < n && l.charAt(indent) == ' ')
                 indent++;
-            }
-            // Normalizing indent: 2 spaces = 1 level is standard-ish for bullet, 3 or 4 for
-            // ordered.
-            // Let's approximate: strict 2 spaces or tab?
-            // We'll treat every 2 spaces as a level increment potential.
-
-            String content = line.trim();
-            boolean isUl = content.matches("^[-*+]\\s+(.*)$");
-            boolean isOl = content.matches("^\\d+\\.\\s+(.*)$");
-
-            if (isUl || isOl) {
-                if (para.length() > 0) {
-                    out.add("<p>" + inline(para.toString().trim()) + "</p>");
-                    para.setLength(0);
-                }
-                if (inBq) {
-                    out.add(renderBlockquote(bq.toString()));
-                    bq.setLength(0);
-                    inBq = false;
-                }
-
-                String type = isUl ? "ul" : "ol";
-
-                // Determine desired level from indent.
-                // Root = indent 0. Nested 1 = indent 2-3?
-                // Let's use the indent stack.
-                // logic: if indent > last_indent -> nesting.
-
-                int lastIndent = indentStack.isEmpty() ? -1 : indentStack.peek();
-
+            int item = listItemStart(l, ts, te);
+            if (item >= 0) {
+                flushPara();
+                if (inBq)
+                    emitBlockquote();
+                String type = isDigit(l.charAt(ts)) ? "ol" : "ul";
+                int lastIndent = listIndents.isEmpty() ? -1 : listIndents.get(listIndents.size() - 1);
                 if (indent > lastIndent) {
-                    // Start new nested list
-                    out.add("<" + type + ">");
-                    listTypeStack.push(type);
-                    indentStack.push(indent);
+                    openList(type, indent); // nested list
                 } else {
                     // Close lists until we match indent or empty
-                    while (!indentStack.isEmpty() && indent < indentStack.peek()) {
-                        out.add("</" + listTypeStack.pop() + ">");
-                        indentStack.pop();
-                    }
-                    // If mismatch type at same level, switch
-                    if (!listTypeStack.isEmpty() && !listTypeStack.peek().equals(type)) {
-                        out.add("</" + listTypeStack.pop() + ">");
-                        indentStack.pop();
-                        // reopen
-                        out.add("<" + type + ">");
-                        listTypeStack.push(type);
-                        indentStack.push(indent);
-                    }
-                    // If stack empty now (was closed down), start new
-                    if (listTypeStack.isEmpty()) {
-                        out.add("<" + type + ">");
-                        listTypeStack.push(type);
-                        indentStack.push(indent);
+                    while (!listIndents.isEmpty() && indent < listIndents.get(listIndents.size() - 1))
+                        closeList();
+                    // Different list type at the same level: switch
+                    if (!listTypes.isEmpty() && !listTypes.get(listTypes.size() - 1).equals(type)) {
+                        closeList();
+                        openList(type, indent);
                     }
+                    if (listTypes.isEmpty())
+                        openList(type, indent);
                 }
+                emitStart();
+                out.append("<li>");
+                inline(l, item, te, out);
+                out.append("</li>");
+                return i;
+            }
 
-                // Extract text
-                String itemText = "";
-                if (isUl)
-                    itemText = content.replaceFirst("^[-*+]\\s+", "");
-                else
-                    itemText = content.replaceFirst("^\\d+\\.\\s+", "");
-
-                out.add("<li>" + inline(itemText) + "</li>");
-                continue;
+            // 8. Text: closes lists, continues a blockquote or paragraph
+            closeLists();
+            if (inBq) {
+                bq.append(l, lt, n).append(' ');
+                return i;
             }
+            para.append(l).append(' ');
+            return i;
+        }
 
-            // 8. Normal text / Continuation
-            // If it's not a list item, but we are inside a list...
-            // Standard markdown: indented text continues item.
-            // Parsing that is hard without lookahead. Use simple rule:
-            // if we are in list, and line is not empty, AND not a new item...
-            // close list? Or append to prev item?
-            // Custom parser simplifcation: Break list on non-list line (unless blank? we
-            // handled blank above)
-
-            // If we are here, it's text.
-            if (!listTypeStack.isEmpty()) {
-                // If text and we have open list... strictly speaking, should close list unless
-                // indented?
-                // For now, close list to allow paragraph to start.
-                while (!listTypeStack.isEmpty()) {
-                    out.add("</" + listTypeStack.pop() + ">");
-                    indentStack.pop();
-                }
+        private void emitStart() throws IOException {
+            if (!firstBlock)
+                out.append('\n');
+            firstBlock = false;
+        }
+
+        private void closeAll() throws IOException {
+            flushPara();
+            closeLists();
+            if (inBq)
+                emitBlockquote();
+        }
+
+        private void flushPara() throws IOException {
+            if (para.length() == 0)
+                return;
+            int s = trimStart(para, 0, para.length());
+            emitStart();
+            out.append("<p>");
+            inline(para, s, trimEnd(para, s, para.length()), out);
+            out.append("</p>");
+            para.setLength(0);
+        }
+
+        private void emitBlockquote() throws IOException {
+            int s = trimStart(bq, 0, bq.length());
+            int e = trimEnd(bq, s, bq.length());
+            StringBuilder inner = new StringBuilder(e - s + 16);
+            inline(bq, s, e, inner);
+            emitStart(); // an all-blank quote still counts as a (empty) block
+            if (skipWs(inner, 0, inner.length()) < inner.length())
+                out.append("<blockquote>").append(inner).append("</blockquote>");
+            bq.setLength(0);
+            inBq = false;
+        }
+
+        private void openList(String type, int indent) throws IOException {
+            emitStart();
+            out.append('<').append(type).append('>');
+            listTypes.add(type);
+            listIndents.add(indent);
+        }
+
+        private void closeList() throws IOException {
+            emitStart();
+            out.append("</").append(listTypes.remove(listTypes.size() - 1)).append('>');
+            listIndents.remove(listIndents.size() - 1);
+        }
+
+        private void closeLists() throws IOException {
+            while (!listTypes.isEmpty())
+                closeList();
+        }
+
+        private void renderTable(List<String> headers, List<String> aligns, List<List<String>> rows)
+                throws IOException {
+            out.append("<table>\n");
+            out.append("  <thead><tr>\n");
+            for (int i = 0; i < headers.size(); i++) {
+                out.append("    <th");
+                appendAlign(i < aligns.size() ? aligns.get(i) : "");
+                out.append('>');
+                String h = headers.get(i);
+                inline(h, 0, h.length(), out);
+                out.append("</th>\n");
             }
-            if (inBq) {
-                // append to blockquote
-                String val = line.stripLeading();
-                bq.append(val).append(' ');
-                continue;
+            out.append("  </tr></thead>\n");
+            out.append("  <tbody>\n");
+            for (var r : rows) {
+                out.append("    <tr>\n");
+                for (int i = 0; i < headers.size(); i++) {
+                    String cell = i < r.size() ? r.get(i) : "";
+                    out.append("      <td");
+                    appendAlign(i < aligns.size() ? aligns.get(i) : "");
+                    out.append('>');
+                    inline(cell, 0, cell.length(), out);
+                    out.append("</td>\n");
+                }
+                out.append("    </tr>\n");
             }
+            out.append("  </tbody>\n</table>");
+        }
 
-            para.append(line).append(' ');
+        private void appendAlign(String a) throws IOException {
+            if (!a.isEmpty())
+                out.append(" style=\"text-align: ").append(a).append('"');
+        }
+    }
+
+    /** Start of the item text after "- ", "* ", "+ " or "12. ", or -1 if {@code [s, e)} is not a list item. */
+    private static int listItemStart(CharSequence l, int s, int e) {
+        if (s >= e)
+            return -1;
+        int p = s;
+        char c = l.charAt(p);
+        if (c == '-' || c == '*' || c == '+') {
+            p++;
+        } else if (isDigit(c)) {
+            while (p < e && isDigit(l.charAt(p)))
+                p++;
+            if (p >= e || l.charAt(p) != '.')
+                return -1;
+            p++;
+        } else {
+            return -1;
+        }
+        if (p >= e || !isRegexSpace(l.charAt(p)))
+            return -1;
+        while (p < e && isRegexSpace(l.charAt(p)))
+            p++;
+        for (int i = p; i < e; i++) {
+            char x = l.charAt(i);
+            if (x == '\r' || x == '\u0085' || x == '\u2028' || x == '\u2029')
+                return -1; // item text is a single line
         }
+        return p;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
 
-        // Final cleanup
-        if (para.length() > 0)
-            out.add("<p>" + inline(para.toString().trim()) + "</p>");
-        while (!listTypeStack.isEmpty()) {
-            out.add("</" + listTypeStack.pop() + ">");
-            indentStack.pop();
+    private static boolean allRuleChars(CharSequence l, int s, int e) {
+        for (int i = s; i < e; i++) {
+            char c = l.charAt(i);
+            if (c != '-' && c != '*' && c != '_')
+                return false;
         }
-        if (inBq)
-            out.add(renderBlockquote(bq.toString()));
-        return String.join("\n", out);
+        return true;
     }
 
-    private static boolean looksLikeTableHeader(String line) {
-        String t = line.trim();
-        return t.contains("|");
+    private static boolean startsWith(CharSequence l, int at, int end, String prefix) {
+        if (end - at < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (l.charAt(at + i) != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static int indexOf(CharSequence l, int s, int e, char c) {
+        for (int i = s; i < e; i++)
+            if (l.charAt(i) == c)
+                return i;
+        return -1;
+    }
+
+    /** First index in [s, e) that is not Unicode whitespace (String.stripLeading/isBlank semantics). */
+    private static int skipWs(CharSequence l, int s, int e) {
+        while (s < e && Character.isWhitespace(l.charAt(s)))
+            s++;
+        return s;
+    }
+
+    /** String.trim semantics: chars up to U+0020 are trimmed. */
+    private static int trimStart(CharSequence l, int s, int e) {
+        while (s < e && l.charAt(s) <= ' ')
+            s++;
+        return s;
+    }
+
+    private static int trimEnd(CharSequence l, int s, int e) {
+        while (e > s && l.charAt(e - 1) <= ' ')
+            e--;
+        return e;
     }
 
-    private static boolean isTableSeparatorRow(String line) {
-        if (!line.contains("|"))
+    private static String trimmed(CharSequence l, int s, int e) {
+        s = trimStart(l, s, e);
+        return l.subSequence(s, trimEnd(l, s, e)).toString();
+    }
+
+    private static boolean isTableSeparatorRow(CharSequence l, int s, int e) {
+        if (indexOf(l, s, e, '|') < 0)
             return false;
-        var cells = splitTableRow(line);
+        var cells = splitTableRow(l, s, e);
         int ok = 0;
         for (String c : cells) {
-            String x = c.trim().replace(" ", "");
-            if (x.isEmpty())
-                continue;
-            // at least 3 dashes, optional leading/trailing colon
-            String y = x.replace(":", "");
-            if (y.matches("-{-}{1,}".replace("{-}{1,}", "{3,}"))) { // trick to avoid escaping braces in patch
+            if (isDashCell(c) == 1)
                 ok++;
-            } else if (y.matches("-{3,}")) {
-                ok++;
-            }
         }
         return ok >= Math.max(1, cells.size() - 1); // tolerate empty trailing cell
     }
 
-    private static java.util.List<String> splitTableRow(String line) {
-        String t = line.trim();
-        if (t.startsWith("|"))
-            t = t.substring(1);
-        if (t.endsWith("|"))
-            t = t.substring(0, t.length() - 1);
-        String[] parts = t.split("\\|", -1);
-        java.util.List<String> cells = new java.util.ArrayList<>();
-        for (String p : parts)
-            cells.add(p.trim());
+    /**
+     * 1 when a cell is at least 3 dashes with optional colons (spaces ignored), 0 when it is empty after
+     * removing spaces, -1 otherwise.
+     */
+    private static int isDashCell(String c) {
+        int dashes = 0;
+        boolean any = false;
+        for (int i = 0; i < c.length(); i++) {
+            char x = c.charAt(i);
+            if (x == ' ')
+                continue;
+            any = true;
+            if (x == '-')
+                dashes++;
+            else if (x != ':')
+                return -1;
+        }
+        if (!any)
+            return 0;
+        return dashes >= 3 ? 1 : -1;
+    }
+
+    private static List<String> splitTableRow(CharSequence l, int s, int e) {
+        s = trimStart(l, s, e);
+        e = trimEnd(l, s, e);
+        if (s < e && l.charAt(s) == '|')
+            s++;
+        if (e > s && l.charAt(e - 1) == '|')
+            e--;
+        List<String> cells = new ArrayList<>();
+        int from = s;
+        for (int i = s; i <= e; i++) {
+            if (i == e || l.charAt(i) == '|') {
+                cells.add(trimmed(l, from, i));
+                from = i + 1;
+            }
+        }
         return cells;
     }
 
-    private static java.util.List<String> parseAlignRow(String line, int cols) {
-        var raw = splitTableRow(line);
-        java.util.List<String> out = new java.util.ArrayList<>();
+    private static List<String> parseAlignRow(CharSequence l, int s, int e, int cols) {
+        var raw = splitTableRow(l, s, e);
+        List<String> out = new ArrayList<>();
         for (int i = 0; i < Math.max(cols, raw.size()); i++) {
             String cell = i < raw.size() ? raw.get(i) : "";
-            String x = cell.trim().replace(" ", "");
-            boolean left = x.startsWith(":");
-            boolean right = x.endsWith(":");
-            String core = x.replace(":", "");
-            if (!core.matches("-{3,}")) {
+            if (isDashCell(cell) != 1) {
                 out.add("");
                 continue;
             }
+            String x = cell.replace(" ", "");
+            boolean left = x.startsWith(":");
+            boolean right = x.endsWith(":");
             if (left && right)
                 out.add("center");
             else if (right)
@@ -374,34 +503,12 @@ public final class Markdown {
         return out;
     }
 
-    private static String renderTable(java.util.List<String> headers, java.util.List<String> aligns,
-            java.util.List<java.util.List<String>> rows) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("<table>\n");
-        sb.append("  <thead><tr>\n");
-        for (int i = 0; i < headers.size(); i++) {
-            String a = i < aligns.size() ? aligns.get(i) : "";
-            String style = a.isEmpty() ? "" : " style=\"text-align: " + a + "\"";
-            sb.append("    <th").append(style).append(">").append(inline(headers.get(i))).append("</th>\n");
-        }
-        sb.append("  </tr></thead>\n");
-        sb.append("  <tbody>\n");
-        for (var r : rows) {
-            sb.append("    <tr>\n");
-            for (int i = 0; i < headers.size(); i++) {
-                String cell = i < r.size() ? r.get(i) : "";
-                String a = i < aligns.size() ? aligns.get(i) : "";
-                String style = a.isEmpty() ? "" : " style=\"text-align: " + a + "\"";
-                sb.append("      <td").append(style).append(">").append(inline(cell)).append("</td>\n");
-            }
-            sb.append("    </tr>\n");
-        }
-        sb.append("  </tbody>\n</table>");
-        return sb.toString();
+    public static String firstParagraphText(String md) {
+        return excerpt(toHtml(md));
     }
 
-    public static String firstParagraphText(String md) {
-        String html = toHtml(md);
+    /** Plain text of the first paragraph (or list item / quote) of rendered HTML, cut to 180 chars. */
+    public static String excerpt(String html) {
         String text = extractBetween(html, "<p>", "</p>");
         if (text == null || text.isBlank())
             text = extractBetween(html, "<li>", "</li>");
@@ -426,28 +533,220 @@ public final class Markdown {
         return inner.replaceAll("<[^>]+>", "");
     }
 
-    private static String renderBlockquote(String content) {
-        String inner = inline(content.trim());
-        if (inner.isBlank())
-            return "";
-        return "<blockquote>" + inner + "</blockquote>";
+    // ---- inline ----
+
+    private static final byte BOLD_OPEN = 1, BOLD_CLOSE = 2, EM_OPEN = 3, EM_CLOSE = 4, CODE_OPEN = 5,
+            CODE_CLOSE = 6;
+
+    /**
+     * Writes inline markup for {@code [from, to)}. Images and links are matched first (leftmost, the first ']'
+     * and ')' close them); then **bold**, *em* and `code` delimiters are paired left to right, each kind
+     * ignoring the delimiters already taken by the previous one. Text is not escaped.
+     */
+    private static void inline(CharSequence t, int from, int to, Appendable out) throws IOException {
+        boolean brackets = false, stars = false, ticks = false;
+        for (int i = from; i < to; i++) {
+            char c = t.charAt(i);
+            if (c == '[')
+                brackets = true;
+            else if (c == '*')
+                stars = true;
+            else if (c == '`')
+                ticks = true;
+        }
+        if (!brackets && !stars && !ticks) {
+            out.append(t, from, to);
+            return;
+        }
+        int n = to - from;
+        // spans[i] != 0: an image/link starts at from+i; value = index+1 into spanList
+        int[] spans = null;
+        List<int[]> spanList = null;
+        if (brackets) {
+            spans = new int[n];
+            spanList = new ArrayList<>();
+            findSpans(t, from, to, spans, spanList);
+        }
+        byte[] marks = null;
+        if (stars || ticks) {
+            marks = new byte[n];
+            if (stars)
+                pairStars(t, from, to, marks);
+            if (ticks)
+                pairTicks(t, from, to, marks);
+        }
+        emit(t, from, from, to, spans, spanList, marks, out);
     }
 
-    private static String inline(String s) {
-        // images ![alt](url) -> <img src="url" alt="alt" />
-        s = s.replaceAll("!\\[([^]]*)\\]\\(([^)]+)\\)", "<img src=\"$2\" alt=\"$1\" />");
-        // links [text](url)
-        s = s.replaceAll("\\[([^]]*)\\]\\(([^)]+)\\)", "<a href=\"$2\">$1</a>");
-        // bold **text**
-        s = s.replaceAll("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>");
-        // emphasis *text*
-        s = s.replaceAll("\\*([^*]+)\\*", "<em>$1</em>");
-        // code `code`
-        s = s.replaceAll("`([^`]+)`", "<code>$1</code>");
-        return s;
+    /** Images first, then links over the text with images treated as opaque. */
+    private static void findSpans(CharSequence t, int from, int to, int[] spans, List<int[]> spanList) {
+        int n = to - from;
+        // image pass: ![alt](url)
+        int[] imgEnd = new int[n]; // imgEnd[i] = end index (exclusive) when an image starts at from+i
+        for (int i = from; i + 1 < to; i++) {
+            if (t.charAt(i) != '!' || t.charAt(i + 1) != '[')
+                continue;
+            int close = indexOf(t, i + 2, to, ']');
+            if (close < 0 || close + 1 >= to || t.charAt(close + 1) != '(')
+                continue;
+            int paren = indexOf(t, close + 2, to, ')');
+            if (paren < 0 || paren == close + 2)
+                continue;
+            spanList.add(new int[] { 1, i, close, paren + 1 });
+            spans[i - from] = spanList.size();
+            imgEnd[i - from] = paren + 1;
+            i = paren;
+        }
+        // link pass: [text](url), skipping over images
+        for (int i = from; i < to; i++) {
+            int ie = imgEnd[i - from];
+            if (ie > 0) {
+                i = ie - 1;
+                continue;
+            }
+            if (t.charAt(i) != '[')
+                continue;
+            int close = indexOfSkippingImages(t, i + 1, to, ']', imgEnd, from);
+            if (close < 0 || close + 1 >= to || t.charAt(close + 1) != '(')
+                continue;
+            int paren = indexOfSkippingImages(t, close + 2, to, ')', imgEnd, from);
+            if (paren < 0 || paren == close + 2)
+                continue;
+            spanList.add(new int[] { 0, i, close, paren + 1 });
+            spans[i - from] = spanList.size();
+            i = paren;
+        }
+    }
+
+    private static int indexOfSkippingImages(CharSequence t, int s, int e, char c, int[] imgEnd, int from) {
+        for (int i = s; i < e; i++) {
+            int ie = imgEnd[i - from];
+            if (ie > 0) {
+                i = ie - 1;
+                continue;
+            }
+            if (t.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    private static void pairStars(CharSequence t, int from, int to, byte[] marks) {
+        // **bold**: content is one or more non-'*' chars
+        for (int i = from; i + 1 < to; i++) {
+            if (t.charAt(i) != '*' || t.charAt(i + 1) != '*')
+                continue;
+            int k = indexOf(t, i + 2, to, '*');
+            if (k > i + 2 && k + 1 < to && t.charAt(k + 1) == '*') {
+                marks[i - from] = BOLD_OPEN;
+                marks[k - from] = BOLD_CLOSE;
+                i = k + 1;
+            }
+        }
+        // *em* over the stars bold did not take
+        int open = -1;
+        for (int i = from; i < to; i++) {
+            if (t.charAt(i) != '*')
+                continue;
+            byte m = marks[i - from];
+            if (m == BOLD_OPEN || m == BOLD_CLOSE) {
+                i++; // bold delimiters are two chars
+                continue;
+            }
+            if (open >= 0 && i > open + 1) {
+                marks[open - from] = EM_OPEN;
+                marks[i - from] = EM_CLOSE;
+                open = -1;
+            } else {
+                open = i;
+            }
+        }
+    }
+
+    private static void pairTicks(CharSequence t, int from, int to, byte[] marks) {
+        int open = -1;
+        for (int i = from; i < to; i++) {
+            if (t.charAt(i) != '`')
+                continue;
+            if (open >= 0 && i > open + 1) {
+                marks[open - from] = CODE_OPEN;
+                marks[i - from] = CODE_CLOSE;
+                open = -1;
+            } else {
+                open = i;
+            }
+        }
+    }
+
+    private static void emit(CharSequence t, int base, int s, int e, int[] spans, List<int[]> spanList,
+            byte[] marks, Appendable out) throws IOException {
+        int run = s; // start of pending plain text
+        for (int i = s; i < e; i++) {
+            int sp = spans != null ? spans[i - base] : 0;
+            byte m = marks != null ? marks[i - base] : 0;
+            if (sp == 0 && m == 0)
+                continue;
+            out.append(t, run, i);
+            if (sp != 0) {
+                int[] span = spanList.get(sp - 1);
+                int close = span[2], end = span[3];
+                if (span[0] == 1) {
+                    out.append("<img src=\"");
+                    emit(t, base, close + 2, end - 1, spans, spanList, marks, out);
+                    out.append("\" alt=\"");
+                    emit(t, base, i + 2, close, spans, spanList, marks, out);
+                    out.append("\" />");
+                } else {
+                    out.append("<a href=\"");
+                    emit(t, base, close + 2, end - 1, spans, spanList, marks, out);
+                    out.append("\">");
+                    emit(t, base, i + 1, close, spans, spanList, marks, out);
+                    out.append("</a>");
+                }
+                i = end - 1;
+                run = end;
+                continue;
+            }
+            switch (m) {
+                case BOLD_OPEN -> out.append("<strong>");
+                case BOLD_CLOSE -> out.append("</strong>");
+                case EM_OPEN -> out.append("<em>");
+                case EM_CLOSE -> out.append("</em>");
+                case CODE_OPEN -> out.append("<code>");
+                default -> out.append("</code>");
+            }
+            if (m == BOLD_OPEN || m == BOLD_CLOSE)
+                i++;
+            run = i + 1;
+        }
+        out.append(t, run, e);
     }
 
     private static String escape(String s) {
-        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        try {
+            escapeTo(s, 0, s.length(), sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    private static void escapeTo(CharSequence s, int from, int to, Appendable out) throws IOException {
+        int run = from;
+        for (int i = from; i < to; i++) {
+            String r;
+            switch (s.charAt(i)) {
+                case '&' -> r = "&amp;";
+                case '<' -> r = "&lt;";
+                case '>' -> r = "&gt;";
+                default -> r = null;
+            }
+            if (r == null)
+                continue;
+            out.append(s, run, i).append(r);
+            run = i + 1;
+        }
+        out.append(s, run, to);
     }
 }
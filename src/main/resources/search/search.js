@@ -0,0 +1,97 @@
+/*
+ * llog search: window.llogSearch(query, limit) -> Promise of [{url, title, date, score}], best first.
+ * Reads the index the build writes to /search/ (site.json "search_index": true), loading only the shards
+ * of the query's terms and the doc lists of the results. The tokenizer matches SearchIndex.terms.
+ */
+(function () {
+  var BASE = '/search/';
+  var cache = {};
+
+  function load(name) {
+    if (!cache[name])
+      cache[name] = fetch(BASE + name + '.json').then(function (r) {
+        if (!r.ok) throw new Error(name + ': ' + r.status);
+        return r.json();
+      });
+    return cache[name];
+  }
+
+  function gram(c) {
+    return (c >= '\uAC00' && c <= '\uD7A3') || (c >= '\u3040' && c <= '\u30FF') || (c >= '\u4E00' && c <= '\u9FFF');
+  }
+
+  function word(c) {
+    return /[\p{L}\p{Nd}]/u.test(c);
+  }
+
+  function terms(text) {
+    var s = text.normalize('NFC'), out = [], i = 0;
+    while (i < s.length) {
+      var c = s[i].toLowerCase();
+      if (gram(c)) {
+        var start = i;
+        while (i < s.length && gram(s[i])) i++;
+        if (i - start === 1) out.push(c);
+        for (var j = start; j + 1 < i; j++) out.push(s.substring(j, j + 2));
+      } else if (word(c)) {
+        var w = '';
+        while (i < s.length && !gram(s[i]) && word(s[i])) {
+          if (w.length < 32) w += s[i].toLowerCase();
+          i++;
+        }
+        if (w.length >= 2) out.push(w);
+      } else {
+        i++;
+      }
+    }
+    return out;
+  }
+
+  function bucket(term, i) {
+    if (i >= term.length) return '_';
+    var c = term[i];
+    if (c >= 'a' && c <= 'z') return c;
+    if (c >= '0' && c <= '9') return '0';
+    if (c >= '\uAC00' && c <= '\uD7A3') {
+      var initial = Math.floor((c.charCodeAt(0) - 0xAC00) / 588);
+      return (initial < 10 ? 'k0' : 'k') + initial;
+    }
+    return 'x';
+  }
+
+  window.llogSearch = function (query, limit) {
+    limit = limit || 20;
+    var qs = Array.from(new Set(terms(query)));
+    if (!qs.length) return Promise.resolve([]);
+    return load('index').then(function (meta) {
+      return Promise.all(qs.map(function (t) {
+        var b = bucket(t, 0);
+        var shard = meta.split.indexOf(b) >= 0 ? b + '-' + bucket(t, 1) : b;
+        if (meta.shards.indexOf(shard) < 0) return null;
+        return load(shard).then(function (s) { return s[t] || null; });
+      })).then(function (lists) {
+        // rank by terms matched, then by score weighted by how rare each term is
+        var hits = {};
+        lists.forEach(function (p) {
+          if (!p) return;
+          var idf = Math.log(1 + meta.docs / p[0]), doc = 0;
+          for (var i = 1; i + 1 < p.length; i += 2) {
+            doc += p[i];
+            var h = hits[doc] || (hits[doc] = { doc: doc, matched: 0, score: 0 });
+            h.matched++;
+            h.score += p[i + 1] * idf;
+          }
+        });
+        var best = Object.keys(hits).map(function (k) { return hits[k]; }).sort(function (a, b) {
+          return b.matched - a.matched || b.score - a.score || a.doc - b.doc;
+        }).slice(0, limit);
+        return Promise.all(best.map(function (h) {
+          return load('docs-' + Math.floor(h.doc / meta.docsPerFile)).then(function (docs) {
+            var d = docs[h.doc % meta.docsPerFile];
+            return { url: d[0], title: d[1], date: d[2], score: h.score };
+          });
+        }));
+      });
+    });
+  };
+})();
@@ -0,0 +1,73 @@
+package io.site.bloggen.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Golden outputs of the stylesheet tokenizer and bundler. */
+class CssBundlerTest {
+    private static final Map<String, String> FILES = Map.of(
+            "assets/css/index.css", """
+                    @charset "utf-8";
+                    /* @import url('commented.css'); */
+                    @import url('base.css');
+                    @import "print.css" print;
+                    @import url("https://fonts.example/f.css");
+                    @import 'sub/theme.css';
+                    @import url(base.css);
+                    .index { color: red; }
+                    """,
+            "assets/css/base.css", "/*! base */\nbody { margin: 0; }\n",
+            "assets/css/print.css", "body { color: black }",
+            "assets/css/commented.css", ".commented { color: red }",
+            "assets/css/sub/theme.css", """
+                    @import url('../missing.css') screen and (min-width: 1px);
+                    .t { background: url(img/bg.png) url('/abs.png') url(#frag); }
+                    """);
+
+    private static String minified(String css) {
+        return CssBundler.minify(CssBundler.stripComments(css));
+    }
+
+    @Test
+    void commentsInStringsAreKept() {
+        assertEquals("a{content:\"/* not a comment */\";color:red}b{x:'it''s'}",
+                minified("a { content: \"/* not a comment */\"; color: red; } /* gone */ b { x: 'it''s' }"));
+        assertEquals("b{content:\"a\\\"/*b*/\"}", minified("b { content: \"a\\\"/*b*/\" }"));
+        assertEquals("", minified("/* unterminated"));
+    }
+
+    @Test
+    void licenseCommentsAndWhitespace() {
+        assertEquals("/*! License v1 */\n.a > .b,.c{margin :0 auto;width:calc(100% - 2px)}"
+                + "@media (min-width:40em){.a{color :blue}}",
+                minified("/*! License v1 */\n/* drop */\n.a  >  .b ,  .c  {  margin : 0  auto ;"
+                        + "  width: calc(100% - 2px) ; }\n\n@media (min-width: 40em) { .a { color : blue ; } }"));
+    }
+
+    @Test
+    void conditionalAndRemoteImportsAreHoisted() throws IOException {
+        var bundle = new CssBundler(FILES::get).bundle("assets/css/index.css", "assets/css/");
+        assertEquals("@import \"print.css\" print;@import url(\"https://fonts.example/f.css\");"
+                + "@import url('/assets/css/missing.css') screen and (min-width:1px);\n/*! base */\n"
+                + "body{margin:0}.t{background:url('/assets/css/sub/img/bg.png') url('/abs.png') url(#frag)}"
+                + ".index{color:red}", bundle.css());
+        assertEquals(List.of("assets/css/index.css", "assets/css/base.css", "assets/css/sub/theme.css"),
+                bundle.inputs());
+    }
+
+    @Test
+    void inlinedBundleMakesEveryImportRootAbsolute() throws IOException {
+        var bundle = new CssBundler(FILES::get).bundle("assets/css/index.css", null);
+        assertEquals("@import url('/assets/css/print.css') print;@import url(\"https://fonts.example/f.css\");"
+                + "@import url('/assets/css/missing.css') screen and (min-width:1px);\n/*! base */\n"
+                + "body{margin:0}.t{background:url('/assets/css/sub/img/bg.png') url('/abs.png') url(#frag)}"
+                + ".index{color:red}", bundle.css());
+        assertNull(new CssBundler(FILES::get).bundle("assets/css/none.css", "assets/css/"));
+    }
+}
@@ -0,0 +1,86 @@
+package io.site.bloggen.service;
+
+import io.site.bloggen.core.Post;
+import io.site.bloggen.core.SiteConfig;
+import io.site.bloggen.core.SiteModel;
+import io.site.bloggen.template.TemplateVars;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Feed defaults, and items escaped once per format from the page's already-escaped title and description. */
+class FeedServiceTest {
+    private static Map<String, String> generate(Map<String, String> extras, List<Post> posts) throws IOException {
+        SiteConfig defaults = SiteConfig.ofDefaults();
+        Map<String, String> x = new java.util.HashMap<>(defaults.extras());
+        x.putAll(extras);
+        SiteConfig cfg = new SiteConfig(defaults.domain(), defaults.siteName(), defaults.rssTitle(),
+                defaults.ogDefault(), x);
+        Map<String, String> files = new TreeMap<>();
+        new FeedService(Path.of("."), cfg, TemplateVars.from(cfg),
+                rel -> "<html><article><p>First paragraph of " + rel + ".</p><p>More.</p></article></html>")
+                .generate(SiteModel.of(posts), (rel, content) -> files.put(rel, content));
+        return files;
+    }
+
+    private static Post post(int day, String title, String description) {
+        return new Post("p" + day + ".html", "/posts/p" + day + ".html", LocalDateTime.of(2024, 5, day, 9, 0),
+                title, List.of("cartoon"), description, "1분", "toons/classic", null, null, null);
+    }
+
+    @Test
+    void defaultsWriteOnlyTheUncappedSiteRss() throws IOException {
+        List<Post> posts = new java.util.ArrayList<>();
+        for (int day = 28; day >= 1; day--)
+            posts.add(post(day, "Post " + day, "About " + day));
+        Map<String, String> files = generate(Map.of(), posts);
+
+        assertEquals(List.of("feed.xml"), List.copyOf(files.keySet()));
+        assertEquals(28, files.get("feed.xml").split("<item>", -1).length - 1);
+
+        files = generate(Map.of("feed_limit", "5", "feed_per_tag", "true"), posts);
+        assertEquals(List.of("feed.xml", "tags/cartoon/feed.xml"), List.copyOf(files.keySet()));
+        assertEquals(5, files.get("tags/cartoon/feed.xml").split("<item>", -1).length - 1);
+    }
+
+    @Test
+    void articleExcerptOnlyWhenConfigured() throws IOException {
+        List<Post> posts = List.of(post(2, "Described", "About 2"), post(1, "Bare", null));
+        String rss = generate(Map.of(), posts).get("feed.xml");
+        assertTrue(rss.contains("<description>About 2</description>"), rss);
+        assertFalse(rss.contains("First paragraph"), rss);
+
+        rss = generate(Map.of("feed_content", "summary"), posts).get("feed.xml");
+        assertTrue(rss.contains("<description>First paragraph of posts/p1.html.</description>"), rss);
+    }
+
+    @Test
+    void titleAndSummaryAreEscapedOncePerFormat() throws IOException {
+        Map<String, String> files = generate(Map.of("feed_formats", "rss,atom,json"),
+                List.of(post(1, "Tom &amp; &quot;Jerry&quot;", "Cats &lt;3 &quot;mice&quot; &amp; cheese")));
+
+        String rss = files.get("feed.xml");
+        assertTrue(rss.contains("<title>Tom &amp; \"Jerry\"</title>"), rss);
+        assertTrue(rss.contains("<description>Cats &lt;3 \"mice\" &amp; cheese</description>"), rss);
+
+        String atom = files.get("atom.xml");
+        assertTrue(atom.contains("<title>Tom &amp; \"Jerry\"</title>"), atom);
+        assertTrue(atom.contains("<summary>Cats &lt;3 \"mice\" &amp; cheese</summary>"), atom);
+
+        String json = files.get("feed.json");
+        assertTrue(json.contains("\"title\": \"Tom & \\\"Jerry\\\"\""), json);
+        assertTrue(json.contains("\"content_text\": \"Cats <3 \\\"mice\\\" & cheese\""), json);
+
+        for (String out : files.values())
+            assertFalse(out.contains("&amp;amp;") || out.contains("&quot;"), out);
+    }
+}
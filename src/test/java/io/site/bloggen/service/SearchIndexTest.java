@@ -0,0 +1,36 @@
+package io.site.bloggen.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Golden terms and shards; search.js tokenizes queries and picks shards the same way, so these must not drift. */
+class SearchIndexTest {
+    @Test
+    void mixedLatinAndHangulTerms() {
+        assertEquals(List.of("java", "자바", "spring", "batch", "메모", "모리", "구조", "한", "2024", "년", "école"),
+                SearchIndex.terms("Java 자바: Spring-Batch 메모리 구조 한 2024년 ÉCOLE a"));
+        assertEquals(List.of("자바", "바의", "jvm", "gc", "힙"), SearchIndex.terms("자바의JVM(GC) 힙"));
+    }
+
+    @Test
+    void buckets() {
+        assertEquals("j", SearchIndex.bucket("java", 0));
+        assertEquals("a", SearchIndex.bucket("java", 1));
+        assertEquals("0", SearchIndex.bucket("2024", 0));
+        assertEquals("k00", SearchIndex.bucket("가나", 0));
+        assertEquals("k02", SearchIndex.bucket("년", 0));
+        assertEquals("_", SearchIndex.bucket("년", 1));
+        assertEquals("k06", SearchIndex.bucket("메모", 0));
+        assertEquals("k12", SearchIndex.bucket("자바", 0));
+        assertEquals("k18", SearchIndex.bucket("힙", 0));
+        assertEquals("x", SearchIndex.bucket("école", 0));
+    }
+
+    @Test
+    void escapedTextIsDecoded() {
+        assertEquals(" Tom & \"Jerry\" <3 ", SearchIndex.text("<b>Tom &amp; &quot;Jerry&quot; &lt;3</b>"));
+    }
+}
@@ -0,0 +1,63 @@
+package io.site.bloggen.template;
+
+import io.site.bloggen.core.SiteConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** Golden outputs of the single-scan rewriter; each matches the regex rewrite it replaced. */
+class DomainUpdaterTest {
+    private final DomainUpdater updater = DomainUpdater.of(
+            new SiteConfig("https://new.example/", "My \"Site\" & Co", "t", "/og.jpg", Map.of()));
+
+    @Test
+    void absoluteUrlsKeepTheirPath() {
+        assertEquals("""
+                <link rel="canonical" href="https://new.example/posts/a.html">
+                <meta property="og:url" content="https://new.example/posts/a.html?x=1">""",
+                updater.apply("""
+                        <link rel="canonical" href="https://old.example/posts/a.html">
+                        <meta property="og:url" content="http://old.example:8080/posts/a.html?x=1">"""));
+    }
+
+    @Test
+    void ogImage() {
+        // absolute and root-relative URLs move to the domain, relative ones stay; the tag always ends " />"
+        assertEquals("""
+                <meta property="og:image" content="https://new.example/img/a.png" />
+                <meta property="og:image" content="https://new.example/og/default.jpg" />
+                <meta property="og:image" content="img/relative.png" />
+                <meta name="og:image" content="https://old.example/x.png"><meta property="og:image" content="" />""",
+                updater.apply("""
+                        <meta property="og:image" content="https://cdn.old.example/img/a.png" />
+                        <meta property="og:image" content="/og/default.jpg">
+                        <meta property="og:image" content="img/relative.png"/>
+                        <meta name="og:image" content="https://old.example/x.png"><meta property="og:image" content="">"""));
+    }
+
+    @Test
+    void whitespaceBetweenAttributesAndRssTitle() {
+        assertEquals("""
+                <link   rel="canonical"
+                    href="https://new.example/">
+                <link rel="alternate" type="application/rss+xml" title="My "Site" & Co" href="/feed.xml">""",
+                updater.apply("""
+                        <link   rel="canonical"
+                            href="https://old.example/">
+                        <link rel="alternate" type="application/rss+xml" title="Old title" href="/feed.xml">"""));
+    }
+
+    @Test
+    void relativeAndOtherUrlsAreLeftAlone() {
+        String html = """
+                <link rel="canonical" href="/relative/path.html">
+                <meta property="og:url" content="">
+                <link rel="stylesheet" href="https://old.example/a.css">""";
+        assertEquals(html, updater.apply(html));
+        String plain = "<p>no tags to touch, canonical og: rss+xml mentioned</p>";
+        assertSame(plain, updater.apply(plain));
+    }
+}
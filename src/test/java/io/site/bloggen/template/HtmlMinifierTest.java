@@ -0,0 +1,69 @@
+package io.site.bloggen.template;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Golden outputs of the HTML minifier. */
+class HtmlMinifierTest {
+    @Test
+    void textAndTagWhitespace() {
+        assertEquals("<div class=\"a b\" id=main>\n<p>Some text\nacross lines</p> <span>x</span>\n</div>",
+                HtmlMinifier.minify("<div   class=\"a b\"  id=\"main\">\n    <p>Some    text\n    across lines</p>"
+                        + "   <span>x</span>\n</div>"));
+    }
+
+    @Test
+    void rawElementsAreCopied() {
+        assertEquals("<pre>  keep\n    this   </pre> <textarea name=t>  a\n  b </textarea>\n"
+                + "<script>if (a  <  b) { x = \"  y  \"; }</script>\n"
+                + "<style>a  {  color : red }</style> <code>  c  </code>",
+                HtmlMinifier.minify("<pre>  keep\n    this   </pre> <textarea name=\"t\">  a\n  b </textarea>\n"
+                        + "<script>if (a  <  b) { x = \"  y  \"; }</script>\n"
+                        + "<style>a  {  color : red }</style> <code>  c  </code>"));
+    }
+
+    @Test
+    void rawElementsKeepTheirCase() {
+        assertEquals("<PRE>Upper  case</PRE> <Script>  var s = \"</p>\"  </Script>",
+                HtmlMinifier.minify("<PRE>Upper  case</PRE>  <Script>  var s = \"</p>\"  </Script>"));
+        // a partial end tag inside the content is content
+        assertEquals("<pre>a </PRx> b </PRE>c</pre>", HtmlMinifier.minify("<pre>a </PRx> b </PRE >c</pre>"));
+        assertEquals("<script>x = \"</SCRIPx\"; </SCRIPT>\n",
+                HtmlMinifier.minify("<script>x = \"</SCRIPx\"; </SCRIPT>\n"));
+    }
+
+    @Test
+    void attributeQuotes() {
+        // quotes stay when the value has other characters or "/>" follows it
+        assertEquals("<img src=/a.png alt=\"x\"/> <img src=/b.png alt=\"two words\"/> <br class=c />\n"
+                + "<a href=/posts/a.html data-x=q>link</a>",
+                HtmlMinifier.minify("<img src=\"/a.png\" alt=\"x\"/> <img src=\"/b.png\" alt=\"two words\" />"
+                        + " <br class=\"c\" />\n<a href=\"/posts/a.html\" data-x='q'>link</a>"));
+    }
+
+    @Test
+    void adjacentAttributesKeepTheirQuotes() {
+        // no whitespace after the closing quote: unquoting would merge the next attribute into the value
+        assertEquals("<a href=\"x\"title=y>t</a> <a href=\"x\"title=\"y\"/>",
+                HtmlMinifier.minify("<a href=\"x\"title=\"y\">t</a> <a href=\"x\"title=\"y\"/>"));
+    }
+
+    @Test
+    void comments() {
+        assertEquals("<p>a</p><!--[if IE]><p>ie</p><![endif]-->",
+                HtmlMinifier.minify("<!-- dropped --><p>a</p><!--[if IE]><p>ie</p><![endif]-->"));
+        assertEquals("<p>a<!-- unterminated", HtmlMinifier.minify("<p>a<!-- unterminated"));
+    }
+
+    @Test
+    void streamedInPiecesMatchesOneString() {
+        String html = "<ul>\n  <li><a href=\"/x.html\">x</a></li>\n  <li><pre> y </pre></li>\n</ul>\n";
+        var sb = new StringBuilder();
+        var m = new HtmlMinifier(sb);
+        for (int i = 0; i < html.length(); i += 3)
+            m.append(html, i, Math.min(html.length(), i + 3));
+        m.finish();
+        assertEquals(HtmlMinifier.minify(html), sb.toString());
+    }
+}